@@ -0,0 +1,85 @@
+package top.ourisland.litemacro.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import top.ourisland.litemacro.actions.ActionFactory;
+import top.ourisland.litemacro.config.model.ActionSpec;
+import top.ourisland.litemacro.runtime.PlaceholderResolvers;
+import top.ourisland.litemacro.runtime.Placeholders;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compiling actions with {@link ActionFactory#fromSpec(ActionSpec, Placeholders)}, as a reload of a large
+ * configuration does: a mix of commands, messages with formatting, delays, transfers and nested parallel branches,
+ * all referring to a few global placeholders. Each operation compiles the whole list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ActionFactoryBenchmark {
+    /**
+     * Number of actions compiled per operation.
+     */
+    @Param({"1000", "10000"})
+    public int actions;
+
+    private List<ActionSpec> specs;
+    private Placeholders placeholders;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        placeholders = Placeholders.compile(Map.of(
+                        "network", "OurIsland",
+                        "welcome", "<gold>Welcome to {network}, {player}!</gold>",
+                        "hub", "lobby-{arg0|1}"),
+                PlaceholderResolvers.withDefaults(), (name, problem) -> {
+                    throw new IllegalStateException(name + ": " + problem);
+                });
+        specs = new ArrayList<>(actions);
+        for (int i = 0; i < actions; i++) specs.add(spec(i));
+    }
+
+    static ActionSpec spec(int i) {
+        return switch (i % 6) {
+            case 0 -> spec("command", Map.of("cmd", "send {player} {hub}", "run_as", "console"));
+            case 1 -> spec("message", Map.of("text", "{welcome} &7You are on <aqua>{server}</aqua> (" + i + ")"));
+            case 2 -> spec("delay", Map.of("millis", 50 * (i % 20)));
+            case 3 -> spec("transfer", Map.of("target", "{hub}", "message", "&aSending you to {hub}..."));
+            case 4 -> spec("broadcast",
+                    Map.of("text", "<yellow>{player}</yellow> joined {network}", "server", "{hub}"));
+            default -> spec("parallel", Map.of("branches", List.of(
+                    List.of(Map.of("type", "message", "options", Map.of("text", "Branch A {arg1|none}"))),
+                    List.of(Map.of("type", "command", "options", Map.of("cmd", "say {args}"))))));
+        };
+    }
+
+    private static ActionSpec spec(String type, Map<String, Object> options) {
+        ActionSpec spec = new ActionSpec();
+        spec.setType(type);
+        spec.setOptions(options);
+        return spec;
+    }
+
+    @Benchmark
+    public void fromSpec(Blackhole bh) {
+        for (ActionSpec spec : specs) bh.consume(ActionFactory.fromSpec(spec, placeholders));
+    }
+}
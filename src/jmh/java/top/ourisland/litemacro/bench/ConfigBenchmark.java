@@ -0,0 +1,96 @@
+package top.ourisland.litemacro.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import top.ourisland.litemacro.config.ConfigManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Loading a command.yml with thousands of macros through {@link ConfigManager#loadOrCreate()}: reading, YAML parsing,
+ * bean mapping and validation. The file is generated once per trial in a temporary data directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigBenchmark {
+    /**
+     * Number of macros in command.yml.
+     */
+    @Param({"1000", "5000"})
+    public int macros;
+
+    private Path dataDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = Files.createTempDirectory("litemacro-bench");
+        Files.writeString(dataDir.resolve("command.yml"), commandYml(macros), StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+
+    /**
+     * Generates a configuration with {@code macros} macros of five actions each, using aliases, limits and global
+     * placeholders like a large real-world setup would.
+     */
+    static String commandYml(int macros) {
+        StringBuilder sb = new StringBuilder(macros * 600);
+        sb.append("lang: \"en_US\"\n");
+        sb.append("placeholders:\n");
+        sb.append("  network: \"OurIsland\"\n");
+        sb.append("  welcome: \"<gold>Welcome to {network}, {player}!</gold>\"\n");
+        sb.append("macros:\n");
+        for (int i = 0; i < macros; i++) {
+            String target = "server-" + (i % 64);
+            sb.append("  macro").append(i).append(":\n");
+            sb.append("    description: \"Generated macro ").append(i).append(".\"\n");
+            sb.append("    permission: \"litemacro.bench.").append(i).append("\"\n");
+            sb.append("    aliases: [ \"m").append(i).append("\", \"bench").append(i).append("\" ]\n");
+            sb.append("    cooldown: ").append(500 + i % 10 * 100).append('\n');
+            sb.append("    actions:\n");
+            for (String action : List.of(
+                    "{ type: message, options: { text: \"{welcome} &7Preparing...\" } }",
+                    "{ type: delay, options: { millis: " + (i % 5 * 250) + " } }",
+                    "{ type: command, options: { cmd: \"send {player} " + target + "\", run_as: console } }",
+                    "{ type: transfer, options: { target: \"" + target + "\", message: \"Off to {arg0|lobby}\" } }",
+                    "{ type: message, options: { text: \"<green>Done, {player}.</green>\" } }")) {
+                sb.append("      - ").append(action).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public ConfigManager loadOrCreate() throws IOException {
+        ConfigManager config = new ConfigManager(Stubs.LOGGER, null, dataDir);
+        config.loadOrCreate();
+        return config;
+    }
+}
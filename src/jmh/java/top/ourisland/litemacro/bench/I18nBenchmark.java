@@ -0,0 +1,62 @@
+package top.ourisland.litemacro.bench;
+
+import com.velocitypowered.api.proxy.Player;
+import net.kyori.adventure.text.Component;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import top.ourisland.litemacro.runtime.I18n;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building localized messages with {@link I18n}: in the configured language, and in a player's client language, which
+ * adds the per-locale bundle lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class I18nBenchmark {
+    /**
+     * The player's client locale; "de_DE" is not bundled and falls back to the configured language.
+     */
+    @Param({"en_US", "zh_TW", "de_DE"})
+    public String locale;
+
+    private Player player;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        I18n.loadResourceBundle("en_US");
+        String[] parts = locale.split("_");
+        player = Stubs.player("Steve", new Locale(parts[0], parts[1]));
+    }
+
+    @Benchmark
+    public Component withoutArguments() {
+        return I18n.lang("litemacro.command.macro.no_actions");
+    }
+
+    @Benchmark
+    public Component withArguments() {
+        return I18n.lang("litemacro.command.macro.cooldown", 3L, "hub");
+    }
+
+    @Benchmark
+    public Component forPlayer() {
+        return I18n.lang(player, "litemacro.command.macro.cooldown", 3L, "hub");
+    }
+}
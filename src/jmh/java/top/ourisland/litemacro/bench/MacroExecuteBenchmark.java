@@ -0,0 +1,112 @@
+package top.ourisland.litemacro.bench;
+
+import com.velocitypowered.api.command.CommandManager;
+import com.velocitypowered.api.command.SimpleCommand;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import top.ourisland.litemacro.command.MacroCommand;
+import top.ourisland.litemacro.command.MacroRegistrar;
+import top.ourisland.litemacro.config.ConfigManager;
+import top.ourisland.litemacro.config.ParsedConfig;
+import top.ourisland.litemacro.config.model.SchedulerSpec;
+import top.ourisland.litemacro.runtime.I18n;
+import top.ourisland.litemacro.runtime.MacroRuntime;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * A whole macro invocation, from {@link MacroCommand#execute(SimpleCommand.Invocation)} through the
+ * {@code MacroRunner} to the end of the run, against stub server, command manager and scheduler. Commands complete
+ * immediately and the scheduler runs delayed continuations inline, so every operation is one complete run and the
+ * numbers show the plugin's own overhead: limit checks, run registry, context and placeholder memo, template
+ * rendering, the interpreter loop and metrics.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MacroExecuteBenchmark {
+    /**
+     * The macro's actions: a single message, a single console command, or a message, command, delay and message.
+     */
+    @Param({"message", "command", "mixed"})
+    public String shape;
+
+    private Path dataDir;
+    private MacroRuntime runtime;
+    private MacroCommand command;
+    private SimpleCommand.Invocation invocation;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        I18n.loadResourceBundle("en_US");
+        Player player = Stubs.player("Steve", Locale.US);
+        CommandManager commands = Stubs.commandManager();
+        ProxyServer server = Stubs.server(commands, Stubs.inlineScheduler(), List.of(player));
+        SchedulerSpec scheduler = new SchedulerSpec();
+        scheduler.setType("velocity");
+        runtime = new MacroRuntime(server, this, Stubs.LOGGER, scheduler);
+
+        dataDir = Files.createTempDirectory("litemacro-bench");
+        Files.writeString(dataDir.resolve("command.yml"), commandYml(shape), StandardCharsets.UTF_8);
+        ParsedConfig parsed = new ConfigManager(Stubs.LOGGER, server, dataDir).read();
+        MacroRegistrar registrar = new MacroRegistrar(runtime, commands, Stubs.LOGGER, this);
+        try {
+            command = new MacroCommand(runtime, registrar.compile(parsed).macros().get("bench"));
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        invocation = Stubs.invocation(player, "bench", new String[]{"survival", "now"});
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        runtime.shutdown();
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+
+    private static String commandYml(String shape) {
+        String message = "{ type: message, options: { text: \"<gold>Hello {player}</gold>, off to {arg0}\" } }";
+        String command = "{ type: command, options: { cmd: \"send {player} {arg0}\", run_as: console } }";
+        String delay = "{ type: delay, options: { millis: 50 } }";
+        List<String> actions = switch (shape) {
+            case "message" -> List.of(message);
+            case "command" -> List.of(command);
+            case "mixed" -> List.of(message, command, delay, message);
+            default -> throw new IllegalArgumentException("Unknown shape: " + shape);
+        };
+        StringBuilder sb = new StringBuilder("macros:\n  bench:\n    actions:\n");
+        for (String a : actions) sb.append("      - ").append(a).append('\n');
+        return sb.toString();
+    }
+
+    @Benchmark
+    public void execute() {
+        command.execute(invocation);
+    }
+}
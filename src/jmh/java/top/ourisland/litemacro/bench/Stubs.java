@@ -0,0 +1,153 @@
+package top.ourisland.litemacro.bench;
+
+import com.velocitypowered.api.command.CommandManager;
+import com.velocitypowered.api.command.CommandSource;
+import com.velocitypowered.api.command.SimpleCommand;
+import com.velocitypowered.api.proxy.ConsoleCommandSource;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import com.velocitypowered.api.scheduler.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.helpers.NOPLogger;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Minimal stand-ins for the Velocity objects the macro hot path touches, built with dynamic proxies so the benchmarks
+ * do not depend on a running proxy. Each stub answers the handful of methods the plugin calls and returns a neutral
+ * default (false, 0, null, an empty {@link Optional} or collection) for everything else; messages sent to a stub are
+ * discarded.
+ */
+final class Stubs {
+    static final Logger LOGGER = NOPLogger.NOP_LOGGER;
+
+    private Stubs() {
+    }
+
+    /**
+     * Creates a stub of an interface.
+     *
+     * @param type    the interface to implement
+     * @param answers results by method name; methods without an answer return a neutral default
+     * @return the stub
+     */
+    static <T> T stub(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        Object stub = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+            Function<Object[], Object> answer = answers.get(method.getName());
+            if (answer != null) return answer.apply(args);
+            return switch (method.getName()) {
+                case "equals" -> self == args[0];
+                case "hashCode" -> System.identityHashCode(self);
+                case "toString" -> type.getSimpleName() + "Stub";
+                default -> neutral(method);
+            };
+        });
+        return type.cast(stub);
+    }
+
+    private static Object neutral(Method method) {
+        Class<?> r = method.getReturnType();
+        if (r == boolean.class) return false;
+        if (r == int.class) return 0;
+        if (r == long.class) return 0L;
+        if (r == double.class) return 0.0;
+        if (r == float.class) return 0.0f;
+        if (r == short.class) return (short) 0;
+        if (r == byte.class) return (byte) 0;
+        if (r == char.class) return '\0';
+        if (r == Optional.class) return Optional.empty();
+        if (r == Collection.class || r == List.class) return List.of();
+        if (r == CompletableFuture.class) return CompletableFuture.completedFuture(null);
+        return null;
+    }
+
+    /**
+     * @param name   the player's name
+     * @param locale the player's client locale
+     * @return a player with every permission, not connected to any server
+     */
+    static Player player(String name, Locale locale) {
+        UUID id = UUID.nameUUIDFromBytes(name.getBytes());
+        return stub(Player.class, Map.of(
+                "getUsername", a -> name,
+                "getUniqueId", a -> id,
+                "getEffectiveLocale", a -> locale,
+                "hasPermission", a -> true));
+    }
+
+    /**
+     * @return a command manager whose commands complete immediately and successfully
+     */
+    static CommandManager commandManager() {
+        CompletableFuture<Boolean> done = CompletableFuture.completedFuture(true);
+        return stub(CommandManager.class, Map.of(
+                "executeAsync", a -> done,
+                "executeImmediatelyAsync", a -> done));
+    }
+
+    /**
+     * A scheduler that runs every task inline, at the moment it is scheduled, ignoring delays and repeats. Used as the
+     * delay scheduler of the execution benchmark so that a run with delays completes within the benchmark call.
+     *
+     * @return the scheduler
+     */
+    @SuppressWarnings("unchecked")
+    static Scheduler inlineScheduler() {
+        ScheduledTask task = stub(ScheduledTask.class, Map.of());
+        return stub(Scheduler.class, Map.of("buildTask", a -> {
+            Runnable run = a[1] instanceof Runnable r ? r : () -> ((Consumer<ScheduledTask>) a[1]).accept(task);
+            Object[] builder = new Object[1];
+            builder[0] = stub(Scheduler.TaskBuilder.class, Map.of(
+                    "delay", b -> builder[0],
+                    "repeat", b -> builder[0],
+                    "clearDelay", b -> builder[0],
+                    "clearRepeat", b -> builder[0],
+                    "schedule", b -> {
+                        run.run();
+                        return task;
+                    }));
+            return builder[0];
+        }));
+    }
+
+    /**
+     * @param commands  the command manager
+     * @param scheduler the scheduler
+     * @param players   the online players
+     * @return a proxy server with the given parts and no registered servers
+     */
+    static ProxyServer server(CommandManager commands, Scheduler scheduler, Collection<Player> players) {
+        ConsoleCommandSource console = stub(ConsoleCommandSource.class, Map.of("hasPermission", a -> true));
+        return stub(ProxyServer.class, Map.of(
+                "getCommandManager", a -> commands,
+                "getScheduler", a -> scheduler,
+                "getConsoleCommandSource", a -> console,
+                "getAllPlayers", a -> players,
+                "getPlayerCount", a -> players.size(),
+                "getAllServers", a -> List.of()));
+    }
+
+    /**
+     * @param source    the invoking source
+     * @param alias     the command label
+     * @param arguments the arguments
+     * @return a command invocation
+     */
+    static SimpleCommand.Invocation invocation(CommandSource source, String alias, String[] arguments) {
+        return stub(SimpleCommand.Invocation.class, Map.of(
+                "source", a -> source,
+                "alias", a -> alias,
+                "arguments", a -> arguments));
+    }
+}
@@ -0,0 +1,101 @@
+package top.ourisland.litemacro.bench;
+
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import top.ourisland.litemacro.config.model.SchedulerSpec;
+import top.ourisland.litemacro.runtime.InvocationContext;
+import top.ourisland.litemacro.runtime.MacroRun;
+import top.ourisland.litemacro.runtime.MacroRuntime;
+import top.ourisland.litemacro.runtime.Placeholders;
+import top.ourisland.litemacro.runtime.Template;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Placeholder expansion: {@link InvocationContext#replacePlaceholders(String)}, which compiles the string on every
+ * call, against rendering a {@link Template} compiled once, for templates of varying length and placeholder count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateBenchmark {
+    private static final String[] VARIABLES = {"{player}", "{arg0}", "{uuid}", "{args}", "{argc}", "{arg1|none}"};
+
+    /**
+     * Approximate length of the template in characters.
+     */
+    @Param({"32", "256", "2048"})
+    public int length;
+
+    /**
+     * Number of placeholders, spread evenly over the template.
+     */
+    @Param({"0", "4", "16"})
+    public int variables;
+
+    private MacroRuntime runtime;
+    private InvocationContext ctx;
+    private String source;
+    private Template template;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Player player = Stubs.player("Steve", Locale.US);
+        ProxyServer server = Stubs.server(Stubs.commandManager(), Stubs.inlineScheduler(), List.of(player));
+        runtime = new MacroRuntime(server, this, Stubs.LOGGER, new SchedulerSpec());
+        MacroRun run = new MacroRun(player.getUniqueId(), player.getUsername(), "bench");
+        ctx = new InvocationContext(runtime, player, new String[]{"survival", "now", "please"}, run);
+        source = source(length, variables);
+        template = Template.compile(source, Placeholders.compile(null, runtime.resolvers(), (n, m) -> {
+        }));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        runtime.shutdown();
+    }
+
+    /**
+     * Builds a template of about {@code length} characters with {@code variables} placeholders spread evenly over
+     * literal filler text.
+     */
+    static String source(int length, int variables) {
+        StringBuilder sb = new StringBuilder(length + 16);
+        int gaps = variables + 1;
+        int filler = Math.max(1, length / gaps);
+        for (int i = 0; i < gaps; i++) {
+            for (int j = 0; j < filler; j++) sb.append((char) ('a' + (i + j) % 26));
+            if (i < variables) sb.append(VARIABLES[i % VARIABLES.length]);
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String replacePlaceholders() {
+        // Fresh memo per call, as in a new invocation
+        return new InvocationContext(ctx.runtime(), ctx.source(), ctx.args(), ctx.run()).replacePlaceholders(source);
+    }
+
+    @Benchmark
+    public String renderCompiled() {
+        return new InvocationContext(ctx.runtime(), ctx.source(), ctx.args(), ctx.run()).render(template);
+    }
+}
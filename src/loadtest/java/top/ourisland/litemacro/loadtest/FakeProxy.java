@@ -0,0 +1,586 @@
+package top.ourisland.litemacro.loadtest;
+
+import com.velocitypowered.api.command.Command;
+import com.velocitypowered.api.command.CommandManager;
+import com.velocitypowered.api.command.CommandMeta;
+import com.velocitypowered.api.command.CommandSource;
+import com.velocitypowered.api.command.SimpleCommand;
+import com.velocitypowered.api.permission.Tristate;
+import com.velocitypowered.api.proxy.ConnectionRequestBuilder;
+import com.velocitypowered.api.proxy.ConnectionRequestBuilder.Result;
+import com.velocitypowered.api.proxy.ConnectionRequestBuilder.Status;
+import com.velocitypowered.api.proxy.ConsoleCommandSource;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.ServerConnection;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerInfo;
+import com.velocitypowered.api.proxy.server.ServerPing;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import com.velocitypowered.api.scheduler.Scheduler;
+import com.velocitypowered.api.scheduler.TaskStatus;
+import net.kyori.adventure.text.Component;
+import org.slf4j.Logger;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * An in-memory Velocity proxy for load tests: online players, registered servers with a configurable connect latency
+ * and failure rate, a command manager that dispatches command lines to the registered commands, and a scheduler backed
+ * by a thread pool. Everything is built from dynamic proxies that answer the methods liteMacro uses and return neutral
+ * defaults (false, 0, null, an empty {@link Optional} or collection) for everything else. Messages are counted and
+ * discarded.
+ */
+final class FakeProxy implements AutoCloseable {
+    private static final Locale[] LOCALES = {
+            Locale.US, Locale.SIMPLIFIED_CHINESE, Locale.TRADITIONAL_CHINESE, Locale.GERMANY, Locale.FRANCE,
+            new Locale("ru", "RU"), Locale.JAPAN, new Locale("es", "ES")};
+
+    private final ScheduledExecutorService executor;
+    private final long commandLatencyMillis;
+    private final boolean bypass;
+    private final Map<String, FakeServer> servers = new LinkedHashMap<>();
+    private final Map<UUID, FakePlayer> players = new LinkedHashMap<>();
+    private final Map<String, FakePlayer> playersByName = new ConcurrentHashMap<>();
+    private final List<Player> playerViews;
+    private final Map<String, Command> commands = new ConcurrentHashMap<>();
+    private final ProxyServer proxy;
+    private final CommandManager commandManager;
+    private final Scheduler scheduler;
+    private final ConsoleCommandSource console;
+
+    final LongAdder messages = new LongAdder();
+    final LongAdder commandLines = new LongAdder();
+    final LongAdder connects = new LongAdder();
+    final LongAdder connectFailures = new LongAdder();
+    final LongAdder taskFailures = new LongAdder();
+
+    /**
+     * Connect behavior of one fake server.
+     *
+     * @param name          the server name
+     * @param latencyMillis minimum time a connection attempt or ping takes
+     * @param jitterMillis  maximum random time added to the latency
+     * @param failureRate   probability that a connection attempt fails, between 0 and 1; a server with a failure rate
+     *                      of 1 also does not answer pings
+     */
+    record ServerSpec(String name, long latencyMillis, long jitterMillis, double failureRate) {
+        ServerSpec {
+            if (name == null || name.isBlank()) throw new IllegalArgumentException("Server name is blank");
+            if (latencyMillis < 0L || jitterMillis < 0L) {
+                throw new IllegalArgumentException("Latency of server '" + name + "' must not be negative");
+            }
+            if (failureRate < 0.0 || failureRate > 1.0) {
+                throw new IllegalArgumentException("Failure rate of server '" + name + "' must be between 0 and 1, "
+                        + "got: " + failureRate);
+            }
+        }
+
+        /**
+         * Parses {@code name[:latencyMillis[:failureRate]]}; omitted parts take the given defaults.
+         */
+        static ServerSpec parse(String s, long latencyMillis, long jitterMillis, double failureRate) {
+            String[] parts = s.trim().split(":");
+            if (parts.length > 3) throw new IllegalArgumentException("Invalid server: " + s);
+            try {
+                long latency = parts.length > 1 ? Long.parseLong(parts[1]) : latencyMillis;
+                double failure = parts.length > 2 ? Double.parseDouble(parts[2]) : failureRate;
+                return new ServerSpec(parts[0], latency, jitterMillis, failure);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid server: " + s, e);
+            }
+        }
+    }
+
+    /**
+     * Creates the proxy and connects every player to one of the servers, in turn. Players have every permission
+     * except, unless {@code bypass} is set, the {@code litemacro.bypass.*} permissions, so cooldowns and rate limits
+     * apply to them as they would to regular players.
+     *
+     * @param servers              the backend servers, at least one
+     * @param players              number of online players
+     * @param bypass               whether players may bypass cooldowns and rate limits
+     * @param commandLatencyMillis time a dispatched command line takes to complete
+     * @param threads              number of scheduler threads
+     */
+    FakeProxy(List<ServerSpec> servers, int players, boolean bypass, long commandLatencyMillis, int threads) {
+        if (servers.isEmpty()) throw new IllegalArgumentException("At least one server is required");
+        AtomicInteger n = new AtomicInteger();
+        this.executor = Executors.newScheduledThreadPool(threads, r -> {
+            Thread t = new Thread(r, "fake-proxy-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.commandLatencyMillis = commandLatencyMillis;
+        this.bypass = bypass;
+        for (ServerSpec spec : servers) {
+            if (this.servers.putIfAbsent(spec.name().toLowerCase(Locale.ROOT), new FakeServer(spec)) != null) {
+                throw new IllegalArgumentException("Server '" + spec.name() + "' is defined twice");
+            }
+        }
+        List<FakeServer> list = new ArrayList<>(this.servers.values());
+        List<Player> views = new ArrayList<>(players);
+        for (int i = 0; i < players; i++) {
+            FakePlayer p = new FakePlayer(String.format(Locale.ROOT, "Player%05d", i), LOCALES[i % LOCALES.length]);
+            p.moveTo(list.get(i % list.size()));
+            this.players.put(p.id, p);
+            playersByName.put(p.name.toLowerCase(Locale.ROOT), p);
+            views.add(p.view);
+        }
+        this.playerViews = List.copyOf(views);
+        this.console = stub(ConsoleCommandSource.class, Map.of(
+                "hasPermission", a -> true,
+                "getPermissionValue", a -> Tristate.TRUE,
+                "sendMessage", a -> {
+                    messages.increment();
+                    return null;
+                }));
+        this.commandManager = newCommandManager();
+        this.scheduler = newScheduler();
+        this.proxy = stub(ProxyServer.class, Map.of(
+                "getPlayer", a -> Optional.ofNullable(a[0] instanceof UUID id
+                        ? this.players.get(id)
+                        : playersByName.get(String.valueOf(a[0]).toLowerCase(Locale.ROOT))).map(p -> p.view),
+                "getAllPlayers", a -> playerViews,
+                "getPlayerCount", a -> playerViews.size(),
+                "getServer", a -> Optional.ofNullable(this.servers.get(String.valueOf(a[0]).toLowerCase(Locale.ROOT)))
+                        .map(s -> s.view),
+                "getAllServers", a -> this.servers.values().stream().map(s -> s.view).toList(),
+                "getConsoleCommandSource", a -> console,
+                "getCommandManager", a -> commandManager,
+                "getScheduler", a -> scheduler));
+    }
+
+    /**
+     * @return the proxy server
+     */
+    ProxyServer proxy() {
+        return proxy;
+    }
+
+    /**
+     * @return the command manager
+     */
+    CommandManager commandManager() {
+        return commandManager;
+    }
+
+    /**
+     * @return the online players, in a fixed order
+     */
+    List<Player> players() {
+        return playerViews;
+    }
+
+    /**
+     * @return the backend servers and how many players each has, in definition order
+     */
+    Map<String, Integer> population() {
+        Map<String, Integer> out = new LinkedHashMap<>();
+        for (FakeServer s : servers.values()) out.put(s.spec.name(), s.connected.size());
+        return out;
+    }
+
+    /**
+     * @param alias a command alias
+     * @return the command registered under the alias, or null
+     */
+    Command command(String alias) {
+        return commands.get(alias.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @param source    the invoking source
+     * @param alias     the command label
+     * @param arguments the arguments
+     * @return a command invocation
+     */
+    SimpleCommand.Invocation invocation(CommandSource source, String alias, String[] arguments) {
+        return stub(SimpleCommand.Invocation.class, Map.of(
+                "source", a -> source,
+                "alias", a -> alias,
+                "arguments", a -> arguments));
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Creates a logger that prints warnings and errors, and info messages if verbose, to standard error.
+     *
+     * @param verbose whether to print info messages
+     * @return the logger
+     */
+    static Logger logger(boolean verbose) {
+        return stub(Logger.class, Map.of(
+                "isErrorEnabled", a -> true,
+                "isWarnEnabled", a -> true,
+                "isInfoEnabled", a -> verbose,
+                "error", a -> log("ERROR", a),
+                "warn", a -> log("WARN", a),
+                "info", a -> verbose ? log("INFO", a) : null));
+    }
+
+    /**
+     * Formats an SLF4J call ({@code "{}"} placeholders, optionally a trailing throwable) and prints it.
+     */
+    private static Object log(String level, Object[] args) {
+        if (args == null || args.length == 0 || !(args[0] instanceof String message)) return null;
+        List<Object> values = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i] instanceof Object[] array) values.addAll(Arrays.asList(array));
+            else values.add(args[i]);
+        }
+        Throwable thrown = !values.isEmpty() && values.get(values.size() - 1) instanceof Throwable t ? t : null;
+        StringBuilder sb = new StringBuilder("[").append(level).append("] ");
+        int from = 0;
+        int next = 0;
+        for (int at; (at = message.indexOf("{}", from)) >= 0 && next < values.size(); from = at + 2) {
+            sb.append(message, from, at).append(values.get(next++));
+        }
+        sb.append(message.substring(from));
+        System.err.println(sb);
+        if (thrown != null) thrown.printStackTrace();
+        return null;
+    }
+
+    /**
+     * Creates a stub of an interface.
+     *
+     * @param type    the interface to implement
+     * @param answers results by method name; methods without an answer return a neutral default
+     * @return the stub
+     */
+    static <T> T stub(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        Object stub = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+            Function<Object[], Object> answer = answers.get(method.getName());
+            if (answer != null) return answer.apply(args);
+            return switch (method.getName()) {
+                case "equals" -> self == args[0];
+                case "hashCode" -> System.identityHashCode(self);
+                case "toString" -> type.getSimpleName() + "Stub";
+                default -> neutral(method);
+            };
+        });
+        return type.cast(stub);
+    }
+
+    private static Object neutral(Method method) {
+        Class<?> r = method.getReturnType();
+        if (r == boolean.class) return false;
+        if (r == int.class) return 0;
+        if (r == long.class) return 0L;
+        if (r == double.class) return 0.0;
+        if (r == float.class) return 0.0f;
+        if (r == short.class) return (short) 0;
+        if (r == byte.class) return (byte) 0;
+        if (r == char.class) return '\0';
+        if (r == Optional.class) return Optional.empty();
+        if (r == Collection.class || r == List.class) return List.of();
+        if (r == Set.class) return Set.of();
+        if (r == CompletableFuture.class) return CompletableFuture.completedFuture(null);
+        return null;
+    }
+
+    private boolean permitted(String permission) {
+        return bypass || !permission.startsWith("litemacro.bypass.");
+    }
+
+    private long latency(ServerSpec spec) {
+        long jitter = spec.jitterMillis() > 0L ? ThreadLocalRandom.current().nextLong(spec.jitterMillis() + 1L) : 0L;
+        return spec.latencyMillis() + jitter;
+    }
+
+    /**
+     * Runs a task on the scheduler threads, counting instead of losing its failures.
+     */
+    private Runnable guarded(Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                taskFailures.increment();
+                log("ERROR", new Object[]{"Scheduled task failed", t});
+            }
+        };
+    }
+
+    private CommandManager newCommandManager() {
+        return stub(CommandManager.class, Map.of(
+                "metaBuilder", a -> metaBuilder((String) a[0]),
+                "register", a -> {
+                    if (a[0] instanceof CommandMeta meta) {
+                        for (String alias : meta.getAliases()) {
+                            commands.put(alias.toLowerCase(Locale.ROOT), (Command) a[1]);
+                        }
+                    } else {
+                        commands.put(((String) a[0]).toLowerCase(Locale.ROOT), (Command) a[1]);
+                        for (Object alias : (Object[]) a[2]) {
+                            commands.put(((String) alias).toLowerCase(Locale.ROOT), (Command) a[1]);
+                        }
+                    }
+                    return null;
+                },
+                "unregister", a -> {
+                    if (a[0] instanceof CommandMeta meta) {
+                        for (String alias : meta.getAliases()) commands.remove(alias.toLowerCase(Locale.ROOT));
+                    } else {
+                        commands.remove(((String) a[0]).toLowerCase(Locale.ROOT));
+                    }
+                    return null;
+                },
+                "hasCommand", a -> commands.containsKey(((String) a[0]).toLowerCase(Locale.ROOT)),
+                "executeAsync", a -> execute((CommandSource) a[0], (String) a[1]),
+                "executeImmediatelyAsync", a -> execute((CommandSource) a[0], (String) a[1])));
+    }
+
+    private CommandMeta.Builder metaBuilder(String alias) {
+        List<String> aliases = new ArrayList<>(List.of(alias));
+        Object[] plugin = new Object[1];
+        Object[] builder = new Object[1];
+        builder[0] = stub(CommandMeta.Builder.class, Map.of(
+                "aliases", a -> {
+                    for (Object o : (Object[]) a[0]) aliases.add((String) o);
+                    return builder[0];
+                },
+                "plugin", a -> {
+                    plugin[0] = a[0];
+                    return builder[0];
+                },
+                "build", a -> {
+                    List<String> copy = List.copyOf(aliases);
+                    return stub(CommandMeta.class, Map.of(
+                            "getAliases", b -> copy,
+                            "getPlugin", b -> plugin[0]));
+                }));
+        return (CommandMeta.Builder) builder[0];
+    }
+
+    /**
+     * Completes a command line after the command latency, executing it first if it names a registered command, as
+     * Velocity does on its command threads. Lines for unknown commands stand in for backend commands and succeed.
+     */
+    private CompletableFuture<Boolean> execute(CommandSource source, String line) {
+        commandLines.increment();
+        String trimmed = line.startsWith("/") ? line.substring(1) : line;
+        String[] words = trimmed.isBlank() ? new String[0] : trimmed.trim().split(" +");
+        Command command = words.length == 0 ? null : commands.get(words[0].toLowerCase(Locale.ROOT));
+        if (command == null && commandLatencyMillis == 0L) return CompletableFuture.completedFuture(true);
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        Runnable task = () -> {
+            try {
+                if (command instanceof SimpleCommand simple) {
+                    simple.execute(invocation(source, words[0], Arrays.copyOfRange(words, 1, words.length)));
+                }
+                result.complete(true);
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        };
+        executor.schedule(task, commandLatencyMillis, TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    private Scheduler newScheduler() {
+        return stub(Scheduler.class, Map.of("buildTask", a -> {
+            Object plugin = a[0];
+            ScheduledTask[] task = new ScheduledTask[1];
+            @SuppressWarnings("unchecked")
+            Runnable body = a[1] instanceof Runnable r ? r : () -> ((Consumer<ScheduledTask>) a[1]).accept(task[0]);
+            long[] delayAndRepeat = new long[2];
+            Object[] builder = new Object[1];
+            builder[0] = stub(Scheduler.TaskBuilder.class, Map.of(
+                    "delay", b -> {
+                        delayAndRepeat[0] = millis(b);
+                        return builder[0];
+                    },
+                    "repeat", b -> {
+                        delayAndRepeat[1] = millis(b);
+                        return builder[0];
+                    },
+                    "clearDelay", b -> {
+                        delayAndRepeat[0] = 0L;
+                        return builder[0];
+                    },
+                    "clearRepeat", b -> {
+                        delayAndRepeat[1] = 0L;
+                        return builder[0];
+                    },
+                    "schedule", b -> {
+                        ScheduledFuture<?>[] future = new ScheduledFuture<?>[1];
+                        task[0] = stub(ScheduledTask.class, Map.of(
+                                "plugin", c -> plugin,
+                                "cancel", c -> {
+                                    if (future[0] != null) future[0].cancel(false);
+                                    return null;
+                                },
+                                "status", c -> future[0].isCancelled()
+                                        ? TaskStatus.CANCELLED
+                                        : future[0].isDone() ? TaskStatus.FINISHED : TaskStatus.SCHEDULED));
+                        Runnable run = guarded(body);
+                        future[0] = delayAndRepeat[1] > 0L
+                                ? executor.scheduleAtFixedRate(run, delayAndRepeat[0], delayAndRepeat[1],
+                                TimeUnit.MILLISECONDS)
+                                : executor.schedule(run, delayAndRepeat[0], TimeUnit.MILLISECONDS);
+                        return task[0];
+                    }));
+            return builder[0];
+        }));
+    }
+
+    /**
+     * @param args either a {@link Duration} or a time and a {@link TimeUnit}
+     * @return the time in milliseconds
+     */
+    private static long millis(Object[] args) {
+        if (args[0] instanceof Duration d) return d.toMillis();
+        return ((TimeUnit) args[1]).toMillis((Long) args[0]);
+    }
+
+    /**
+     * A backend server and the players connected to it.
+     */
+    private final class FakeServer {
+        private final ServerSpec spec;
+        private final ServerInfo info;
+        private final Set<Player> connected = ConcurrentHashMap.newKeySet();
+        private final RegisteredServer view;
+
+        private FakeServer(ServerSpec spec) {
+            this.spec = spec;
+            this.info = new ServerInfo(spec.name(), InetSocketAddress.createUnresolved(spec.name(), 25565));
+            this.view = stub(RegisteredServer.class, Map.of(
+                    "getServerInfo", a -> info,
+                    "getPlayersConnected", a -> List.copyOf(connected),
+                    "ping", a -> ping(),
+                    "sendMessage", a -> {
+                        messages.add(connected.size());
+                        return null;
+                    }));
+        }
+
+        private CompletableFuture<ServerPing> ping() {
+            CompletableFuture<ServerPing> result = new CompletableFuture<>();
+            executor.schedule(() -> {
+                if (spec.failureRate() >= 1.0) {
+                    result.completeExceptionally(new IllegalStateException(spec.name() + " is down"));
+                    return;
+                }
+                result.complete(ServerPing.builder()
+                        .version(new ServerPing.Version(767, "fake"))
+                        .description(Component.text(spec.name()))
+                        .onlinePlayers(connected.size())
+                        .maximumPlayers(Math.max(500, connected.size()))
+                        .build());
+            }, latency(spec), TimeUnit.MILLISECONDS);
+            return result;
+        }
+    }
+
+    /**
+     * An online player and the server it is connected to.
+     */
+    private final class FakePlayer {
+        private final String name;
+        private final UUID id;
+        private final Locale locale;
+        private final Player view;
+        private volatile FakeServer server;
+        private volatile ServerConnection connection;
+
+        private FakePlayer(String name, Locale locale) {
+            this.name = name;
+            this.id = UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(StandardCharsets.UTF_8));
+            this.locale = locale;
+            Map<String, Function<Object[], Object>> answers = new LinkedHashMap<>();
+            answers.put("getUsername", a -> name);
+            answers.put("getUniqueId", a -> id);
+            answers.put("getEffectiveLocale", a -> this.locale);
+            answers.put("getCurrentServer", a -> Optional.ofNullable(connection));
+            answers.put("getPing", a -> 30L + (id.getLeastSignificantBits() & 63L));
+            answers.put("isActive", a -> true);
+            answers.put("hasPermission", a -> permitted((String) a[0]));
+            answers.put("getPermissionValue", a -> permitted((String) a[0]) ? Tristate.TRUE : Tristate.FALSE);
+            answers.put("createConnectionRequest", a -> connectionRequest((RegisteredServer) a[0]));
+            answers.put("sendMessage", a -> {
+                messages.increment();
+                return null;
+            });
+            this.view = stub(Player.class, answers);
+        }
+
+        private synchronized void moveTo(FakeServer target) {
+            if (server != null) server.connected.remove(view);
+            target.connected.add(view);
+            server = target;
+            connection = stub(ServerConnection.class, Map.of(
+                    "getServer", a -> target.view,
+                    "getServerInfo", a -> target.info,
+                    "getPlayer", a -> view));
+        }
+
+        private ConnectionRequestBuilder connectionRequest(RegisteredServer target) {
+            FakeServer dest = servers.get(target.getServerInfo().getName().toLowerCase(Locale.ROOT));
+            return stub(ConnectionRequestBuilder.class, Map.of(
+                    "getServer", a -> target,
+                    "connect", a -> connect(dest),
+                    "connectWithIndication", a -> connect(dest).thenApply(Result::isSuccessful),
+                    "fireAndForget", a -> {
+                        connect(dest);
+                        return null;
+                    }));
+        }
+
+        private CompletableFuture<Result> connect(FakeServer dest) {
+            connects.increment();
+            if (dest == server) {
+                return CompletableFuture.completedFuture(result(Status.ALREADY_CONNECTED, dest));
+            }
+            CompletableFuture<Result> result = new CompletableFuture<>();
+            executor.schedule(() -> {
+                if (ThreadLocalRandom.current().nextDouble() < dest.spec.failureRate()) {
+                    connectFailures.increment();
+                    result.complete(result(Status.SERVER_DISCONNECTED, dest));
+                    return;
+                }
+                moveTo(dest);
+                result.complete(result(Status.SUCCESS, dest));
+            }, latency(dest.spec), TimeUnit.MILLISECONDS);
+            return result;
+        }
+
+        private static Result result(Status status, FakeServer dest) {
+            return stub(Result.class, Map.of(
+                    "getStatus", a -> status,
+                    "isSuccessful", a -> status == Status.SUCCESS,
+                    "getAttemptedConnection", a -> dest.view));
+        }
+    }
+}
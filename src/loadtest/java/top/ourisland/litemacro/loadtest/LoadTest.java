@@ -0,0 +1,376 @@
+package top.ourisland.litemacro.loadtest;
+
+import com.velocitypowered.api.command.Command;
+import com.velocitypowered.api.command.SimpleCommand;
+import com.velocitypowered.api.proxy.Player;
+import org.slf4j.Logger;
+import top.ourisland.litemacro.command.MacroRegistrar;
+import top.ourisland.litemacro.config.ConfigManager;
+import top.ourisland.litemacro.config.ParsedConfig;
+import top.ourisland.litemacro.runtime.I18n;
+import top.ourisland.litemacro.runtime.LatencyHistogram;
+import top.ourisland.litemacro.runtime.MacroRuntime;
+import top.ourisland.litemacro.runtime.Metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Offline load test: loads a command.yml into a {@link FakeProxy}, fires a number of macro invocations from many
+ * threads at random online players, waits until every run has finished and reports throughput, latency percentiles,
+ * action failures, delay lag and heap growth.
+ * <p>
+ * Options are passed as {@code key=value} arguments:
+ * <ul>
+ *     <li>{@code config}: path to a command.yml (default: the bundled event-night fixture)</li>
+ *     <li>{@code players}: online players (default 2000)</li>
+ *     <li>{@code servers}: comma separated {@code name[:latencyMillis[:failureRate]]} backend servers (default: the
+ *     servers of the fixture)</li>
+ *     <li>{@code latency}, {@code jitter}, {@code failure}: default connect latency and random jitter in
+ *     milliseconds, and connect failure rate between 0 and 1 (default 40, 40 and 0.01)</li>
+ *     <li>{@code commandLatency}: milliseconds a dispatched command takes (default 2)</li>
+ *     <li>{@code invocations}: total macro invocations (default 20000)</li>
+ *     <li>{@code threads}: threads invoking macros concurrently (default 16)</li>
+ *     <li>{@code rate}: invocations per second over all threads, 0 for as fast as possible (default 0)</li>
+ *     <li>{@code mix}: comma separated {@code alias[ arguments]:weight} invocations to pick from (default: the
+ *     macros of the fixture)</li>
+ *     <li>{@code bypass}: whether players bypass cooldowns and rate limits (default false)</li>
+ *     <li>{@code timeout}: seconds to wait for runs to finish after the last invocation (default 120)</li>
+ *     <li>{@code verbose}: also print info log messages (default false)</li>
+ * </ul>
+ * The audit log and the metrics file export are not started; metrics are recorded in memory as usual.
+ */
+public final class LoadTest {
+    private static final Object PLUGIN = new Object();
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+    private static final String[] QUANTILE_NAMES = {"p50", "p99", "p99.9"};
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        Path dataDir = Files.createTempDirectory("litemacro-loadtest");
+        try {
+            run(options, dataDir);
+        } finally {
+            try (Stream<Path> files = Files.walk(dataDir)) {
+                for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    private static void run(Options o, Path dataDir) throws Exception {
+        Path configFile = dataDir.resolve("command.yml");
+        if (o.config() != null) {
+            Files.copy(o.config(), configFile, StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            try (InputStream in = LoadTest.class.getResourceAsStream("/loadtest/command.yml")) {
+                if (in == null) throw new IOException("The bundled fixture loadtest/command.yml is missing");
+                Files.copy(in, configFile);
+            }
+        }
+
+        Logger logger = FakeProxy.logger(o.verbose());
+        int schedulerThreads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        try (FakeProxy fake = new FakeProxy(o.servers(), o.players(), o.bypass(), o.commandLatency(),
+                schedulerThreads)) {
+            ConfigManager config = new ConfigManager(logger, fake.proxy(), dataDir);
+            ParsedConfig parsed = config.read();
+            config.apply(parsed.root());
+            I18n.init(config, logger);
+            MacroRuntime runtime = new MacroRuntime(fake.proxy(), PLUGIN, logger, config.getScheduler());
+            try {
+                MacroRegistrar registrar = new MacroRegistrar(runtime, fake.commandManager(), logger, PLUGIN);
+                registrar.apply(registrar.compile(parsed));
+                List<Pick> mix = Pick.parse(o.mix(), fake);
+                drive(o, fake, runtime, mix);
+            } finally {
+                runtime.shutdown();
+            }
+        }
+    }
+
+    private static void drive(Options o, FakeProxy fake, MacroRuntime runtime, List<Pick> mix)
+            throws InterruptedException {
+        List<Player> players = fake.players();
+        int totalWeight = mix.stream().mapToInt(Pick::weight).sum();
+        LatencyHistogram dispatch = new LatencyHistogram();
+        LongAdder forbidden = new LongAdder();
+        AtomicInteger next = new AtomicInteger();
+
+        List<MemoryPoolMXBean> heap = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(p -> p.getType() == MemoryType.HEAP)
+                .toList();
+        long heapBefore = settledHeap(heap);
+        heap.forEach(MemoryPoolMXBean::resetPeakUsage);
+        long[] gcBefore = gc();
+
+        System.out.printf(Locale.ROOT, "liteMacro load test: %d invocations by %d threads, %d players on %d servers%n",
+                o.invocations(), o.threads(), players.size(), o.servers().size());
+        long start = System.nanoTime();
+        Thread[] threads = new Thread[o.threads()];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i; (i = next.getAndIncrement()) < o.invocations(); ) {
+                    if (o.rate() > 0.0) {
+                        long wait = start + (long) (i * 1e9 / o.rate()) - System.nanoTime();
+                        if (wait > 0L) LockSupport.parkNanos(wait);
+                    }
+                    Player player = players.get(random.nextInt(players.size()));
+                    Pick pick = Pick.choose(mix, random.nextInt(totalWeight));
+                    SimpleCommand.Invocation invocation = fake.invocation(player, pick.alias(), pick.arguments());
+                    long t0 = System.nanoTime();
+                    // Velocity checks the permission before executing a command
+                    if (pick.command().hasPermission(invocation)) {
+                        pick.command().execute(invocation);
+                    } else {
+                        forbidden.increment();
+                    }
+                    dispatch.record(System.nanoTime() - t0);
+                }
+            }, "loadtest-driver-" + (t + 1));
+            threads[t].start();
+        }
+        for (Thread t : threads) t.join();
+        long dispatched = System.nanoTime();
+
+        long deadline = dispatched + TimeUnit.SECONDS.toNanos(o.timeoutSeconds());
+        int inFlight;
+        while ((inFlight = runtime.runs().snapshot().size()) > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10L);
+        }
+        long finished = System.nanoTime();
+        long heapPeak = heap.stream().mapToLong(p -> p.getPeakUsage().getUsed()).sum();
+        long[] gcAfter = gc();
+        long heapAfter = settledHeap(heap);
+
+        Metrics metrics = runtime.metrics();
+        long runs = 0L;
+        long denied = 0L;
+        for (Metrics.MacroStats s : metrics.macros()) {
+            runs += s.duration().snapshot().count();
+            denied += s.denials();
+        }
+        double dispatchSeconds = (dispatched - start) / 1e9;
+        double totalSeconds = (finished - start) / 1e9;
+
+        System.out.printf(Locale.ROOT, "Dispatch: %.3f s, %.0f invocations/s; execute() %s%n",
+                dispatchSeconds, o.invocations() / dispatchSeconds, percentiles(dispatch.snapshot()));
+        System.out.printf(Locale.ROOT, "Runs: %d finished in %.3f s, %.0f runs/s; %d denied, %d without permission%n",
+                runs, totalSeconds, runs / totalSeconds, denied, forbidden.sum());
+        if (inFlight > 0) {
+            System.out.printf(Locale.ROOT, "  %d runs still in flight after %d s%n", inFlight, o.timeoutSeconds());
+        }
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%-16s %9s %8s %8s  %s%n", "macro", "invoked", "denied", "mean ms",
+                "run time");
+        for (Metrics.MacroStats s : metrics.macros()) {
+            LatencyHistogram.Snapshot d = s.duration().snapshot();
+            System.out.printf(Locale.ROOT, "%-16s %9d %8d %8.1f  %s%n",
+                    s.name(), s.invocations(), s.denials(), d.meanMillis(), percentiles(d));
+        }
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%-16s %9s %8s %8s  %s%n", "action", "executed", "failed", "mean ms",
+                "time");
+        for (Metrics.ActionStats s : metrics.actions()) {
+            LatencyHistogram.Snapshot d = s.duration().snapshot();
+            System.out.printf(Locale.ROOT, "%-16s %9d %8d %8.1f  %s%n",
+                    s.type(), s.executions(), s.failures(), d.meanMillis(), percentiles(d));
+        }
+        LatencyHistogram.Snapshot lag = metrics.delayLag().snapshot();
+        if (lag.count() > 0L) {
+            System.out.printf(Locale.ROOT, "%nDelay lag: %d wake-ups, %s%n", lag.count(), percentiles(lag));
+        }
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "Proxy: %d commands, %d connects (%d failed), %d messages, %d task failures%n",
+                fake.commandLines.sum(), fake.connects.sum(), fake.connectFailures.sum(), fake.messages.sum(),
+                fake.taskFailures.sum());
+        System.out.println("Players per server: " + fake.population());
+        System.out.printf(Locale.ROOT, "Heap: %.1f MiB before, %.1f MiB peak, %.1f MiB after (%+.1f MiB)%n",
+                mib(heapBefore), mib(heapPeak), mib(heapAfter), mib(heapAfter - heapBefore));
+        System.out.printf(Locale.ROOT, "GC: %d collections, %d ms%n", gcAfter[0] - gcBefore[0],
+                gcAfter[1] - gcBefore[1]);
+    }
+
+    private static String percentiles(LatencyHistogram.Snapshot s) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < QUANTILES.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(String.format(Locale.ROOT, "%s %.2f ms", QUANTILE_NAMES[i], s.quantileMillis(QUANTILES[i])));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the used heap after a full collection, in bytes
+     */
+    private static long settledHeap(List<MemoryPoolMXBean> heap) throws InterruptedException {
+        System.gc();
+        Thread.sleep(100L);
+        System.gc();
+        return heap.stream().mapToLong(p -> p.getUsage().getUsed()).sum();
+    }
+
+    /**
+     * @return number of collections and total collection time in milliseconds, over all collectors
+     */
+    private static long[] gc() {
+        long[] out = new long[2];
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            out[0] += Math.max(0L, gc.getCollectionCount());
+            out[1] += Math.max(0L, gc.getCollectionTime());
+        }
+        return out;
+    }
+
+    private static double mib(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+
+    /**
+     * One entry of the invocation mix.
+     *
+     * @param alias     the command alias to invoke
+     * @param arguments the command arguments
+     * @param weight    relative frequency
+     * @param command   the registered command
+     */
+    private record Pick(String alias, String[] arguments, int weight, SimpleCommand command) {
+        static List<Pick> parse(String mix, FakeProxy fake) {
+            List<Pick> out = new ArrayList<>();
+            for (String entry : mix.split(",")) {
+                if (entry.isBlank()) continue;
+                int colon = entry.lastIndexOf(':');
+                String line = (colon < 0 ? entry : entry.substring(0, colon)).trim();
+                int weight;
+                try {
+                    weight = colon < 0 ? 1 : Integer.parseInt(entry.substring(colon + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid weight in mix entry: " + entry, e);
+                }
+                if (weight <= 0) throw new IllegalArgumentException("Weight must be positive: " + entry);
+                String[] words = line.split(" +");
+                Command command = fake.command(words[0]);
+                if (!(command instanceof SimpleCommand simple)) {
+                    throw new IllegalArgumentException("No macro registered as '" + words[0] + "'");
+                }
+                String[] arguments = new String[words.length - 1];
+                System.arraycopy(words, 1, arguments, 0, arguments.length);
+                out.add(new Pick(words[0], arguments, weight, simple));
+            }
+            if (out.isEmpty()) throw new IllegalArgumentException("The mix is empty");
+            return out;
+        }
+
+        static Pick choose(List<Pick> mix, int roll) {
+            for (Pick p : mix) {
+                roll -= p.weight;
+                if (roll < 0) return p;
+            }
+            return mix.get(mix.size() - 1);
+        }
+    }
+
+    /**
+     * The parsed command line options; see the class documentation.
+     */
+    private record Options(Path config, int players, List<FakeProxy.ServerSpec> servers, long commandLatency,
+                           int invocations, int threads, double rate, String mix, boolean bypass, long timeoutSeconds,
+                           boolean verbose) {
+        private static final String SERVERS = "lobby-1,lobby-2,lobby-3,event-1,event-2,event-3,event-4";
+        private static final String MIX = "event:45,hub:25,kit:20,warp:9,announce 3:1";
+
+        static Options parse(String[] args) {
+            Map<String, String> values = new LinkedHashMap<>();
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                if (eq <= 0) throw new IllegalArgumentException("Expected key=value, got: " + arg);
+                values.put(arg.substring(0, eq).trim(), arg.substring(eq + 1).trim());
+            }
+            String config = values.remove("config");
+            long latency = longValue(values.remove("latency"), 40L, "latency");
+            long jitter = longValue(values.remove("jitter"), 40L, "jitter");
+            double failure = doubleValue(values.remove("failure"), 0.01, "failure");
+            List<FakeProxy.ServerSpec> servers = new ArrayList<>();
+            for (String s : values.getOrDefault("servers", SERVERS).split(",")) {
+                if (!s.isBlank()) servers.add(FakeProxy.ServerSpec.parse(s, latency, jitter, failure));
+            }
+            values.remove("servers");
+            Options o = new Options(
+                    config == null ? null : Path.of(config),
+                    (int) longValue(values.remove("players"), 2000L, "players"),
+                    servers,
+                    longValue(values.remove("commandLatency"), 2L, "commandLatency"),
+                    (int) longValue(values.remove("invocations"), 20000L, "invocations"),
+                    (int) longValue(values.remove("threads"), 16L, "threads"),
+                    doubleValue(values.remove("rate"), 0.0, "rate"),
+                    values.getOrDefault("mix", MIX),
+                    Boolean.parseBoolean(values.getOrDefault("bypass", "false")),
+                    longValue(values.remove("timeout"), 120L, "timeout"),
+                    Boolean.parseBoolean(values.getOrDefault("verbose", "false")));
+            values.remove("mix");
+            values.remove("bypass");
+            values.remove("verbose");
+            if (!values.isEmpty()) throw new IllegalArgumentException("Unknown options: " + values.keySet());
+            if (o.players() <= 0 || o.invocations() <= 0 || o.threads() <= 0) {
+                throw new IllegalArgumentException("players, invocations and threads must be positive");
+            }
+            if (o.config() != null && !Files.isRegularFile(o.config())) {
+                throw new IllegalArgumentException("No such file: " + o.config());
+            }
+            return o;
+        }
+
+        private static long longValue(String s, long def, String name) {
+            if (s == null) return def;
+            try {
+                long v = Long.parseLong(s);
+                if (v < 0L) throw new IllegalArgumentException("Option '" + name + "' must not be negative: " + s);
+                return v;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Option '" + name + "' must be a number: " + s, e);
+            }
+        }
+
+        private static double doubleValue(String s, double def, String name) {
+            if (s == null) return def;
+            try {
+                double v = Double.parseDouble(s);
+                if (v < 0.0) throw new IllegalArgumentException("Option '" + name + "' must not be negative: " + s);
+                return v;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Option '" + name + "' must be a number: " + s, e);
+            }
+        }
+    }
+}
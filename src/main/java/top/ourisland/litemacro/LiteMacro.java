@@ -1,29 +1,43 @@
 package top.ourisland.litemacro;
 
-import top.ourisland.litemacro.command.MacroCommand;
+import top.ourisland.litemacro.command.AdminCommand;
+import top.ourisland.litemacro.command.MacroCompileException;
+import top.ourisland.litemacro.command.MacroProgram;
+import top.ourisland.litemacro.command.MacroRegistrar;
 import top.ourisland.litemacro.config.ConfigManager;
-import top.ourisland.litemacro.config.model.MacroSpec;
+import top.ourisland.litemacro.config.ConfigWatcher;
+import top.ourisland.litemacro.config.ParsedConfig;
+import top.ourisland.litemacro.config.model.AuditSpec;
+import top.ourisland.litemacro.config.model.MetricsSpec;
+import top.ourisland.litemacro.config.model.ReloadSpec;
+import top.ourisland.litemacro.runtime.AuditLog;
 import top.ourisland.litemacro.runtime.I18n;
+import top.ourisland.litemacro.runtime.MacroRuntime;
+import top.ourisland.litemacro.runtime.MetricsExporter;
 import com.google.inject.Inject;
 import com.velocitypowered.api.command.CommandManager;
 import com.velocitypowered.api.command.CommandMeta;
-import com.velocitypowered.api.command.SimpleCommand;
 import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.DisconnectEvent;
 import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
 import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
 import com.velocitypowered.api.proxy.ProxyServer;
 import org.slf4j.Logger;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 /**
  * Core plugin entry for liteMarco.
  * <p>
- * Handles plugin initialization, configuration loading, macro command registration/unregistration, and the admin reload
- * command.
+ * Handles plugin initialization, configuration loading and (automatic) reloading, macro command registration through
+ * the {@link MacroRegistrar}, the metrics file export, and the admin command.
  */
 @Plugin(
         id = "litemacro",
@@ -35,7 +49,6 @@ import java.util.*;
 )
 public class LiteMacro {
 
-    private final Map<String, List<String>> registeredAliases = new HashMap<>(); // macroName -> aliases
     @Inject
     private Logger logger;
     @Inject
@@ -46,6 +59,10 @@ public class LiteMacro {
     @DataDirectory
     private Path dataDirectory;
     private ConfigManager configManager;
+    private MacroRuntime runtime;
+    private MacroRegistrar registrar;
+    private ConfigWatcher watcher;
+    private MetricsExporter exporter;
 
     /**
      * Velocity lifecycle hook invoked when the proxy is initializing. Loads or creates the configuration, then
@@ -70,107 +87,155 @@ public class LiteMacro {
                 Files.createDirectories(dataDirectory);
             }
             this.configManager = new ConfigManager(logger, server, dataDirectory);
-            this.configManager.loadOrCreate();
+            ParsedConfig config = configManager.read();
+            configManager.apply(config.root());
 
             I18n.init(configManager, logger);
+            this.runtime = new MacroRuntime(server, this, logger, configManager.getScheduler());
+            configureAudit();
 
-            registerAllMacros();
+            this.registrar = new MacroRegistrar(runtime, commandManager, logger, this);
+            try {
+                registrar.apply(registrar.compile(config));
+            } catch (MacroCompileException e) {
+                logger.error("No macros registered. {}", e.getMessage());
+            }
             registerAdminCommand();
-            logger.info("liteMarco initialized. Macros registered: {}", registeredAliases.keySet());
+
+            this.watcher = new ConfigWatcher(logger, configManager.configFile(), configManager.macroDirectory(),
+                    runtime.delays(), this::autoReload);
+            configureWatcher();
+            this.exporter = new MetricsExporter(server, this, logger, runtime.metrics());
+            configureExporter();
+            logger.info("liteMarco initialized. Macros registered: {}", registrar.names());
         } catch (Exception e) {
             logger.error("Failed to initialize liteMarco", e);
         }
     }
 
     /**
-     * (Re)registers all macros from the current configuration. First unregisters any previously registered macro
-     * aliases to ensure a clean state, then registers each macro command.
+     * Velocity lifecycle hook invoked when the proxy shuts down. Stops the runtime's background threads.
+     *
+     * @param event the shutdown event fired by Velocity
      */
-    private void registerAllMacros() {
-        unregisterAllMacros();
-        Map<String, MacroSpec> macros = configManager.getMacros();
-        if (macros.isEmpty()) {
-            logger.warn("No macros found in command.yml");
-            return;
-        }
-        macros.forEach(this::registerOneMacro);
+    @Subscribe
+    public void onProxyShutdown(ProxyShutdownEvent event) {
+        if (watcher != null) watcher.stop();
+        if (exporter != null) exporter.stop();
+        if (runtime != null) runtime.shutdown();
     }
 
     /**
-     * Registers the admin command "/litemacro" which currently supports the subcommand "reload" to hot-reload
-     * configuration and macros.
+     * Cancels every macro still running for a player who left the proxy, so their pending delays and remaining actions
+     * do no further work.
+     *
+     * @param event the disconnect event fired by Velocity
      */
-    private void registerAdminCommand() {
-        CommandMeta meta = commandManager.metaBuilder("litemacro")
-                .plugin(this)
-                .build();
+    @Subscribe
+    public void onDisconnect(DisconnectEvent event) {
+        if (runtime != null) runtime.runs().cancelAll(event.getPlayer().getUniqueId());
+    }
 
-        commandManager.register(meta, (SimpleCommand) invocation -> {
-            if (!invocation.source().hasPermission("litemacro.admin")) {
-                invocation.source().sendMessage(I18n.lang("litemacro.main.no_perms", "litemacro.admin"));
-                return;
-            }
-            String[] args = invocation.arguments();
-            if (args.length == 0 || !"reload".equalsIgnoreCase(args[0])) {
-                invocation.source().sendMessage(I18n.lang("litemacro.main.usage", "/litemacro reload"));
-                return;
-            }
+    /**
+     * Reloads the configuration and language bundle, then applies macro changes incrementally. Parsing and compiling
+     * happen off the calling thread on Velocity's scheduler; registrations are only touched once the whole new
+     * configuration has compiled, and only for macros and aliases that actually changed. Scheduler settings are only
+     * read at startup.
+     *
+     * @return a future completing with a summary of the changes, or exceptionally if the configuration is invalid
+     */
+    public CompletableFuture<MacroRegistrar.Diff> reload() {
+        Executor async = task -> server.getScheduler().buildTask(this, task).schedule();
+        return CompletableFuture.supplyAsync(() -> {
             try {
-                unregisterAllMacros();
+                ParsedConfig config = configManager.read();
+                return new Loaded(config, registrar.compile(config));
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, async).thenApply(loaded -> {
+            configManager.apply(loaded.config().root());
+            I18n.reload();
+            MacroRegistrar.Diff diff = registrar.apply(loaded.program());
+            configureWatcher();
+            configureExporter();
+            configureAudit();
+            logger.info("Reloaded macros: {} added, {} changed, {} removed, {} unchanged",
+                    diff.added(), diff.changed(), diff.removed(), diff.unchanged());
+            return diff;
+        });
+    }
 
-                configManager.loadOrCreate();
+    /**
+     * Starts or stops the configuration file watcher according to the current settings.
+     */
+    private void configureWatcher() {
+        ReloadSpec spec = configManager.getReload();
+        watcher.configure(spec.isWatch(), spec.getDebounce());
+    }
 
-                String lang = configManager.getLang();
-                I18n.loadResourceBundle(lang);
+    /**
+     * Starts or stops the metrics file export according to the current settings.
+     */
+    private void configureExporter() {
+        MetricsSpec spec = configManager.getMetrics();
+        Path file = spec.getFile() == null || spec.getFile().isBlank()
+                ? dataDirectory.resolve(new MetricsSpec().getFile())
+                : dataDirectory.resolve(spec.getFile());
+        exporter.configure(spec.isExport(), file, spec.getInterval());
+    }
 
-                registerAllMacros();
+    /**
+     * Enables, reconfigures or disables the audit log according to the current settings.
+     */
+    private void configureAudit() {
+        AuditSpec spec = configManager.getAudit();
+        if (!spec.isEnabled()) {
+            runtime.audit().configure(null);
+            return;
+        }
+        String file = spec.getFile() == null || spec.getFile().isBlank() ? new AuditSpec().getFile() : spec.getFile();
+        runtime.audit().configure(new AuditLog.Settings(
+                dataDirectory.resolve(file),
+                Math.max(1L, spec.getMaxSize()) * 1024L,
+                Math.max(0, spec.getKeep()),
+                spec.isGzip(),
+                spec.getBuffer(),
+                spec.getFlush()));
+    }
 
-                invocation.source().sendMessage(I18n.lang("litemacro.main.reload"));
-            } catch (Exception e) {
-                invocation.source().sendMessage(I18n.lang("litemacro.main.reload.failed", e.getMessage()));
-                logger.error("Reload failed", e);
+    /**
+     * Reload triggered by the configuration file watcher.
+     */
+    private void autoReload() {
+        reload().whenComplete((diff, err) -> {
+            if (err == null) return;
+            Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+            if (cause instanceof MacroCompileException) {
+                logger.error("Automatic reload failed; keeping the current macros. {}", cause.getMessage());
+            } else {
+                logger.error("Automatic reload failed; keeping the current macros", cause);
             }
         });
     }
 
     /**
-     * Unregisters all previously registered macro aliases. Safe to call repeatedly; no-op if nothing is registered.
+     * Registers the admin command "/litemacro" (see {@link AdminCommand} for its subcommands).
      */
-    private void unregisterAllMacros() {
-        if (registeredAliases.isEmpty()) return;
-        for (List<String> aliases : registeredAliases.values()) {
-            for (String a : aliases) {
-                try {
-                    commandManager.unregister(a);
-                } catch (Throwable ignored) {
-                }
-            }
-        }
-        registeredAliases.clear();
+    private void registerAdminCommand() {
+        CommandMeta meta = commandManager.metaBuilder("litemacro")
+                .plugin(this)
+                .build();
+
+        commandManager.register(meta, new AdminCommand(this, runtime, logger));
     }
 
     /**
-     * Registers a single macro command and all of its aliases.
+     * A parsed configuration together with its compiled macros, produced off-thread during a reload.
      *
-     * @param name the primary macro name
-     * @param spec the macro specification loaded from configuration
+     * @param config  the parsed configuration
+     * @param program the compiled macros
      */
-    private void registerOneMacro(String name, MacroSpec spec) {
-        String primary = name.toLowerCase(Locale.ROOT);
-        List<String> aliases = new ArrayList<>();
-        aliases.add(primary);
-        if (spec.getAliases() != null) {
-            spec.getAliases().forEach(a -> aliases.add(a.toLowerCase(Locale.ROOT)));
-        }
-
-        MacroCommand command = new MacroCommand(server, logger, this, spec);
-        for (String alias : aliases) {
-            CommandMeta meta = commandManager.metaBuilder(alias)
-                    .plugin(this)
-                    .build();
-            commandManager.register(meta, command);
-        }
-        registeredAliases.put(primary, aliases);
-        logger.info("Registered macro '{}' with aliases {} and perm '{}'", primary, aliases, spec.getPermission());
+    private record Loaded(ParsedConfig config, MacroProgram program) {
     }
-}
\ No newline at end of file
+}
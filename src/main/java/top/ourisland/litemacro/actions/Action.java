@@ -2,19 +2,33 @@ package top.ourisland.litemacro.actions;
 
 import top.ourisland.litemacro.runtime.InvocationContext;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 /**
  * Executable unit within a macro. Implementations must avoid blocking the
  * main thread; any waiting should be modeled via {@link #delayMillis()} and
- * external scheduling.
+ * external scheduling, or by returning a stage that completes later.
  */
 public interface Action {
+    /**
+     * Shared, already completed stage returned by actions that finish synchronously.
+     */
+    CompletionStage<?> DONE = CompletableFuture.completedFuture(null);
+
     /**
      * Performs the action using the provided invocation context.
      * Implementations should be exception-safe; errors should not stop the sequence.
+     * <p>
+     * The returned stage signals when the action has finished; the runner only
+     * continues with the next action once it completes (normally or exceptionally).
+     * Actions that finish synchronously return {@link #DONE}.
      *
      * @param ctx the invocation context containing server, source, and variables
+     * @return a stage completing when the action has finished
      */
-    void execute(InvocationContext ctx);
+    CompletionStage<?> execute(InvocationContext ctx);
 
     /**
      * Returns a requested delay (in milliseconds) that should occur before
@@ -25,4 +39,26 @@ public interface Action {
     default long delayMillis() {
         return 0L;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the time this action takes at least because of fixed delays, including delays inside nested action
+     * sequences. Used to precompute how long a macro runs at minimum; it does not affect scheduling.
+     *
+     * @return minimum duration in milliseconds
+     */
+    default long minDurationMillis() {
+        return delayMillis();
+    }
+
+    /**
+     * Sums the minimum durations of a sequence of actions.
+     *
+     * @param actions the actions, run one after another
+     * @return minimum duration of the whole sequence in milliseconds
+     */
+    static long minDurationMillis(List<Action> actions) {
+        long total = 0L;
+        for (Action a : actions) total += a.minDurationMillis();
+        return total;
+    }
+}
@@ -1,7 +1,13 @@
 package top.ourisland.litemacro.actions;
 
 import top.ourisland.litemacro.config.model.ActionSpec;
+import top.ourisland.litemacro.runtime.Condition;
+import top.ourisland.litemacro.runtime.Placeholders;
+import top.ourisland.litemacro.runtime.RichText;
+import top.ourisland.litemacro.runtime.Template;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -10,42 +16,324 @@ import java.util.Map;
  * {@code ActionSpec} definitions.
  */
 public class ActionFactory {
+    /**
+     * Rejects every call, for actions compiled outside of a macro configuration.
+     */
+    public static final Calls NO_CALLS = name -> {
+        throw new IllegalArgumentException("Macro calls are not available here");
+    };
+
+    /**
+     * Creates an {@code Action} from the given specification, rejecting {@code call} actions.
+     *
+     * @param spec         the action specification
+     * @param placeholders the global placeholders
+     * @return a concrete {@code Action}
+     * @throws IllegalArgumentException if the type is unknown, a required option is missing or an option is invalid
+     * @see #fromSpec(ActionSpec, Placeholders, Calls)
+     */
+    public static Action fromSpec(ActionSpec spec, Placeholders placeholders) throws IllegalArgumentException {
+        return fromSpec(spec, placeholders, NO_CALLS);
+    }
+
     /**
      * Creates an {@code Action} from the given specification.
-     * Supports "command", "message", and "delay" types.
+     * Supports "command", "message", "broadcast", "delay", "transfer", "transfer_all" (alias "transfer_server"),
+     * "parallel", "if", "call", "foreach" and "repeat" types. Options are validated and converted to
+     * their typed form here, and text options are compiled into {@link Template}s (message text into {@link RichText},
+     * conditions into {@link Condition}s) with the global placeholders inlined, so that invocations never look at the
+     * options map or re-parse text.
+     * <p>
+     * Called macros are looked up through {@code calls} while compiling, so their actions are linked into the call.
      *
-     * @param spec the action specification
+     * @param spec         the action specification
+     * @param placeholders the global placeholders
+     * @param calls        looks up the compiled actions of called macros
      * @return a concrete {@code Action}
-     * @throws IllegalArgumentException if the type is unknown or invalid
+     * @throws IllegalArgumentException if the type is unknown, a required option is missing or an option is invalid
      */
-    public static Action fromSpec(ActionSpec spec) throws IllegalArgumentException {
+    public static Action fromSpec(ActionSpec spec, Placeholders placeholders, Calls calls)
+            throws IllegalArgumentException {
         String t = spec.getType();
         if (t == null) throw new IllegalArgumentException("Action type is null");
         String type = t.toLowerCase(Locale.ROOT);
         Map<String, Object> opt = spec.getOptions();
         switch (type) {
             case "command" -> {
-                String cmd = str(opt, "cmd", "");
-                String runAs = str(opt, "run_as", "console");
-                return new CommandAction(cmd, runAs);
+                String cmd = required(opt, "cmd");
+                CommandAction.RunAs runAs = CommandAction.RunAs.parse(str(opt, "run_as", null));
+                boolean await = bool(opt, "await", true);
+                return new CommandAction(Template.compile(cmd, placeholders), runAs, await);
             }
             case "message" -> {
-                String text = str(opt, "text", "");
-                return new MessageAction(text);
+                String text = str(opt, "text", null);
+                if (text == null) throw new IllegalArgumentException("Missing required option 'text'");
+                return new MessageAction(RichText.compile(text, placeholders));
+            }
+            case "broadcast" -> {
+                String text = required(opt, "text");
+                String permission = str(opt, "permission", "");
+                boolean perPlayer = bool(opt, "per_player", true);
+                return new BroadcastAction(RichText.compile(text, placeholders),
+                        Template.compile(str(opt, "server", ""), placeholders),
+                        permission.isBlank() ? null : permission, perPlayer);
             }
             case "delay" -> {
+                if (opt == null || opt.get("millis") == null) {
+                    throw new IllegalArgumentException("Missing required option 'millis'");
+                }
                 long ms = num(opt, "millis", 0L);
+                if (ms < 0) throw new IllegalArgumentException("Option 'millis' must not be negative, got: " + ms);
                 return new DelayAction(ms);
             }
             case "transfer" -> {
-                String target = str(opt, "target", "");
+                String target = required(opt, "target");
                 String msg = str(opt, "message", "");
-                return new TransferAction(target, msg);
+                boolean await = bool(opt, "await", true);
+                return new TransferAction(Template.compile(target, placeholders),
+                        Template.compile(msg, placeholders), await);
+            }
+            case "transfer_all", "transfer_server" -> {
+                String from = type.equals("transfer_server") ? required(opt, "from") : str(opt, "from", "");
+                String target = required(opt, "target");
+                List<Template> fallbacks = new ArrayList<>();
+                for (String f : strings(opt, "fallback")) fallbacks.add(Template.compile(f, placeholders));
+                TransferAllAction.Limits limits = new TransferAllAction.Limits(
+                        (int) range(opt, "concurrency", 10L, 1L),
+                        (int) range(opt, "rate", 20L, 0L),
+                        (int) range(opt, "retries", 2L, 0L),
+                        range(opt, "backoff", 1000L, 0L));
+                Template msg = Template.compile(str(opt, "message", ""), placeholders);
+                boolean await = bool(opt, "await", true);
+                return new TransferAllAction(Template.compile(from, placeholders),
+                        Template.compile(target, placeholders), fallbacks, msg, limits, await);
+            }
+            case "parallel" -> {
+                Object raw = opt == null ? null : opt.get("branches");
+                if (!(raw instanceof List<?> list)) {
+                    throw new IllegalArgumentException("Parallel action requires a 'branches' list");
+                }
+                List<List<Action>> branches = new ArrayList<>(list.size());
+                for (Object branch : list) {
+                    try {
+                        branches.add(actions(branch, placeholders, calls));
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException(
+                                "branch " + (branches.size() + 1) + ": " + e.getMessage(), e);
+                    }
+                }
+                String wait = str(opt, "wait", "all").toLowerCase(Locale.ROOT);
+                if (!wait.equals("all") && !wait.equals("first")) {
+                    throw new IllegalArgumentException("Parallel 'wait' must be 'all' or 'first': " + wait);
+                }
+                return new ParallelAction(branches, wait.equals("first"));
+            }
+            case "if" -> {
+                Condition condition = Condition.compile(required(opt, "condition"), placeholders);
+                List<Action> then = branch(opt, "then", placeholders, calls);
+                List<Action> otherwise = branch(opt, "else", placeholders, calls);
+                if (then.isEmpty() && otherwise.isEmpty()) {
+                    throw new IllegalArgumentException("If action requires a 'then' or an 'else' list");
+                }
+                return new IfAction(condition, then, otherwise);
+            }
+            case "call" -> {
+                String macro = required(opt, "macro");
+                Object raw = opt.get("args");
+                Template[] args = null;
+                if (raw instanceof List<?> list) {
+                    args = new Template[list.size()];
+                    for (int i = 0; i < args.length; i++) {
+                        Object a = list.get(i);
+                        args[i] = Template.compile(a == null ? "" : String.valueOf(a), placeholders);
+                    }
+                } else if (raw != null) {
+                    args = new Template[]{Template.compile(String.valueOf(raw), placeholders)};
+                }
+                return new CallAction(macro, calls.actions(macro), args, raw != null && !(raw instanceof List<?>));
+            }
+            case "foreach" -> {
+                boolean players = opt != null && opt.get("players") != null;
+                boolean servers = opt != null && opt.get("servers") != null;
+                if (players == servers) {
+                    throw new IllegalArgumentException("Foreach action requires either 'players' or 'servers'");
+                }
+                LoopAction.Items items;
+                if (players) {
+                    String server = str(opt, "players", "");
+                    items = LoopAction.players(Template.compile(
+                            server.equalsIgnoreCase("all") ? "" : server, placeholders));
+                } else {
+                    List<Template> names = new ArrayList<>();
+                    for (String n : strings(opt, "servers")) names.add(Template.compile(n, placeholders));
+                    items = LoopAction.servers(names);
+                }
+                return loop(opt, items, 0L, placeholders, calls);
+            }
+            case "repeat" -> {
+                boolean times = opt != null && opt.get("times") != null;
+                if (times && (opt.get("from") != null || opt.get("to") != null || opt.get("step") != null)) {
+                    throw new IllegalArgumentException("Repeat action takes either 'times' or 'from', 'to' and 'step'");
+                }
+                Template from = Template.compile(times ? "1" : str(opt, "from", "1"), placeholders);
+                Template to = Template.compile(times ? required(opt, "times") : required(opt, "to"), placeholders);
+                Template step = Template.compile(times ? "1" : str(opt, "step", "1"), placeholders);
+                Long first = constant(from, "from");
+                Long last = constant(to, times ? "times" : "to");
+                Long by = constant(step, "step");
+                if (by != null && by == 0) throw new IllegalArgumentException("Option 'step' must not be 0");
+                long count = 0L;
+                if (first != null && last != null && by != null) {
+                    count = LoopAction.count(first, last, by);
+                    if (count > LoopAction.MAX_ITERATIONS) {
+                        throw new IllegalArgumentException("Repeat action runs " + count + " times, at most "
+                                + LoopAction.MAX_ITERATIONS + " are allowed");
+                    }
+                }
+                return loop(opt, LoopAction.range(from, to, step), count, placeholders, calls);
             }
             default -> throw new IllegalArgumentException("Unknown action type: " + type);
         }
     }
 
+    /**
+     * Builds a loop from its items and the options shared by every loop: {@code actions}, {@code batch},
+     * {@code parallel} and {@code await}.
+     *
+     * @param opt           the options map
+     * @param items         the items to iterate over
+     * @param minIterations the number of iterations known at load time, 0 if unknown
+     * @param placeholders  the global placeholders
+     * @param calls         looks up the compiled actions of called macros
+     * @return the loop action
+     * @throws IllegalArgumentException if an option is missing or invalid
+     */
+    private static Action loop(Map<String, Object> opt, LoopAction.Items items, long minIterations,
+                               Placeholders placeholders, Calls calls) throws IllegalArgumentException {
+        List<Action> body = branch(opt, "actions", placeholders, calls);
+        if (body.isEmpty()) throw new IllegalArgumentException("Loop requires an 'actions' list");
+        int batch = (int) range(opt, "batch", 100L, 0L);
+        return new LoopAction(items, body, batch, bool(opt, "parallel", false), bool(opt, "await", true),
+                minIterations);
+    }
+
+    /**
+     * Reads a whole number option that may contain placeholders.
+     *
+     * @param t the compiled option
+     * @param k the key, for the error message
+     * @return the number, or null if the option contains placeholders and is only known at run time
+     * @throws IllegalArgumentException if the option is constant but not a whole number
+     */
+    private static Long constant(Template t, String k) throws IllegalArgumentException {
+        String c = t.constant();
+        if (c == null) return null;
+        try {
+            return Long.parseLong(c.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option '" + k + "' must be a whole number, got: " + c);
+        }
+    }
+
+    /**
+     * Appends an action to a sequence. A {@link CallAction} that can be inlined is replaced by the called actions.
+     *
+     * @param out    the sequence
+     * @param action the action to append
+     */
+    public static void append(List<Action> out, Action action) {
+        List<Action> inlined = action instanceof CallAction call ? call.inline() : null;
+        if (inlined != null) {
+            out.addAll(inlined);
+        } else {
+            out.add(action);
+        }
+    }
+
+    /**
+     * Builds a nested action sequence from a raw YAML value. Accepts either a list of action maps or a single action
+     * map, each shaped like a top-level action ({@code type} plus {@code options}).
+     *
+     * @param raw          the raw YAML value
+     * @param placeholders the global placeholders
+     * @param calls        looks up the compiled actions of called macros
+     * @return the ordered list of actions
+     * @throws IllegalArgumentException if the value is not an action or a list of actions
+     */
+    private static List<Action> actions(Object raw, Placeholders placeholders, Calls calls)
+            throws IllegalArgumentException {
+        List<?> list = raw instanceof Map<?, ?> ? List.of(raw) : raw instanceof List<?> l ? l : null;
+        if (list == null) throw new IllegalArgumentException("Expected an action or a list of actions, got: " + raw);
+        List<Action> out = new ArrayList<>(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            try {
+                append(out, fromSpec(spec(list.get(i)), placeholders, calls));
+            } catch (IllegalArgumentException e) {
+                if (raw instanceof Map<?, ?>) throw e;
+                throw new IllegalArgumentException("action " + (i + 1) + ": " + e.getMessage(), e);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Builds an optional nested action sequence from an option.
+     *
+     * @param opt          the options map
+     * @param k            the key
+     * @param placeholders the global placeholders
+     * @param calls        looks up the compiled actions of called macros
+     * @return the ordered list of actions, empty if the option is missing
+     * @throws IllegalArgumentException if the value is not an action or a list of actions
+     */
+    private static List<Action> branch(Map<String, Object> opt, String k, Placeholders placeholders, Calls calls)
+            throws IllegalArgumentException {
+        Object raw = opt == null ? null : opt.get(k);
+        if (raw == null) return List.of();
+        try {
+            return actions(raw, placeholders, calls);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(k + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Converts a raw YAML map into an {@code ActionSpec}.
+     *
+     * @param raw the raw YAML value
+     * @return the action specification
+     * @throws IllegalArgumentException if the value is not a map with a type
+     */
+    @SuppressWarnings("unchecked")
+    private static ActionSpec spec(Object raw) throws IllegalArgumentException {
+        if (raw instanceof ActionSpec s) return s;
+        if (!(raw instanceof Map<?, ?> m)) {
+            throw new IllegalArgumentException("Expected an action map, got: " + raw);
+        }
+        ActionSpec s = new ActionSpec();
+        s.setType(m.get("type") == null ? null : String.valueOf(m.get("type")));
+        Object options = m.get("options");
+        if (options != null && !(options instanceof Map<?, ?>)) {
+            throw new IllegalArgumentException("Action options must be a map, got: " + options);
+        }
+        s.setOptions((Map<String, Object>) options);
+        return s;
+    }
+
+    /**
+     * Helper to extract a string value that must be present and not blank.
+     *
+     * @param m the options map
+     * @param k the key
+     * @return the string value
+     * @throws IllegalArgumentException if the key is missing or blank
+     */
+    private static String required(Map<String, Object> m, String k) throws IllegalArgumentException {
+        String v = str(m, k, null);
+        if (v == null || v.isBlank()) throw new IllegalArgumentException("Missing required option '" + k + "'");
+        return v;
+    }
+
     /**
      * Helper to extract a string value from the options map with a default.
      *
@@ -59,22 +347,92 @@ public class ActionFactory {
         return v == null ? def : String.valueOf(v);
     }
 
+    /**
+     * Helper to extract a list of strings. A single value is treated as a one-element list.
+     *
+     * @param m the options map
+     * @param k the key
+     * @return the values, empty if the key is missing
+     * @throws IllegalArgumentException if a list element is blank
+     */
+    private static List<String> strings(Map<String, Object> m, String k) throws IllegalArgumentException {
+        Object v = m == null ? null : m.get(k);
+        if (v == null) return List.of();
+        List<String> out = new ArrayList<>();
+        for (Object o : v instanceof List<?> list ? list : List.of(v)) {
+            String s = o == null ? "" : String.valueOf(o);
+            if (s.isBlank()) throw new IllegalArgumentException("Option '" + k + "' must not contain blank values");
+            out.add(s);
+        }
+        return out;
+    }
+
+    /**
+     * Helper to extract a bounded whole number from the options map with a default.
+     *
+     * @param m   the options map
+     * @param k   the key
+     * @param def the default value if key is missing or null
+     * @param min the smallest allowed value
+     * @return the value
+     * @throws IllegalArgumentException if the value is not a whole number, is below the minimum or too large
+     */
+    private static long range(Map<String, Object> m, String k, long def, long min) throws IllegalArgumentException {
+        long v = num(m, k, def);
+        if (v < min) throw new IllegalArgumentException("Option '" + k + "' must be at least " + min + ", got: " + v);
+        if (v > Integer.MAX_VALUE) throw new IllegalArgumentException("Option '" + k + "' is too large: " + v);
+        return v;
+    }
+
+    /**
+     * Helper to extract a boolean value from the options map with a default.
+     *
+     * @param m   the options map
+     * @param k   the key
+     * @param def the default value if key is missing or null
+     * @return the boolean value
+     * @throws IllegalArgumentException if the value is neither true nor false
+     */
+    private static boolean bool(Map<String, Object> m, String k, boolean def) throws IllegalArgumentException {
+        Object v = m == null ? null : m.get(k);
+        if (v == null) return def;
+        if (v instanceof Boolean) return (Boolean) v;
+        String s = String.valueOf(v).trim();
+        if (s.equalsIgnoreCase("true")) return true;
+        if (s.equalsIgnoreCase("false")) return false;
+        throw new IllegalArgumentException("Option '" + k + "' must be true or false, got: " + v);
+    }
+
     /**
      * Helper to extract a numeric (long) value from the options map with a default.
      *
      * @param m   the options map
      * @param k   the key
-     * @param def the default value if key is missing, null, or unparsable
+     * @param def the default value if key is missing or null
      * @return the long value
+     * @throws IllegalArgumentException if the value is not a whole number
      */
-    private static long num(Map<String, Object> m, String k, long def) {
+    private static long num(Map<String, Object> m, String k, long def) throws IllegalArgumentException {
         Object v = m == null ? null : m.get(k);
         if (v == null) return def;
-        if (v instanceof Number) return ((Number) v).longValue();
+        if (v instanceof Integer || v instanceof Long) return ((Number) v).longValue();
         try {
-            return Long.parseLong(String.valueOf(v));
-        } catch (Exception e) {
-            return def;
+            return Long.parseLong(String.valueOf(v).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option '" + k + "' must be a whole number, got: " + v);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Looks up the compiled actions of a macro called by a {@code call} action.
+     */
+    @FunctionalInterface
+    public interface Calls {
+        /**
+         * @param name the called macro's name as written in the configuration
+         * @return the macro's compiled actions
+         * @throws IllegalArgumentException if there is no such macro, it does not compile, or calling it would recurse
+         */
+        List<Action> actions(String name) throws IllegalArgumentException;
+    }
+}
@@ -0,0 +1,132 @@
+package top.ourisland.litemacro.actions;
+
+import top.ourisland.litemacro.runtime.I18n;
+import top.ourisland.litemacro.runtime.InvocationContext;
+import top.ourisland.litemacro.runtime.RichText;
+import top.ourisland.litemacro.runtime.Template;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import net.kyori.adventure.audience.Audience;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Action that sends a chat message to many players: everyone on the proxy, everyone on a server or server group, and
+ * optionally only those with a permission.
+ * <p>
+ * The message is rendered as few times as possible and handed to an Adventure {@link Audience} that forwards the same
+ * component to every recipient. When player placeholders ({@code {player}}, {@code {server}}, ...) are resolved for
+ * each recipient, recipients are grouped by the values of those placeholders and the message is rendered once per
+ * group; a message without such placeholders is rendered once in total.
+ */
+public class BroadcastAction implements Action {
+
+    /**
+     * The message to send.
+     */
+    private final RichText text;
+
+    /**
+     * The server or server group whose players receive the message; blank for every player on the proxy.
+     */
+    private final Template server;
+
+    /**
+     * The permission recipients must have, or null for none.
+     */
+    private final String permission;
+
+    /**
+     * Whether player placeholders are resolved for each recipient rather than for whoever ran the macro.
+     */
+    private final boolean perPlayer;
+
+    /**
+     * Constructs a broadcast action.
+     *
+     * @param text       the compiled message to send
+     * @param server     the compiled name of the server or server group to send to; blank for the whole proxy
+     * @param permission the permission recipients must have, or null for none
+     * @param perPlayer  whether player placeholders are resolved for each recipient
+     */
+    public BroadcastAction(RichText text, Template server, String permission, boolean perPlayer) {
+        this.text = text;
+        this.server = server;
+        this.permission = permission;
+        this.perPlayer = perPlayer && text.isPersonal();
+    }
+
+    /**
+     * Sends the message. If the server does not exist, a message is sent to the source and nothing happens.
+     *
+     * @param ctx the invocation context
+     * @return {@link Action#DONE}
+     */
+    @Override
+    public CompletionStage<?> execute(InvocationContext ctx) {
+        List<Player> recipients = recipients(ctx);
+        if (recipients == null || recipients.isEmpty()) return DONE;
+
+        if (!perPlayer) {
+            Audience.audience(recipients).sendMessage(text.render(ctx));
+            return DONE;
+        }
+
+        // One rendering context and one audience per distinct set of placeholder values
+        Map<String, Group> groups = new HashMap<>();
+        for (Player p : recipients) {
+            InvocationContext pc = ctx.withSource(p);
+            Group g = groups.computeIfAbsent(text.personalKey(pc), k -> new Group(pc, new ArrayList<>()));
+            g.members().add(p);
+        }
+        for (Group g : groups.values()) {
+            Audience.audience(g.members()).sendMessage(text.render(g.ctx()));
+        }
+        return DONE;
+    }
+
+    /**
+     * @return the players that receive the message, or null if the server does not exist
+     */
+    private List<Player> recipients(InvocationContext ctx) {
+        List<Player> out = new ArrayList<>();
+        if (server.isBlank()) {
+            filter(ctx.server().getAllPlayers(), out);
+            return out;
+        }
+        String name = ctx.render(server);
+        boolean found = false;
+        for (String member : ctx.runtime().groups().members(name)) {
+            Optional<RegisteredServer> srv = ctx.server().getServer(member);
+            if (srv.isEmpty()) continue;
+            found = true;
+            filter(srv.get().getPlayersConnected(), out);
+        }
+        if (!found) {
+            ctx.source().sendMessage(I18n.lang(ctx.source(), "litemacro.action.transfer.server_not_found", name));
+            return null;
+        }
+        return out;
+    }
+
+    private void filter(Collection<Player> players, List<Player> out) {
+        for (Player p : players) {
+            if (permission == null || p.hasPermission(permission)) out.add(p);
+        }
+    }
+
+    /**
+     * Recipients sharing one rendering of the message.
+     *
+     * @param ctx     the context the message is rendered against, bound to the first recipient of the group
+     * @param members the recipients
+     */
+    private record Group(InvocationContext ctx, List<Player> members) {
+    }
+}
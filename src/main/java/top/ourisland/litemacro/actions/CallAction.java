@@ -0,0 +1,107 @@
+package top.ourisland.litemacro.actions;
+
+import top.ourisland.litemacro.runtime.InvocationContext;
+import top.ourisland.litemacro.runtime.MacroRunner;
+import top.ourisland.litemacro.runtime.Template;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.regex.Pattern;
+
+/**
+ * Action that runs the actions of another macro directly, without dispatching a command. The callee's actions are
+ * linked when the configuration is compiled and run in their own {@link MacroRunner}, and the outer sequence continues
+ * once they have finished.
+ * <p>
+ * Without arguments the callee shares the caller's invocation context; with arguments it runs in a copy of the context
+ * whose command arguments are replaced by the rendered ones. Both share the run (for cancellation) and the placeholder
+ * memo, since resolved placeholders do not depend on the arguments. A call sharing the context whose callee has at most
+ * {@link #INLINE_LIMIT} actions is replaced by those actions when the caller is compiled, see {@link #inline()}.
+ */
+public class CallAction implements Action {
+    /**
+     * Largest callee, in actions, that is spliced into the caller instead of being called.
+     */
+    public static final int INLINE_LIMIT = 8;
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final String macro;
+    private final List<Action> actions;
+    private final Template[] args;
+    private final boolean split;
+    private final long minDuration;
+
+    /**
+     * Constructs a call action.
+     *
+     * @param macro   the called macro's name, for diagnostics
+     * @param actions the called macro's compiled actions
+     * @param args    the argument templates, or null to share the caller's arguments
+     * @param split   true if {@code args} is a single template whose rendering is split on whitespace into arguments,
+     *                false if each template renders one argument
+     */
+    public CallAction(String macro, List<Action> actions, Template[] args, boolean split) {
+        this.macro = macro;
+        this.actions = actions;
+        this.args = args;
+        this.split = split;
+        this.minDuration = Action.minDurationMillis(actions);
+    }
+
+    /**
+     * Runs the called macro's actions.
+     *
+     * @param ctx the caller's invocation context
+     * @return a stage completing when the called actions have finished
+     */
+    @Override
+    public CompletionStage<?> execute(InvocationContext ctx) {
+        if (actions.isEmpty()) return DONE;
+        InvocationContext callee = args == null
+                ? ctx
+                : new InvocationContext(ctx.runtime(), ctx.source(), render(ctx), ctx.run(), ctx.memo(), ctx.loop());
+        return new MacroRunner(callee, actions).start();
+    }
+
+    /**
+     * Renders the arguments passed to the callee.
+     *
+     * @param ctx the caller's invocation context
+     * @return the callee's arguments
+     */
+    private String[] render(InvocationContext ctx) {
+        if (split) {
+            String line = args.length == 0 ? "" : args[0].render(ctx).trim();
+            return line.isEmpty() ? new String[0] : WHITESPACE.split(line);
+        }
+        String[] out = new String[args.length];
+        for (int i = 0; i < out.length; i++) out[i] = args[i].render(ctx);
+        return out;
+    }
+
+    /**
+     * Returns the actions to splice into the caller in place of this call. Only calls sharing the caller's context
+     * can be inlined, since the callee then runs with exactly the caller's context either way.
+     *
+     * @return the callee's actions, or null if the call must stay a call
+     */
+    public List<Action> inline() {
+        return args == null && actions.size() <= INLINE_LIMIT ? actions : null;
+    }
+
+    /**
+     * @return the called macro's name
+     */
+    public String macro() {
+        return macro;
+    }
+
+    /**
+     * @return the called macro's minimum duration
+     */
+    @Override
+    public long minDurationMillis() {
+        return minDuration;
+    }
+}
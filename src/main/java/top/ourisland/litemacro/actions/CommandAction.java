@@ -1,36 +1,80 @@
 package top.ourisland.litemacro.actions;
 
 import top.ourisland.litemacro.runtime.InvocationContext;
+import top.ourisland.litemacro.runtime.Template;
 import com.velocitypowered.api.command.CommandSource;
+import com.velocitypowered.api.proxy.Player;
+
+import java.util.Locale;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Action that executes a Velocity command either as console or the invoking player.
- * Placeholders in the raw command are expanded using the {@code InvocationContext}.
+ * Placeholders in the command template are expanded using the {@code InvocationContext}.
+ * By default the macro waits for the command to finish before running the next action.
  */
 public class CommandAction implements Action {
-    private final String rawCommand;
-    private final String runAs; // console / player
+    private final Template command;
+    private final RunAs runAs;
+    private final boolean await;
 
     /**
      * Constructs a command action.
      *
-     * @param rawCommand the command to execute (without leading slash)
-     * @param runAs      either "console" or "player"
+     * @param command the compiled command template to execute (without leading slash)
+     * @param runAs   who executes the command
+     * @param await   whether the macro waits for the command to finish
      */
-    public CommandAction(String rawCommand, String runAs) {
-        this.rawCommand = rawCommand;
-        this.runAs = runAs == null ? "console" : runAs.toLowerCase();
+    public CommandAction(Template command, RunAs runAs, boolean await) {
+        this.command = command;
+        this.runAs = runAs;
+        this.await = await;
     }
 
     /**
-     * Executes the configured command asynchronously using Velocity's command manager.
+     * Executes the configured command asynchronously using Velocity's command manager, and records it in the audit
+     * log.
      *
      * @param ctx the invocation context (used for placeholder expansion and source)
+     * @return the command's completion when awaiting, otherwise {@link Action#DONE}
      */
     @Override
-    public void execute(InvocationContext ctx) {
-        String cmd = ctx.replacePlaceholders(rawCommand);
-        CommandSource source = "player".equals(runAs) && ctx.player().isPresent() ? ctx.player().get() : ctx.server().getConsoleCommandSource();
-        ctx.server().getCommandManager().executeAsync(source, cmd);
+    public CompletionStage<?> execute(InvocationContext ctx) {
+        String cmd = ctx.render(command);
+        CommandSource source = runAs == RunAs.PLAYER && ctx.player().isPresent()
+                ? ctx.player().get()
+                : ctx.server().getConsoleCommandSource();
+        ctx.runtime().audit().command(ctx.source(), ctx.run().macro(), cmd, !(source instanceof Player));
+        CompletionStage<Boolean> result = ctx.server().getCommandManager().executeAsync(source, cmd);
+        return await ? result : DONE;
+    }
+
+    /**
+     * Who a command is executed as.
+     */
+    public enum RunAs {
+        /**
+         * The proxy console.
+         */
+        CONSOLE,
+        /**
+         * The invoking player; falls back to the console when the macro was not run by a player.
+         */
+        PLAYER;
+
+        /**
+         * @param s "console" or "player", case-insensitive; null or blank means console
+         * @return the matching value
+         * @throws IllegalArgumentException if the value is not recognised
+         */
+        public static RunAs parse(String s) throws IllegalArgumentException {
+            if (s == null || s.isBlank()) return CONSOLE;
+            return switch (s.trim().toLowerCase(Locale.ROOT)) {
+                case "console" -> CONSOLE;
+                case "player" -> PLAYER;
+                default -> throw new IllegalArgumentException(
+                        "Option 'run_as' must be 'console' or 'player', got: " + s);
+            };
+        }
     }
 }
\ No newline at end of file
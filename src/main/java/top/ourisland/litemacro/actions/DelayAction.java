@@ -2,6 +2,8 @@ package top.ourisland.litemacro.actions;
 
 import top.ourisland.litemacro.runtime.InvocationContext;
 
+import java.util.concurrent.CompletionStage;
+
 /**
  * Action representing a non-blocking delay between actions.
  * Execution itself is a no-op; the delay is communicated via {@link #delayMillis()}.
@@ -22,9 +24,12 @@ public class DelayAction implements Action {
      * No-op; the scheduler uses {@link #delayMillis()} to pause the sequence.
      *
      * @param ctx the invocation context (unused)
+     * @return {@link Action#DONE}
      */
     @Override
-    public void execute(InvocationContext ctx) { /* no-op */ }
+    public CompletionStage<?> execute(InvocationContext ctx) {
+        return DONE;
+    }
 
     /**
      * @return the configured delay in milliseconds
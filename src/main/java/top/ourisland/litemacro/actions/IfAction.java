@@ -0,0 +1,52 @@
+package top.ourisland.litemacro.actions;
+
+import top.ourisland.litemacro.runtime.Condition;
+import top.ourisland.litemacro.runtime.InvocationContext;
+import top.ourisland.litemacro.runtime.MacroRunner;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Action that runs one of two nested action sequences depending on a {@link Condition}. The chosen sequence runs in its
+ * own {@link MacroRunner} sharing the invocation context, and the outer sequence continues once it has finished.
+ */
+public class IfAction implements Action {
+    private final Condition condition;
+    private final List<Action> then;
+    private final List<Action> otherwise;
+
+    /**
+     * Constructs a conditional action.
+     *
+     * @param condition the compiled condition
+     * @param then      the actions to run if the condition holds
+     * @param otherwise the actions to run if it does not
+     */
+    public IfAction(Condition condition, List<Action> then, List<Action> otherwise) {
+        this.condition = condition;
+        this.then = then;
+        this.otherwise = otherwise;
+    }
+
+    /**
+     * Evaluates the condition and starts the matching sequence.
+     *
+     * @param ctx the invocation context shared with the chosen sequence
+     * @return a stage completing when the chosen sequence has finished
+     */
+    @Override
+    public CompletionStage<?> execute(InvocationContext ctx) {
+        List<Action> branch = condition.test(ctx) ? then : otherwise;
+        if (branch.isEmpty()) return DONE;
+        return new MacroRunner(ctx, branch).start();
+    }
+
+    /**
+     * @return the shorter of the two sequences' minimum durations
+     */
+    @Override
+    public long minDurationMillis() {
+        return Math.min(Action.minDurationMillis(then), Action.minDurationMillis(otherwise));
+    }
+}
@@ -0,0 +1,322 @@
+package top.ourisland.litemacro.actions;
+
+import top.ourisland.litemacro.runtime.I18n;
+import top.ourisland.litemacro.runtime.InvocationContext;
+import top.ourisland.litemacro.runtime.MacroRunner;
+import top.ourisland.litemacro.runtime.Template;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Action that runs a nested action sequence once for each item of a list: the players on the proxy or on a server,
+ * a list of servers, or a range of numbers. Each iteration runs in its own {@link MacroRunner} with a context whose
+ * {@link InvocationContext.Loop} holds the item; when iterating players, the iteration also runs on behalf of the
+ * player, so its actions address that player.
+ * <p>
+ * Iterations are started in batches of at most {@code batch} per tick of the shared
+ * {@link top.ourisland.litemacro.runtime.DelayScheduler} (see
+ * {@link top.ourisland.litemacro.runtime.DelayScheduler#scheduleNextTick(Runnable)}), so a loop over thousands of
+ * players is spread over many ticks instead of running in one burst. By default an iteration starts once the previous
+ * one has finished; a parallel loop starts every iteration of a batch at once. The loop stops starting iterations once
+ * its run is cancelled.
+ */
+public class LoopAction implements Action {
+    /**
+     * Largest number of iterations a single loop may run.
+     */
+    public static final int MAX_ITERATIONS = 100_000;
+
+    private static final Pattern SEPARATORS = Pattern.compile("[,\\s]+");
+
+    private final Items items;
+    private final List<Action> actions;
+    private final int batch;
+    private final boolean parallel;
+    private final boolean await;
+    private final long minDuration;
+
+    /**
+     * Supplies the items of one run of a loop.
+     */
+    @FunctionalInterface
+    public interface Items {
+        /**
+         * @param ctx the invocation context
+         * @return the items, each a {@link Player} or the text of the item, or null if the loop cannot run; the source
+         * has then been told why
+         */
+        List<?> resolve(InvocationContext ctx);
+    }
+
+    /**
+     * Constructs a loop action.
+     *
+     * @param items         the items to iterate over
+     * @param actions       the actions to run for each item
+     * @param batch         the maximum number of iterations started per scheduler tick, 0 for no limit
+     * @param parallel      true to start the iterations of a batch at once, false to run them one after another
+     * @param await         whether the macro waits for the loop to finish
+     * @param minIterations the number of iterations the loop runs at least, used for {@link #minDurationMillis()}
+     */
+    public LoopAction(Items items, List<Action> actions, int batch, boolean parallel, boolean await,
+                      long minIterations) {
+        this.items = items;
+        this.actions = actions;
+        this.batch = batch <= 0 ? Integer.MAX_VALUE : batch;
+        this.parallel = parallel;
+        this.await = await;
+        long body = Action.minDurationMillis(actions);
+        this.minDuration = !await || minIterations <= 0 ? 0L : parallel ? body : body * minIterations;
+    }
+
+    /**
+     * Iterates over the players on the proxy, or on a server or the member servers of a group.
+     *
+     * @param server the server or group name, blank for every player on the proxy
+     * @return the items
+     */
+    public static Items players(Template server) {
+        return ctx -> {
+            if (server.isBlank()) return new ArrayList<>(ctx.server().getAllPlayers());
+            String name = ctx.render(server);
+            List<Player> out = new ArrayList<>();
+            boolean found = false;
+            for (String member : ctx.runtime().groups().members(name)) {
+                Optional<RegisteredServer> srv = ctx.server().getServer(member);
+                if (srv.isEmpty()) continue;
+                found = true;
+                out.addAll(srv.get().getPlayersConnected());
+            }
+            if (!found) {
+                ctx.source().sendMessage(I18n.lang(ctx.source(), "litemacro.action.transfer.server_not_found", name));
+                return null;
+            }
+            return out;
+        };
+    }
+
+    /**
+     * Iterates over server names. Each template may render to several names separated by commas or spaces, and a
+     * group name stands for its member servers.
+     *
+     * @param servers the compiled server names
+     * @return the items
+     */
+    public static Items servers(List<Template> servers) {
+        return ctx -> {
+            List<String> out = new ArrayList<>();
+            for (Template t : servers) {
+                for (String name : SEPARATORS.split(ctx.render(t))) {
+                    if (!name.isEmpty()) out.addAll(ctx.runtime().groups().members(name));
+                }
+            }
+            return out;
+        };
+    }
+
+    /**
+     * Iterates over a range of whole numbers, both ends included.
+     *
+     * @param from the compiled first number
+     * @param to   the compiled last number
+     * @param step the compiled distance between two numbers; negative to count down, never 0
+     * @return the items
+     */
+    public static Items range(Template from, Template to, Template step) {
+        return ctx -> {
+            Long first = number(ctx, from);
+            Long last = first == null ? null : number(ctx, to);
+            Long by = last == null ? null : number(ctx, step);
+            if (by == null) return null;
+            long count = count(first, last, by);
+            if (count < 0) {
+                ctx.source().sendMessage(I18n.lang(ctx.source(), "litemacro.action.loop.zero_step"));
+                return null;
+            }
+            if (count > MAX_ITERATIONS) {
+                ctx.source().sendMessage(I18n.lang(ctx.source(), "litemacro.action.loop.too_many", count,
+                        MAX_ITERATIONS));
+                return null;
+            }
+            return new Range(first, by, (int) count);
+        };
+    }
+
+    /**
+     * Counts the numbers of a range.
+     *
+     * @param from the first number
+     * @param to   the last number
+     * @param step the distance between two numbers
+     * @return the count, 0 if the range is empty, {@link Long#MAX_VALUE} if it is too large to count, or -1 if the
+     * step is 0
+     */
+    public static long count(long from, long to, long step) {
+        if (step == 0) return -1;
+        if (step > 0 ? to < from : to > from) return 0;
+        try {
+            return Math.abs(Math.subtractExact(to, from) / step) + 1;
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static Long number(InvocationContext ctx, Template t) {
+        String s = ctx.render(t).trim();
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            ctx.source().sendMessage(I18n.lang(ctx.source(), "litemacro.action.loop.not_a_number", s));
+            return null;
+        }
+    }
+
+    /**
+     * Starts the loop.
+     *
+     * @param ctx the invocation context
+     * @return the completion of the last iteration when awaiting, otherwise {@link Action#DONE}
+     */
+    @Override
+    public CompletionStage<?> execute(InvocationContext ctx) {
+        List<?> list = items.resolve(ctx);
+        if (list == null || list.isEmpty()) return DONE;
+        CompletionStage<?> done = new Run(ctx, list).start();
+        return await ? done : DONE;
+    }
+
+    /**
+     * @return the minimum duration of the iterations the loop runs at least, 0 when not awaiting
+     */
+    @Override
+    public long minDurationMillis() {
+        return minDuration;
+    }
+
+    /**
+     * The state of one run of the loop. A sequential run has at most one iteration in flight, so its fields are only
+     * touched by one thread at a time; a parallel run counts its unfinished iterations atomically.
+     */
+    private final class Run {
+        private final InvocationContext ctx;
+        private final List<?> list;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final Runnable tick = this::tick;
+
+        /**
+         * Unfinished iterations of a parallel run, plus one until every iteration has been started.
+         */
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        private int next;
+        private int budget;
+
+        Run(InvocationContext ctx, List<?> list) {
+            this.ctx = ctx;
+            this.list = list;
+        }
+
+        CompletableFuture<Void> start() {
+            tick();
+            return done;
+        }
+
+        /**
+         * Starts the next batch of iterations.
+         */
+        private void tick() {
+            budget = batch;
+            if (parallel) {
+                startBatch();
+            } else {
+                step();
+            }
+        }
+
+        /**
+         * Runs iterations one after another until the batch is used up, an iteration is still running, or the loop
+         * is over.
+         */
+        private void step() {
+            while (next < list.size() && !ctx.run().isCancelled()) {
+                if (budget-- == 0) {
+                    ctx.runtime().delays().scheduleNextTick(tick);
+                    return;
+                }
+                CompletableFuture<Void> f = iteration(next++);
+                if (!f.isDone()) {
+                    f.whenComplete((r, err) -> step());
+                    return;
+                }
+            }
+            done.complete(null);
+        }
+
+        /**
+         * Starts a batch of iterations at once and schedules the next batch.
+         */
+        private void startBatch() {
+            while (next < list.size() && !ctx.run().isCancelled()) {
+                if (budget-- == 0) {
+                    ctx.runtime().delays().scheduleNextTick(tick);
+                    return;
+                }
+                pending.incrementAndGet();
+                iteration(next++).whenComplete((r, err) -> finished());
+            }
+            finished();
+        }
+
+        private void finished() {
+            if (pending.decrementAndGet() == 0) done.complete(null);
+        }
+
+        /**
+         * Starts one iteration.
+         *
+         * @param index the position of the item
+         * @return the iteration's completion
+         */
+        private CompletableFuture<Void> iteration(int index) {
+            Object item = list.get(index);
+            InvocationContext c = item instanceof Player p
+                    ? ctx.withLoop(new InvocationContext.Loop(p.getUsername(), index), p)
+                    : ctx.withLoop(new InvocationContext.Loop(String.valueOf(item), index), ctx.source());
+            return new MacroRunner(c, actions).start();
+        }
+    }
+
+    /**
+     * The numbers of a range, computed on access.
+     */
+    private static final class Range extends AbstractList<String> {
+        private final long from;
+        private final long step;
+        private final int size;
+
+        Range(long from, long step, int size) {
+            this.from = from;
+            this.step = step;
+            this.size = size;
+        }
+
+        @Override
+        public String get(int index) {
+            return Long.toString(from + step * index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
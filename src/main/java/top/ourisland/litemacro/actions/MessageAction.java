@@ -1,31 +1,36 @@
 package top.ourisland.litemacro.actions;
 
 import top.ourisland.litemacro.runtime.InvocationContext;
-import net.kyori.adventure.text.Component;
+import top.ourisland.litemacro.runtime.RichText;
+
+import java.util.concurrent.CompletionStage;
 
 /**
  * Action that sends a chat message to the invoking {@code CommandSource}.
- * Supports placeholder expansion.
+ * Supports placeholder expansion and rich-text formatting (see {@link RichText}).
  */
 public class MessageAction implements Action {
-    private final String text;
+    private final RichText text;
 
     /**
      * Constructs a message action.
      *
-     * @param text the message template to send
+     * @param text the compiled message to send
      */
-    public MessageAction(String text) {
+    public MessageAction(RichText text) {
         this.text = text;
     }
 
     /**
-     * Sends the message to the source after expanding placeholders.
+     * Sends the message to the source after expanding placeholders. A message without placeholders is sent as the
+     * same pre-built component every time.
      *
      * @param ctx the invocation context
+     * @return {@link Action#DONE}
      */
     @Override
-    public void execute(InvocationContext ctx) {
-        ctx.source().sendMessage(Component.text(ctx.replacePlaceholders(text)));
+    public CompletionStage<?> execute(InvocationContext ctx) {
+        ctx.source().sendMessage(text.render(ctx));
+        return DONE;
     }
-}
\ No newline at end of file
+}
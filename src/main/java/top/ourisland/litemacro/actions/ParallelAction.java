@@ -0,0 +1,59 @@
+package top.ourisland.litemacro.actions;
+
+import top.ourisland.litemacro.runtime.InvocationContext;
+import top.ourisland.litemacro.runtime.MacroRunner;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Action that starts several nested action sequences (branches) at the same time. Each branch runs in its own
+ * {@link MacroRunner} sharing the invocation context, and the outer sequence continues once every branch has finished,
+ * or once the first one has finished when configured to do so.
+ */
+public class ParallelAction implements Action {
+    private final List<List<Action>> branches;
+    private final boolean first;
+
+    /**
+     * Constructs a parallel action.
+     *
+     * @param branches the nested action sequences to run concurrently
+     * @param first    true to continue after the first branch finishes, false to wait for all of them
+     */
+    public ParallelAction(List<List<Action>> branches, boolean first) {
+        this.branches = branches;
+        this.first = first;
+    }
+
+    /**
+     * Starts all branches and returns a stage that completes according to the configured wait mode.
+     *
+     * @param ctx the invocation context shared by all branches
+     * @return a stage completing when all (or the first) branches have finished
+     */
+    @Override
+    public CompletionStage<?> execute(InvocationContext ctx) {
+        if (branches.isEmpty()) return DONE;
+        CompletableFuture<?>[] running = new CompletableFuture<?>[branches.size()];
+        for (int i = 0; i < running.length; i++) {
+            running[i] = new MacroRunner(ctx, branches.get(i)).start();
+        }
+        return first ? CompletableFuture.anyOf(running) : CompletableFuture.allOf(running);
+    }
+
+    /**
+     * @return the longest branch's minimum duration when waiting for all branches, the shortest when waiting for the
+     * first
+     */
+    @Override
+    public long minDurationMillis() {
+        long result = first ? Long.MAX_VALUE : 0L;
+        for (List<Action> branch : branches) {
+            long d = Action.minDurationMillis(branch);
+            result = first ? Math.min(result, d) : Math.max(result, d);
+        }
+        return branches.isEmpty() ? 0L : result;
+    }
+}
@@ -2,36 +2,48 @@ package top.ourisland.litemacro.actions;
 
 import top.ourisland.litemacro.runtime.I18n;
 import top.ourisland.litemacro.runtime.InvocationContext;
+import top.ourisland.litemacro.runtime.Template;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.server.RegisteredServer;
 
 import java.util.Optional;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Represents an action to transfer a player to another server. This action attempts to transfer the player to a
- * specified target server and optionally sends a message to the player before or after the transfer.
+ * specified target server and optionally sends a message to the player before or after the transfer. The target may
+ * also name a server group, in which case a member is chosen by the group's strategy from cached server state (see
+ * {@link top.ourisland.litemacro.runtime.ServerGroups}). By default the macro waits for the connection attempt to
+ * finish before running the next action.
  */
 public class TransferAction implements Action {
 
     /**
-     * The name of the target server to transfer the player to.
+     * The name of the target server to transfer the player to, or of a server group to pick a member of.
      */
-    private final String targetName;
+    private final Template targetName;
 
     /**
-     * The message to send to the player before transfer. If null or empty, no message is sent.
+     * The message to send to the player before transfer. If blank, no message is sent.
      */
-    private final String message;
+    private final Template message;
+
+    /**
+     * Whether the macro waits for the connection attempt to finish.
+     */
+    private final boolean await;
 
     /**
      * Constructs a new {@code TransferAction} with the given target server name and message.
      *
-     * @param targetName the name of the target server to transfer the player to
-     * @param message    the message to send to the player before transfer (can be null or empty)
+     * @param targetName the compiled name of the target server to transfer the player to
+     * @param message    the compiled message to send to the player before transfer (may be blank)
+     * @param await      whether the macro waits for the connection attempt to finish
      */
-    public TransferAction(String targetName, String message) {
+    public TransferAction(Template targetName, Template message, boolean await) {
         this.targetName = targetName;
         this.message = message;
+        this.await = await;
     }
 
     /**
@@ -40,53 +52,57 @@ public class TransferAction implements Action {
      * transfer is successful, the player is connected to the target server.
      *
      * @param ctx the invocation context that provides access to the player, source, and other resources
+     * @return the connection attempt's completion when awaiting, otherwise {@link Action#DONE}
      */
     @Override
-    public void execute(InvocationContext ctx) {
+    public CompletionStage<?> execute(InvocationContext ctx) {
         Optional<Player> pOpt = ctx.player();
 
         // If no player is found in the context, send a message to the source and return
         if (pOpt.isEmpty()) {
-            ctx.source().sendMessage(I18n.lang("litemacro.action.transfer.need_player"));
-            return;
+            ctx.source().sendMessage(I18n.lang(ctx.source(), "litemacro.action.transfer.need_player"));
+            return DONE;
         }
 
-        // Resolve the target server name and check if it exists
-        String resolved = ctx.replacePlaceholders(targetName);
-        Optional<RegisteredServer> srvOpt = ctx.server().getServer(resolved);
+        Player player = pOpt.get();
+
+        // Resolve the target server or group name and check if it exists
+        String resolved = ctx.render(targetName);
+        Optional<RegisteredServer> srvOpt = ctx.runtime().groups().resolve(resolved, player.getUniqueId());
 
         // If the server is not found, send a message to the source and return
         if (srvOpt.isEmpty()) {
-            ctx.source().sendMessage(I18n.lang("litemacro.action.transfer.server_not_found", resolved));
-            return;
+            ctx.source().sendMessage(I18n.lang(ctx.source(), "litemacro.action.transfer.server_not_found", resolved));
+            return DONE;
         }
 
-        Player player = pOpt.get();
-
         // If a message is provided, send it to the player
-        if (message != null && !message.isBlank()) {
-            player.sendMessage(I18n.prefix(ctx.replacePlaceholders(message)));
+        if (!message.isBlank()) {
+            player.sendMessage(I18n.prefix(player, ctx.render(message)));
         }
 
         // Resolve the target server and initiate the transfer
         RegisteredServer server = srvOpt.get();
-        player.createConnectionRequest(server)
+        CompletionStage<?> connection = player.createConnectionRequest(server)
                 .connect()
                 .whenComplete((result, err) -> {
                     // If an error occurs during connection, send an error message to the source
                     if (err != null) {
-                        ctx.source().sendMessage(I18n.lang("litemacro.action.transfer.failed_to_connect", err.getMessage()));
+                        ctx.source().sendMessage(I18n.lang(ctx.source(),
+                                "litemacro.action.transfer.failed_to_connect", err.getMessage()));
                         return;
                     }
                     // If the transfer result is not "SUCCESS", notify the source
                     try {
                         if (!"SUCCESS".equals(String.valueOf(result.getStatus()))) {
-                            ctx.source().sendMessage(I18n.lang("litemacro.action.transfer.failed", result.getStatus()));
+                            ctx.source().sendMessage(I18n.lang(ctx.source(),
+                                    "litemacro.action.transfer.failed", result.getStatus()));
                         }
                     } catch (Throwable t) {
                         // If there is an unexpected error, show the result status
-                        ctx.source().sendMessage(I18n.lang("litemacro.action.transfer.result", result));
+                        ctx.source().sendMessage(I18n.lang(ctx.source(), "litemacro.action.transfer.result", result));
                     }
                 });
+        return await ? connection : DONE;
     }
 }
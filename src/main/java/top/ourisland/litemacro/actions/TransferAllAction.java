@@ -0,0 +1,398 @@
+package top.ourisland.litemacro.actions;
+
+import top.ourisland.litemacro.runtime.I18n;
+import top.ourisland.litemacro.runtime.InvocationContext;
+import top.ourisland.litemacro.runtime.ServerGroups;
+import top.ourisland.litemacro.runtime.Template;
+import com.velocitypowered.api.proxy.ConnectionRequestBuilder;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves every player on a server, or on the whole proxy, to a target server or server group. For a group, each player
+ * is sent to the member chosen by the group's strategy at the time of its connection attempt.
+ * <p>
+ * Connection requests are started by a small pipeline instead of all at once: at most {@link Limits#concurrency()}
+ * requests are in flight, new requests are paced to {@link Limits#perSecond()}, a failed request is retried with
+ * exponential backoff, and a player that still cannot join the target is tried on each fallback server in turn. All
+ * waiting happens on the shared {@link top.ourisland.litemacro.runtime.DelayScheduler}, so no thread is ever blocked.
+ * When every player has been handled, a summary is sent to whoever ran the macro.
+ */
+public class TransferAllAction implements Action {
+
+    /**
+     * The server whose players are moved; blank for every player on the proxy.
+     */
+    private final Template from;
+
+    /**
+     * The name of the target server or server group.
+     */
+    private final Template target;
+
+    /**
+     * Servers tried in order when a player cannot join the target.
+     */
+    private final List<Template> fallbacks;
+
+    /**
+     * The message sent to each player before it is moved, rendered for that player. If blank, no message is sent.
+     */
+    private final Template message;
+
+    /**
+     * How fast players are moved.
+     */
+    private final Limits limits;
+
+    /**
+     * Whether the macro waits for every player to be handled.
+     */
+    private final boolean await;
+
+    /**
+     * Throughput limits of a bulk transfer.
+     *
+     * @param concurrency   maximum number of connection requests in flight, at least 1
+     * @param perSecond     maximum number of connection requests started per second; 0 for no limit
+     * @param retries       how often a failed request is retried on the same server
+     * @param backoffMillis delay before the first retry; doubled for every further retry
+     */
+    public record Limits(int concurrency, int perSecond, int retries, long backoffMillis) {
+    }
+
+    /**
+     * Constructs a new {@code TransferAllAction}.
+     *
+     * @param from      the compiled name of the server to move players from; blank for the whole proxy
+     * @param target    the compiled name of the target server or server group
+     * @param fallbacks the compiled names of the fallback servers, in order
+     * @param message   the compiled message to send to each player before it is moved (may be blank)
+     * @param limits    how fast players are moved
+     * @param await     whether the macro waits for every player to be handled
+     */
+    public TransferAllAction(Template from, Template target, List<Template> fallbacks, Template message, Limits limits,
+                             boolean await) {
+        this.from = from;
+        this.target = target;
+        this.fallbacks = List.copyOf(fallbacks);
+        this.message = message;
+        this.limits = limits;
+        this.await = await;
+    }
+
+    /**
+     * Starts moving the players. Players already on the target server are left alone. If the source or target server
+     * does not exist, a message is sent to the source and nothing happens; unknown fallback servers are reported and
+     * skipped.
+     *
+     * @param ctx the invocation context
+     * @return the completion of the whole transfer when awaiting, otherwise {@link Action#DONE}
+     */
+    @Override
+    public CompletionStage<?> execute(InvocationContext ctx) {
+        Collection<Player> source;
+        RegisteredServer origin = null;
+        if (from.isBlank()) {
+            source = ctx.server().getAllPlayers();
+        } else {
+            String name = ctx.render(from);
+            Optional<RegisteredServer> srv = ctx.server().getServer(name);
+            if (srv.isEmpty()) {
+                ctx.source().sendMessage(I18n.lang(ctx.source(), "litemacro.action.transfer.server_not_found", name));
+                return DONE;
+            }
+            origin = srv.get();
+            source = origin.getPlayersConnected();
+        }
+
+        ServerGroups groups = ctx.runtime().groups();
+        String targetName = ctx.render(target);
+        if (!groups.isGroup(targetName) && ctx.server().getServer(targetName).isEmpty()) {
+            ctx.source().sendMessage(I18n.lang(ctx.source(), "litemacro.action.transfer.server_not_found", targetName));
+            return DONE;
+        }
+        List<RegisteredServer> reserves = new ArrayList<>(fallbacks.size());
+        for (Template fallback : fallbacks) {
+            String name = ctx.render(fallback);
+            Optional<RegisteredServer> srv = ctx.server().getServer(name);
+            if (srv.isPresent()) {
+                // Falling back to the server being emptied would leave the player where it is
+                if (!srv.get().equals(origin)) reserves.add(srv.get());
+            } else {
+                ctx.source().sendMessage(I18n.lang(ctx.source(), "litemacro.action.transfer.server_not_found", name));
+            }
+        }
+
+        // Snapshot the players, skipping those already on the target (or on any member of the target group)
+        List<Player> players = new ArrayList<>(source.size());
+        for (Player p : source) {
+            boolean there = p.getCurrentServer()
+                    .map(c -> groups.contains(targetName, c.getServerInfo().getName()))
+                    .orElse(false);
+            if (!there) players.add(p);
+        }
+
+        Batch batch = new Batch(ctx, targetName, reserves, limits, message.isBlank() ? null : message);
+        CompletionStage<?> done = batch.start(players);
+        return await ? done : DONE;
+    }
+
+    /**
+     * The state of one bulk transfer. All fields are guarded by the batch's monitor; connection requests and their
+     * callbacks run outside it.
+     */
+    private static final class Batch {
+        private final InvocationContext ctx;
+        private final String targetName;
+        private final List<RegisteredServer> fallbacks;
+        private final Limits limits;
+        private final Template message;
+
+        /**
+         * The message as rendered once for every player, or null if it is {@link Template#isPersonal() personal} and
+         * rendered for each player instead.
+         */
+        private final String shared;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        /**
+         * Attempts ready to start, in order.
+         */
+        private final Deque<Attempt> ready = new ArrayDeque<>();
+
+        /**
+         * Time between two request starts, in nanoseconds; 0 when unlimited.
+         */
+        private final long interval;
+
+        /**
+         * How far the pacing may run ahead of the clock, allowing a burst of one second's worth of requests.
+         */
+        private final long tolerance;
+
+        /**
+         * Theoretical start time of the next request, as in the generic cell rate algorithm of
+         * {@link top.ourisland.litemacro.runtime.RateLimiter}.
+         */
+        private long nextStart;
+
+        private boolean wakeScheduled;
+
+        /**
+         * Whether a thread is inside {@link #pump()}, and whether another call asked it to go round once more.
+         */
+        private boolean pumping;
+        private boolean pumpAgain;
+        private int inFlight;
+        private int pending;
+        private int moved;
+        private int rerouted;
+        private int failed;
+        private int left;
+
+        Batch(InvocationContext ctx, String targetName, List<RegisteredServer> fallbacks, Limits limits,
+              Template message) {
+            this.ctx = ctx;
+            this.targetName = targetName;
+            this.fallbacks = fallbacks;
+            this.limits = limits;
+            this.message = message;
+            this.shared = message == null || message.isPersonal() ? null : message.render(ctx);
+            this.interval = limits.perSecond() > 0 ? TimeUnit.SECONDS.toNanos(1) / limits.perSecond() : 0L;
+            this.tolerance = interval * Math.max(0, limits.perSecond() - 1);
+            this.nextStart = System.nanoTime();
+        }
+
+        CompletionStage<Void> start(List<Player> players) {
+            synchronized (this) {
+                for (Player p : players) ready.add(new Attempt(p, 0, 0));
+                pending = players.size();
+            }
+            pump();
+            return done;
+        }
+
+        /**
+         * Starts as many ready attempts as the concurrency cap and the pacing allow. Called whenever one of them may
+         * have changed: on start, when a request completes, when a retry becomes due and when the pacing wakes up.
+         * <p>
+         * Only one thread pumps at a time. A call made while another is pumping, including one made further down the
+         * same stack because an attempt completed synchronously, only asks the pumping thread to go round once more,
+         * so the stack does not grow with the number of players.
+         */
+        private void pump() {
+            synchronized (this) {
+                if (pumping) {
+                    pumpAgain = true;
+                    return;
+                }
+                pumping = true;
+            }
+            for (; ; ) {
+                startReady();
+                synchronized (this) {
+                    if (!pumpAgain) {
+                        pumping = false;
+                        break;
+                    }
+                    pumpAgain = false;
+                }
+            }
+            finishIfDone();
+        }
+
+        /**
+         * One round of {@link #pump()}.
+         */
+        private void startReady() {
+            List<Attempt> starting = new ArrayList<>();
+            synchronized (this) {
+                if (ctx.run().isCancelled()) {
+                    // Players not yet moved stay where they are
+                    failed += ready.size();
+                    pending -= ready.size();
+                    ready.clear();
+                }
+                while (inFlight < limits.concurrency() && !ready.isEmpty()) {
+                    if (!ready.peek().player().isActive()) {
+                        ready.poll();
+                        pending--;
+                        left++;
+                        continue;
+                    }
+                    if (interval > 0) {
+                        long now = System.nanoTime();
+                        long base = Math.max(nextStart, now);
+                        if (base - now > tolerance) {
+                            if (!wakeScheduled) {
+                                wakeScheduled = true;
+                                long wait = TimeUnit.NANOSECONDS.toMillis(base - now - tolerance) + 1;
+                                ctx.runtime().delays().schedule(wait, this::wake);
+                            }
+                            break;
+                        }
+                        nextStart = base + interval;
+                    }
+                    inFlight++;
+                    starting.add(ready.poll());
+                }
+            }
+            for (Attempt a : starting) connect(a);
+        }
+
+        private void wake() {
+            synchronized (this) {
+                wakeScheduled = false;
+            }
+            pump();
+        }
+
+        private void connect(Attempt a) {
+            Player player = a.player();
+            if (message != null && a.server() == 0 && a.retry() == 0) {
+                String text = shared != null ? shared : message.render(ctx.withSource(player));
+                player.sendMessage(I18n.prefix(player, text));
+            }
+            RegisteredServer dest = a.server() == 0
+                    ? ctx.runtime().groups().resolve(targetName, player.getUniqueId()).orElse(null)
+                    : fallbacks.get(a.server() - 1);
+            if (dest == null) {
+                completed(a, false);
+                return;
+            }
+            CompletableFuture<ConnectionRequestBuilder.Result> request;
+            try {
+                request = player.createConnectionRequest(dest).connect();
+            } catch (Throwable t) {
+                completed(a, false);
+                return;
+            }
+            request.whenComplete((result, err) -> completed(a, err == null && succeeded(a, result)));
+        }
+
+        /**
+         * A player already on the target, say because it joined a group member on its own, counts as moved. Being
+         * already on a fallback does not count as rerouted, since the player was never evacuated.
+         */
+        private static boolean succeeded(Attempt a, ConnectionRequestBuilder.Result result) {
+            ConnectionRequestBuilder.Status status = result.getStatus();
+            return status == ConnectionRequestBuilder.Status.SUCCESS
+                    || (a.server() == 0 && status == ConnectionRequestBuilder.Status.ALREADY_CONNECTED);
+        }
+
+        private void completed(Attempt a, boolean success) {
+            Attempt next = null;
+            long backoff = 0L;
+            synchronized (this) {
+                inFlight--;
+                if (success) {
+                    pending--;
+                    if (a.server() == 0) moved++;
+                    else rerouted++;
+                } else if (!a.player().isActive()) {
+                    pending--;
+                    left++;
+                } else if (a.retry() < limits.retries()) {
+                    next = new Attempt(a.player(), a.server(), a.retry() + 1);
+                    backoff = limits.backoffMillis() << Math.min(a.retry(), 16);
+                } else if (a.server() < fallbacks.size()) {
+                    next = new Attempt(a.player(), a.server() + 1, 0);
+                } else {
+                    pending--;
+                    failed++;
+                }
+            }
+            if (next == null) {
+                pump();
+            } else if (backoff > 0) {
+                Attempt retry = next;
+                ctx.runtime().delays().schedule(backoff, () -> requeue(retry));
+                pump();
+            } else {
+                requeue(next);
+            }
+        }
+
+        private void requeue(Attempt a) {
+            synchronized (this) {
+                ready.add(a);
+            }
+            pump();
+        }
+
+        private void finishIfDone() {
+            int m, r, f, l;
+            synchronized (this) {
+                if (pending > 0 || done.isDone()) return;
+                m = moved;
+                r = rerouted;
+                f = failed;
+                l = left;
+            }
+            if (!done.complete(null)) return;
+            ctx.source().sendMessage(
+                    I18n.lang(ctx.source(), "litemacro.action.transfer_all.summary", m, targetName, r, f, l));
+        }
+
+        /**
+         * One connection attempt of one player.
+         *
+         * @param player the player
+         * @param server index into the server list: 0 for the target, then the fallbacks
+         * @param retry  how many times this server has already been tried
+         */
+        private record Attempt(Player player, int server, int retry) {
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package top.ourisland.litemacro.command;
+
+import top.ourisland.litemacro.LiteMacro;
+import top.ourisland.litemacro.runtime.I18n;
+import top.ourisland.litemacro.runtime.LatencyHistogram;
+import top.ourisland.litemacro.runtime.MacroRun;
+import top.ourisland.litemacro.runtime.MacroRuntime;
+import top.ourisland.litemacro.runtime.Metrics;
+import top.ourisland.litemacro.runtime.TimingWheel;
+import com.velocitypowered.api.command.CommandSource;
+import com.velocitypowered.api.command.SimpleCommand;
+import org.slf4j.Logger;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The "/litemacro" admin command. Supports the subcommands "reload" to hot-reload configuration and macros,
+ * "scheduler" to inspect the delay scheduler, "running"/"cancel" to list and stop in-flight macro runs, and "stats" to
+ * show invocation counts and latencies.
+ */
+public class AdminCommand implements SimpleCommand {
+    private static final String PERMISSION = "litemacro.admin";
+    private static final int STATS_TOP = 10;
+    private static final List<String> SUBCOMMANDS = List.of("reload", "scheduler", "running", "cancel", "stats");
+
+    private final LiteMacro plugin;
+    private final MacroRuntime runtime;
+    private final Logger logger;
+
+    /**
+     * @param plugin  the plugin instance, used to trigger reloads
+     * @param runtime the shared macro runtime
+     * @param logger  the logger
+     */
+    public AdminCommand(LiteMacro plugin, MacroRuntime runtime, Logger logger) {
+        this.plugin = plugin;
+        this.runtime = runtime;
+        this.logger = logger;
+    }
+
+    /**
+     * Dispatches to the requested subcommand after checking the admin permission.
+     *
+     * @param invocation the command invocation
+     */
+    @Override
+    public void execute(Invocation invocation) {
+        CommandSource source = invocation.source();
+        if (!source.hasPermission(PERMISSION)) {
+            source.sendMessage(I18n.lang(source, "litemacro.main.no_perms", PERMISSION));
+            return;
+        }
+        String[] args = invocation.arguments();
+        String sub = args.length == 0 ? "" : args[0].toLowerCase(Locale.ROOT);
+        switch (sub) {
+            case "reload" -> reload(source);
+            case "scheduler" -> scheduler(source);
+            case "running" -> running(source);
+            case "cancel" -> cancel(source, args);
+            case "stats" -> stats(source, args);
+            default -> source.sendMessage(I18n.lang(source, "litemacro.main.usage",
+                    "/litemacro <" + String.join("|", SUBCOMMANDS) + ">"));
+        }
+    }
+
+    /**
+     * Suggests subcommand names for the first argument and invoker names for "cancel".
+     *
+     * @param invocation the command invocation
+     * @return matching suggestions
+     */
+    @Override
+    public List<String> suggest(Invocation invocation) {
+        String[] args = invocation.arguments();
+        if (!invocation.source().hasPermission(PERMISSION)) return List.of();
+        if (args.length <= 1) {
+            String prefix = args.length == 0 ? "" : args[0].toLowerCase(Locale.ROOT);
+            return SUBCOMMANDS.stream().filter(s -> s.startsWith(prefix)).toList();
+        }
+        if (args.length == 2 && "stats".equalsIgnoreCase(args[0])) {
+            String prefix = args[1].toLowerCase(Locale.ROOT);
+            return runtime.metrics().macros().stream()
+                    .map(Metrics.MacroStats::name)
+                    .filter(n -> n.startsWith(prefix))
+                    .toList();
+        }
+        if (args.length == 2 && "cancel".equalsIgnoreCase(args[0])) {
+            String prefix = args[1].toLowerCase(Locale.ROOT);
+            return runtime.runs().snapshot().stream()
+                    .map(MacroRun::ownerName)
+                    .distinct()
+                    .filter(n -> n.toLowerCase(Locale.ROOT).startsWith(prefix))
+                    .toList();
+        }
+        return List.of();
+    }
+
+    /**
+     * Reloads the configuration, language bundle and macros in the background and reports the outcome.
+     *
+     * @param source the command source to report to
+     */
+    private void reload(CommandSource source) {
+        plugin.reload().whenComplete((diff, err) -> {
+            if (err != null) {
+                Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+                source.sendMessage(I18n.lang(source, "litemacro.main.reload.failed", cause.getMessage()));
+                if (cause instanceof MacroCompileException) {
+                    logger.error("Reload failed. {}", cause.getMessage());
+                } else {
+                    logger.error("Reload failed", cause);
+                }
+                return;
+            }
+            source.sendMessage(I18n.lang(source, "litemacro.main.reload"));
+            source.sendMessage(I18n.lang(source, "litemacro.main.reload.diff",
+                    diff.added(), diff.changed(), diff.removed(), diff.unchanged()));
+        });
+    }
+
+    /**
+     * Lists every in-flight macro run with its invoker and age.
+     *
+     * @param source the command source to report to
+     */
+    private void running(CommandSource source) {
+        List<MacroRun> runs = runtime.runs().snapshot();
+        if (runs.isEmpty()) {
+            source.sendMessage(I18n.lang(source, "litemacro.main.running.none"));
+            return;
+        }
+        source.sendMessage(I18n.lang(source, "litemacro.main.running.header", runs.size()));
+        long now = System.currentTimeMillis();
+        for (MacroRun r : runs) {
+            source.sendMessage(I18n.langPlain(source, "litemacro.main.running.entry",
+                    r.ownerName(), r.macro(), (now - r.startedAt()) / 1000L));
+        }
+    }
+
+    /**
+     * Cancels the runs of one invoker (or "*" for all), optionally limited to one macro.
+     *
+     * @param source the command source to report to
+     * @param args   the subcommand arguments ("cancel", invoker, optional macro)
+     */
+    private void cancel(CommandSource source, String[] args) {
+        if (args.length < 2) {
+            source.sendMessage(I18n.lang(source, "litemacro.main.usage", "/litemacro cancel <player|*> [macro]"));
+            return;
+        }
+        int n = runtime.runs().cancel(args[1], args.length > 2 ? args[2] : null);
+        source.sendMessage(I18n.lang(source, "litemacro.main.cancel", n));
+    }
+
+    /**
+     * Shows the most invoked macros (or one macro) with their latencies, the action types and the delay lag.
+     *
+     * @param source the command source to report to
+     * @param args   the subcommand arguments ("stats", optional macro)
+     */
+    private void stats(CommandSource source, String[] args) {
+        Metrics metrics = runtime.metrics();
+        List<Metrics.MacroStats> macros = metrics.macros();
+        if (args.length > 1) {
+            String name = args[1].toLowerCase(Locale.ROOT);
+            macros = macros.stream().filter(m -> m.name().equals(name)).toList();
+            if (macros.isEmpty()) {
+                source.sendMessage(I18n.lang(source, "litemacro.main.stats.unknown", name));
+                return;
+            }
+        } else if (macros.isEmpty()) {
+            source.sendMessage(I18n.lang(source, "litemacro.main.stats.none"));
+            return;
+        }
+        int shown = Math.min(STATS_TOP, macros.size());
+        source.sendMessage(I18n.lang(source, "litemacro.main.stats.header", shown, macros.size()));
+        for (Metrics.MacroStats m : macros.subList(0, shown)) {
+            LatencyHistogram.Snapshot d = m.duration().snapshot();
+            source.sendMessage(I18n.langPlain(source, "litemacro.main.stats.macro", m.name(), m.invocations(),
+                    m.denials(), d.meanMillis(), d.quantileMillis(0.5), d.quantileMillis(0.99)));
+        }
+        if (args.length > 1) return;
+        for (Metrics.ActionStats a : metrics.actions()) {
+            LatencyHistogram.Snapshot d = a.duration().snapshot();
+            source.sendMessage(I18n.langPlain(source, "litemacro.main.stats.action", a.type(), a.executions(),
+                    a.failures(), d.meanMillis(), d.quantileMillis(0.99)));
+        }
+        LatencyHistogram.Snapshot lag = metrics.delayLag().snapshot();
+        source.sendMessage(I18n.lang(source, "litemacro.main.stats.lag",
+                lag.count(), lag.meanMillis(), lag.quantileMillis(0.99)));
+    }
+
+    /**
+     * Reports which scheduler runs macro delays and, for the timing wheel, its occupancy.
+     *
+     * @param source the command source to report to
+     */
+    private void scheduler(CommandSource source) {
+        if (!(runtime.delays() instanceof TimingWheel wheel)) {
+            source.sendMessage(I18n.lang(source, "litemacro.main.scheduler.velocity"));
+            return;
+        }
+        TimingWheel.Stats s = wheel.stats();
+        source.sendMessage(I18n.lang(source, "litemacro.main.scheduler.wheel",
+                s.pending(), s.occupiedSlots(), s.slots(), s.maxBucket(), s.tickMillis(), s.lastLagMillis(),
+                s.maxLagMillis()));
+        source.sendMessage(I18n.lang(source, "litemacro.main.scheduler.totals",
+                s.totalScheduled(), s.totalExpired(), s.totalCancelled()));
+    }
+}
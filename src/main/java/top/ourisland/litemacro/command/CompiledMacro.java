@@ -0,0 +1,139 @@
+package top.ourisland.litemacro.command;
+
+import top.ourisland.litemacro.actions.Action;
+import top.ourisland.litemacro.actions.ActionFactory;
+import top.ourisland.litemacro.config.MacroSources;
+import top.ourisland.litemacro.config.model.ActionSpec;
+import top.ourisland.litemacro.config.model.MacroSpec;
+import top.ourisland.litemacro.config.model.RateSpec;
+import top.ourisland.litemacro.runtime.MacroRegistry.ConcurrencyPolicy;
+import top.ourisland.litemacro.runtime.Placeholders;
+import top.ourisland.litemacro.runtime.RateLimiter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Immutable, ready-to-run form of a macro: its specification together with the built actions, parsed concurrency
+ * policy and limiters. A {@link MacroCommand} swaps between compiled macros atomically on reload.
+ *
+ * @param name              primary macro name (lower case)
+ * @param spec              the specification the macro was compiled from
+ * @param actions           ordered actions, with small called macros inlined
+ * @param minDurationMillis time the macro takes at least because of fixed delays
+ * @param concurrency      concurrency policy for overlapping runs
+ * @param cooldown         cooldown limiter, or null
+ * @param rate             rate limiter, or null
+ * @param bypassPermission permission that bypasses the cooldown and rate limit
+ * @param callees          the macros called directly by this macro, whose actions are linked into it
+ */
+public record CompiledMacro(String name,
+                            MacroSpec spec,
+                            List<Action> actions,
+                            long minDurationMillis,
+                            ConcurrencyPolicy concurrency,
+                            RateLimiter cooldown,
+                            RateLimiter rate,
+                            String bypassPermission,
+                            List<CompiledMacro> callees) {
+
+    /**
+     * Compiles a macro specification. Every action is compiled even after an error, so that all problems of the macro
+     * are reported at once. Limiter state is carried over from the previous compilation of the same macro when its
+     * cooldown or rate settings did not change and its tables are large enough for {@code players}, so a reload does
+     * not reset players' cooldowns.
+     * <p>
+     * Macros named by {@code call} actions are compiled first through {@code macros}, which also rejects unknown
+     * macros and recursive calls.
+     *
+     * @param name         macro name as written in the configuration
+     * @param spec         the macro specification
+     * @param previous     the previously compiled version of this macro, or null
+     * @param placeholders the global placeholders to inline into templates
+     * @param sources      where the macro was defined, used to locate problems
+     * @param problems     receives one located message per problem found
+     * @param players      how many players the cooldown and rate limit tables are sized for
+     * @param macros       compiles a called macro by its lower-case name, returning null if it has problems and
+     *                     throwing an {@link IllegalArgumentException} if it is unknown or the call would recurse
+     * @return the compiled macro, or null if any problem was found
+     */
+    public static CompiledMacro compile(String name, MacroSpec spec, CompiledMacro previous,
+                                        Placeholders placeholders, MacroSources sources, List<String> problems,
+                                        int players, Function<String, CompiledMacro> macros) {
+        String primary = name.toLowerCase(Locale.ROOT);
+        int before = problems.size();
+        List<CompiledMacro> callees = new ArrayList<>();
+        ActionFactory.Calls calls = callee -> {
+            CompiledMacro c = macros.apply(callee.toLowerCase(Locale.ROOT));
+            if (c == null) throw new IllegalArgumentException("Called macro '" + callee + "' does not compile");
+            if (!callees.contains(c)) callees.add(c);
+            return c.actions();
+        };
+        List<Action> actions = new ArrayList<>();
+        List<ActionSpec> specs = spec.getActions() == null ? List.of() : spec.getActions();
+        for (int i = 0; i < specs.size(); i++) {
+            try {
+                ActionFactory.append(actions, ActionFactory.fromSpec(specs.get(i), placeholders, calls));
+            } catch (IllegalArgumentException e) {
+                problems.add(sources.locate(name, i) + ": macro '" + name + "', action " + (i + 1) + ": "
+                        + e.getMessage());
+            }
+        }
+        ConcurrencyPolicy concurrency = null;
+        try {
+            concurrency = ConcurrencyPolicy.parse(spec.getConcurrency());
+        } catch (IllegalArgumentException e) {
+            problems.add(sources.locate(name, -1) + ": macro '" + name + "': " + e.getMessage());
+        }
+        if (spec.getCooldown() < 0) {
+            problems.add(sources.locate(name, -1) + ": macro '" + name + "': cooldown must not be negative");
+        }
+        if (problems.size() > before) return null;
+
+        RateLimiter cooldown = null;
+        if (spec.getCooldown() > 0) {
+            cooldown = previous != null && previous.cooldown != null
+                    && previous.spec.getCooldown() == spec.getCooldown() && previous.cooldown.fits(players)
+                    ? previous.cooldown
+                    : RateLimiter.cooldown(spec.getCooldown(), players);
+        }
+        RateLimiter rate = null;
+        RateSpec r = spec.getRate();
+        if (r != null && r.getLimit() > 0 && r.getPeriod() > 0) {
+            rate = previous != null && previous.rate != null && Objects.equals(previous.spec.getRate(), r)
+                    && previous.rate.fits(players)
+                    ? previous.rate
+                    : RateLimiter.tokenBucket(r.getLimit(), r.getPeriod(), players);
+        }
+
+        return new CompiledMacro(
+                primary,
+                spec,
+                List.copyOf(actions),
+                Action.minDurationMillis(actions),
+                concurrency,
+                cooldown,
+                rate,
+                "litemacro.bypass." + primary,
+                List.copyOf(callees)
+        );
+    }
+
+    /**
+     * @return the primary name followed by all configured aliases, lower-cased and without duplicates
+     */
+    public List<String> aliases() {
+        List<String> out = new ArrayList<>();
+        out.add(name);
+        if (spec.getAliases() != null) {
+            for (String a : spec.getAliases()) {
+                String alias = a.toLowerCase(Locale.ROOT);
+                if (!out.contains(alias)) out.add(alias);
+            }
+        }
+        return out;
+    }
+}
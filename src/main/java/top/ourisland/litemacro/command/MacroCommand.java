@@ -1,79 +1,142 @@
 package top.ourisland.litemacro.command;
 
-import top.ourisland.litemacro.actions.Action;
-import top.ourisland.litemacro.actions.ActionFactory;
-import top.ourisland.litemacro.config.model.ActionSpec;
-import top.ourisland.litemacro.config.model.MacroSpec;
 import top.ourisland.litemacro.runtime.I18n;
 import top.ourisland.litemacro.runtime.InvocationContext;
+import top.ourisland.litemacro.runtime.MacroRun;
+import top.ourisland.litemacro.runtime.Metrics;
+import top.ourisland.litemacro.runtime.RateLimiter;
+import top.ourisland.litemacro.runtime.MacroRuntime;
 import top.ourisland.litemacro.runtime.MacroRunner;
+import com.velocitypowered.api.command.CommandSource;
 import com.velocitypowered.api.command.SimpleCommand;
-import com.velocitypowered.api.proxy.ProxyServer;
-import org.slf4j.Logger;
+import com.velocitypowered.api.proxy.Player;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Velocity {@code SimpleCommand} implementation that binds a macro specification
  * to an executable command. Handles argument capture, placeholder variables,
- * and permission checks.
+ * permission checks, cooldowns and rate limits, registration of each run
+ * with the macro registry, the macro's invocation metrics and the audit log.
+ * <p>
+ * The command itself stays registered across reloads; reloading only swaps the
+ * {@link CompiledMacro} it delegates to, so the macro is never missing.
  */
 public class MacroCommand implements SimpleCommand {
-    private final ProxyServer server;
-    private final Logger logger;
-    private final MacroSpec spec;
-    private final List<Action> actions;
-    private final Object plugin;
+    private static final int DENIED = -1;
+    private static final int COOLDOWN = 1;
+    private static final int RATE = 2;
+
+    private final MacroRuntime runtime;
+    private volatile CompiledMacro macro;
 
     /**
-     * Constructs a macro command from the given specification.
+     * Constructs a macro command for the given compiled macro.
      *
-     * @param server the Velocity proxy server
-     * @param logger the logger
-     * @param spec   the macro specification
-     * @param plugin the plugin instance
+     * @param runtime the shared macro runtime
+     * @param macro   the compiled macro
+     */
+    public MacroCommand(MacroRuntime runtime, CompiledMacro macro) {
+        this.runtime = runtime;
+        this.macro = macro;
+    }
+
+    /**
+     * @return the compiled macro this command currently runs
      */
-    public MacroCommand(ProxyServer server, Logger logger, Object plugin, MacroSpec spec) {
-        this.server = server;
-        this.logger = logger;
-        this.plugin = plugin;
-        this.spec = spec;
-        this.actions = buildActions(spec.getActions());
+    public CompiledMacro macro() {
+        return macro;
     }
 
     /**
-     * Builds the ordered list of concrete actions from the action specs.
+     * Atomically replaces the compiled macro. Runs already in flight keep using the previous version.
      *
-     * @param specs action specifications (may be null)
-     * @return ordered, non-null list of actions
+     * @param macro the new compiled macro
      */
-    private List<Action> buildActions(List<ActionSpec> specs) {
-        if (specs == null) return Collections.emptyList();
-        return specs.stream().map(ActionFactory::fromSpec).collect(Collectors.toList());
+    public void update(CompiledMacro macro) {
+        this.macro = macro;
     }
 
     /**
-     * Executes the macro: captures arguments into variables (arg0, arg1, ...),
-     * creates an {@code InvocationContext}, and starts the {@code MacroRunner}.
+     * Executes the macro: enforces the cooldown and rate limit, registers the
+     * run (subject to the concurrency policy), creates an
+     * {@code InvocationContext} holding the arguments, and starts the
+     * {@code MacroRunner}. If the concurrency policy refuses the run, the
+     * cooldown and rate limit tokens it took are given back.
      *
      * @param invocation the command invocation
      */
     @Override
     public void execute(Invocation invocation) {
-        Map<String, String> vars = new HashMap<>();
-        String[] args = invocation.arguments();
-        for (int i = 0; i < args.length; i++) vars.put("arg" + i, args[i]);
-
-        InvocationContext ctx = new InvocationContext(server, invocation.source(), vars, plugin);
-        if (actions.isEmpty()) {
-            invocation.source().sendMessage(I18n.lang("litemacro.command.macro.no_actions"));
+        CompiledMacro m = macro;
+        if (m.actions().isEmpty()) {
+            invocation.source().sendMessage(I18n.lang(invocation.source(), "litemacro.command.macro.no_actions"));
             return;
         }
-        new MacroRunner(ctx, actions).start();
+        Metrics.MacroStats stats = runtime.metrics().macro(m.name());
+        stats.invoked();
+        int taken = acquireLimits(m, invocation.source());
+        if (taken == DENIED) {
+            stats.denied();
+            return;
+        }
+        MacroRun run = runtime.runs().begin(invocation.source(), m.name(), m.concurrency());
+        if (run == null) {
+            refundLimits(m, invocation.source(), taken);
+            stats.denied();
+            invocation.source().sendMessage(
+                    I18n.lang(invocation.source(), "litemacro.command.macro.already_running", m.name()));
+            return;
+        }
+
+        runtime.audit().invoked(invocation.source(), m.name(), invocation.arguments());
+        long start = System.nanoTime();
+        InvocationContext ctx = new InvocationContext(runtime, invocation.source(), invocation.arguments(), run);
+        new MacroRunner(ctx, m.actions()).start().whenComplete((r, err) -> {
+            stats.finished(System.nanoTime() - start);
+            runtime.runs().end(run);
+        });
+    }
+
+    /**
+     * Applies the cooldown and rate limit to a player. Limits are checked first so that the common, admitted case
+     * costs no permission lookup; the bypass permission ({@code litemacro.bypass.<macro>}) is only consulted when a
+     * limit would deny the invocation. Non-player sources are never limited. A cooldown token taken before the rate
+     * limit denies the invocation is given back.
+     *
+     * @param m      the compiled macro being invoked
+     * @param source the invoking command source
+     * @return {@link #DENIED}, or the tokens taken ({@link #COOLDOWN}, {@link #RATE}) if the invocation may proceed
+     */
+    private int acquireLimits(CompiledMacro m, CommandSource source) {
+        RateLimiter cooldown = m.cooldown();
+        RateLimiter rate = m.rate();
+        if ((cooldown == null && rate == null) || !(source instanceof Player p)) return 0;
+        int taken = 0;
+        long waitNanos = cooldown == null ? 0L : cooldown.tryAcquire(p.getUniqueId());
+        if (waitNanos == 0L && cooldown != null) taken |= COOLDOWN;
+        if (waitNanos == 0L && rate != null) {
+            waitNanos = rate.tryAcquire(p.getUniqueId());
+            if (waitNanos == 0L) taken |= RATE;
+        }
+        if (waitNanos == 0L || source.hasPermission(m.bypassPermission())) return taken;
+        refundLimits(m, source, taken);
+        long seconds = Math.max(1L, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        source.sendMessage(I18n.lang(source, "litemacro.command.macro.cooldown", seconds, m.name()));
+        return DENIED;
+    }
+
+    /**
+     * Gives back the tokens taken by {@link #acquireLimits(CompiledMacro, CommandSource)}.
+     *
+     * @param m      the compiled macro being invoked
+     * @param source the invoking command source
+     * @param taken  the tokens taken
+     */
+    private void refundLimits(CompiledMacro m, CommandSource source, int taken) {
+        if (taken == 0 || !(source instanceof Player p)) return;
+        if ((taken & COOLDOWN) != 0) m.cooldown().refund(p.getUniqueId());
+        if ((taken & RATE) != 0) m.rate().refund(p.getUniqueId());
     }
 
     /**
@@ -85,7 +148,7 @@ public class MacroCommand implements SimpleCommand {
      */
     @Override
     public boolean hasPermission(Invocation invocation) {
-        String perm = spec.getPermission();
+        String perm = macro.spec().getPermission();
         return perm == null || perm.isBlank() || invocation.source().hasPermission(perm);
     }
 }
\ No newline at end of file
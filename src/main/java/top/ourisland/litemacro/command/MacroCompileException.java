@@ -0,0 +1,27 @@
+package top.ourisland.litemacro.command;
+
+import java.util.List;
+
+/**
+ * Thrown when the macro configuration does not compile. Carries every problem found, each prefixed with the file and
+ * line it was found at, so that all of them can be fixed before the next reload.
+ */
+public class MacroCompileException extends IllegalArgumentException {
+    private final List<String> problems;
+
+    /**
+     * @param problems the problems found; must not be empty
+     */
+    public MacroCompileException(List<String> problems) {
+        super(problems.size() + (problems.size() == 1 ? " problem" : " problems")
+                + " in the macro configuration:\n  " + String.join("\n  ", problems));
+        this.problems = List.copyOf(problems);
+    }
+
+    /**
+     * @return the problems found, in configuration order
+     */
+    public List<String> problems() {
+        return problems;
+    }
+}
@@ -0,0 +1,28 @@
+package top.ourisland.litemacro.command;
+
+import top.ourisland.litemacro.runtime.Placeholders;
+import top.ourisland.litemacro.runtime.ServerGroups;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The compiled, validated form of the whole macro configuration, produced by
+ * {@link MacroRegistrar#compile(top.ourisland.litemacro.config.ParsedConfig)} and applied in one step by
+ * {@link MacroRegistrar#apply(MacroProgram)}. Only built when every macro compiled without errors.
+ *
+ * @param macros       compiled macros keyed by primary name, in configuration order
+ * @param placeholders the global placeholders inlined into the macros
+ * @param groups       the server groups, keyed by lower-case name
+ */
+public record MacroProgram(Map<String, CompiledMacro> macros, Placeholders placeholders,
+                           Map<String, ServerGroups.Definition> groups) {
+    /**
+     * Copies the macro and group maps into unmodifiable, order-preserving maps.
+     */
+    public MacroProgram {
+        macros = Collections.unmodifiableMap(new LinkedHashMap<>(macros));
+        groups = Collections.unmodifiableMap(new LinkedHashMap<>(groups));
+    }
+}
@@ -0,0 +1,259 @@
+package top.ourisland.litemacro.command;
+
+import top.ourisland.litemacro.config.ParsedConfig;
+import top.ourisland.litemacro.config.model.MacroSpec;
+import top.ourisland.litemacro.runtime.MacroRuntime;
+import top.ourisland.litemacro.runtime.Placeholders;
+import top.ourisland.litemacro.runtime.ServerGroups;
+import com.velocitypowered.api.command.CommandManager;
+import com.velocitypowered.api.command.CommandMeta;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Keeps the set of registered macro commands in sync with the configuration.
+ * <p>
+ * Loading is split in two phases. {@link #compile(ParsedConfig)} turns the configuration into a {@link MacroProgram},
+ * compiling every new or changed macro and reusing the compiled form of unchanged ones; it touches
+ * no registrations and may run off the main thread, and it reports every problem in the configuration at once, so a
+ * broken configuration fails before anything is torn down. {@link #apply(MacroProgram)} then diffs the program against
+ * what is registered: unchanged macros are left alone, changed macros have their {@link CompiledMacro} swapped inside
+ * the existing command, and only added or removed aliases are registered or unregistered.
+ * <p>
+ * Macros linked together by {@code call} actions are compiled callee first, so a caller is recompiled whenever one of
+ * its callees is, and recursive calls are rejected while compiling.
+ */
+public class MacroRegistrar {
+    private final MacroRuntime runtime;
+    private final CommandManager commandManager;
+    private final Logger logger;
+    private final Object plugin;
+    private volatile Map<String, MacroCommand> commands = Map.of(); // macroName -> command
+    private Map<String, MacroCommand> aliasOwners = Map.of(); // alias -> command
+    private volatile Placeholders placeholders = Placeholders.NONE;
+
+    /**
+     * @param runtime        the shared macro runtime
+     * @param commandManager Velocity's command manager
+     * @param logger         the logger
+     * @param plugin         the plugin instance owning the commands
+     */
+    public MacroRegistrar(MacroRuntime runtime, CommandManager commandManager, Logger logger, Object plugin) {
+        this.runtime = runtime;
+        this.commandManager = commandManager;
+        this.logger = logger;
+        this.plugin = plugin;
+    }
+
+    /**
+     * Compiles the global placeholders, server groups and macros of a configuration against the currently
+     * registered macros. Unchanged macros keep their compiled form as long as the global placeholders and the macros
+     * they call did not change either.
+     *
+     * @param config the parsed configuration
+     * @return the compiled program, ready to be applied
+     * @throws MacroCompileException listing every problem found, if anything fails to compile
+     */
+    public MacroProgram compile(ParsedConfig config) throws MacroCompileException {
+        List<String> problems = new ArrayList<>(config.problems());
+        Placeholders globals = Placeholders.compile(config.root().getPlaceholders(), runtime.resolvers(),
+                (name, problem) -> problems.add(
+                        config.sources().locatePlaceholder(name) + ": placeholder '" + name + "': " + problem));
+        Map<String, ServerGroups.Definition> groups = ServerGroups.compile(config.root().getGroups(),
+                (name, problem) -> problems.add(
+                        config.sources().locateGroup(name) + ": group '" + name + "': " + problem));
+        int players = Math.max(config.root().getExpectedPlayers(), runtime.server().getPlayerCount());
+        Linker linker = new Linker(config, globals, globals.equals(placeholders), players, problems);
+        Map<String, CompiledMacro> compiled = new LinkedHashMap<>();
+        for (String name : linker.specs.keySet()) {
+            CompiledMacro m = linker.compile(name);
+            if (m != null) compiled.put(name, m);
+        }
+        if (!problems.isEmpty()) throw new MacroCompileException(problems);
+        return new MacroProgram(compiled, globals, groups);
+    }
+
+    /**
+     * Compiles the macros of one configuration on demand, so that a macro's callees are compiled before it. Keeps the
+     * chain of macros being compiled to detect recursive calls.
+     */
+    private final class Linker {
+        private final Map<String, Map.Entry<String, MacroSpec>> specs = new LinkedHashMap<>();
+        private final Map<String, CompiledMacro> done = new HashMap<>(); // null value: has problems
+        private final List<String> compiling = new ArrayList<>();
+        private final Map<String, MacroCommand> current = commands;
+        private final ParsedConfig config;
+        private final Placeholders globals;
+        private final boolean sameGlobals;
+        private final int players;
+        private final List<String> problems;
+
+        Linker(ParsedConfig config, Placeholders globals, boolean sameGlobals, int players, List<String> problems) {
+            this.config = config;
+            this.globals = globals;
+            this.sameGlobals = sameGlobals;
+            this.players = players;
+            this.problems = problems;
+            for (Map.Entry<String, MacroSpec> e : config.root().getMacros().entrySet()) {
+                specs.put(e.getKey().toLowerCase(Locale.ROOT), e);
+            }
+        }
+
+        /**
+         * Compiles a macro, or returns it if it was already compiled.
+         *
+         * @param name the lower-case macro name
+         * @return the compiled macro, or null if it has problems
+         * @throws IllegalArgumentException if there is no such macro or it is already being compiled, i.e. the call
+         *                                  that asked for it is recursive
+         */
+        CompiledMacro compile(String name) throws IllegalArgumentException {
+            if (done.containsKey(name)) return done.get(name);
+            int at = compiling.indexOf(name);
+            if (at >= 0) {
+                throw new IllegalArgumentException("Recursive call: "
+                        + String.join(" -> ", compiling.subList(at, compiling.size())) + " -> " + name);
+            }
+            Map.Entry<String, MacroSpec> e = specs.get(name);
+            if (e == null) throw new IllegalArgumentException("Unknown macro '" + name + "'");
+            compiling.add(name);
+            try {
+                MacroCommand existing = current.get(name);
+                CompiledMacro previous = existing == null ? null : existing.macro();
+                CompiledMacro m = reusable(previous, e.getValue())
+                        ? previous
+                        : CompiledMacro.compile(e.getKey(), e.getValue(), previous, globals, config.sources(),
+                        problems, players, this::compile);
+                done.put(name, m);
+                return m;
+            } finally {
+                compiling.remove(compiling.size() - 1);
+            }
+        }
+
+        /**
+         * @return true if the previous compilation of a macro can be kept: neither its specification, nor the global
+         * placeholders, nor any macro it calls changed, and its limiter tables are large enough for the players
+         */
+        private boolean reusable(CompiledMacro previous, MacroSpec spec) {
+            if (!sameGlobals || previous == null || !previous.spec().equals(spec)) return false;
+            if (previous.cooldown() != null && !previous.cooldown().fits(players)) return false;
+            if (previous.rate() != null && !previous.rate().fits(players)) return false;
+            for (CompiledMacro callee : previous.callees()) {
+                try {
+                    if (compile(callee.name()) != callee) return false;
+                } catch (IllegalArgumentException e) {
+                    // Reported when the macro is recompiled
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Registers, updates and unregisters commands so that exactly the program's macros are available.
+     *
+     * @param program the result of {@link #compile(ParsedConfig)}
+     * @return counts of what changed
+     */
+    public synchronized Diff apply(MacroProgram program) {
+        Map<String, MacroCommand> current = commands;
+        Map<String, MacroCommand> next = new LinkedHashMap<>();
+        Map<String, MacroCommand> nextAliases = new HashMap<>();
+        int added = 0, changed = 0, unchanged = 0;
+
+        for (CompiledMacro m : program.macros().values()) {
+            MacroCommand cmd = current.get(m.name());
+            if (cmd == null) {
+                cmd = new MacroCommand(runtime, m);
+                added++;
+                logger.info("Registered macro '{}' with aliases {} and perm '{}' ({} actions, at least {} ms)",
+                        m.name(), m.aliases(), m.spec().getPermission(), m.actions().size(), m.minDurationMillis());
+            } else if (cmd.macro() == m) {
+                unchanged++;
+            } else {
+                cmd.update(m);
+                changed++;
+                logger.info("Updated macro '{}' with aliases {} and perm '{}' ({} actions, at least {} ms)",
+                        m.name(), m.aliases(), m.spec().getPermission(), m.actions().size(), m.minDurationMillis());
+            }
+            next.put(m.name(), cmd);
+            for (String alias : m.aliases()) {
+                MacroCommand clash = nextAliases.putIfAbsent(alias, cmd);
+                if (clash != null && clash != cmd) {
+                    logger.warn("Alias '{}' of macro '{}' is already used by macro '{}'; skipped.",
+                            alias, m.name(), clash.macro().name());
+                }
+            }
+        }
+        int removed = 0;
+        for (String name : current.keySet()) {
+            if (next.containsKey(name)) continue;
+            removed++;
+            logger.info("Unregistered macro '{}'", name);
+        }
+
+        for (Map.Entry<String, MacroCommand> e : aliasOwners.entrySet()) {
+            if (nextAliases.get(e.getKey()) != e.getValue()) {
+                try {
+                    commandManager.unregister(e.getKey());
+                } catch (Throwable ignored) {
+                }
+            }
+        }
+        for (Map.Entry<String, MacroCommand> e : nextAliases.entrySet()) {
+            if (aliasOwners.get(e.getKey()) != e.getValue()) {
+                CommandMeta meta = commandManager.metaBuilder(e.getKey())
+                        .plugin(plugin)
+                        .build();
+                commandManager.register(meta, e.getValue());
+            }
+        }
+
+        this.aliasOwners = nextAliases;
+        this.commands = next;
+        this.placeholders = program.placeholders();
+        runtime.groups().update(program.groups());
+        if (next.isEmpty()) logger.warn("No macros found in command.yml or the macros folder");
+        return new Diff(added, changed, removed, unchanged);
+    }
+
+    /**
+     * Unregisters every macro alias. Safe to call repeatedly.
+     */
+    public synchronized void clear() {
+        for (String alias : aliasOwners.keySet()) {
+            try {
+                commandManager.unregister(alias);
+            } catch (Throwable ignored) {
+            }
+        }
+        aliasOwners = Map.of();
+        commands = Map.of();
+    }
+
+    /**
+     * @return names of the registered macros
+     */
+    public List<String> names() {
+        return List.copyOf(commands.keySet());
+    }
+
+    /**
+     * Summary of an {@link #apply(MacroProgram)} call.
+     *
+     * @param added     macros registered for the first time
+     * @param changed   macros whose definition was swapped
+     * @param removed   macros that were unregistered
+     * @param unchanged macros left untouched
+     */
+    public record Diff(int added, int changed, int removed, int unchanged) {
+    }
+}
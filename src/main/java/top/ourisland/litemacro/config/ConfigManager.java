@@ -1,29 +1,46 @@
 package top.ourisland.litemacro.config;
 
+import top.ourisland.litemacro.config.model.AuditSpec;
+import top.ourisland.litemacro.config.model.MacroFile;
 import top.ourisland.litemacro.config.model.MacroSpec;
+import top.ourisland.litemacro.config.model.MetricsSpec;
+import top.ourisland.litemacro.config.model.ReloadSpec;
 import top.ourisland.litemacro.config.model.RootConfig;
+import top.ourisland.litemacro.config.model.SchedulerSpec;
 import com.velocitypowered.api.proxy.ProxyServer;
 import org.slf4j.Logger;
 import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.constructor.Constructor;
+import org.yaml.snakeyaml.error.YAMLException;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
- * Loads and manages the plugin configuration (command.yml). Responsible for creating a default file when missing and
- * providing a typed view of macro specifications.
+ * Loads and manages the plugin configuration (command.yml and the files in the macros directory). Responsible for
+ * creating a default file when missing and providing a typed view of macro specifications.
  */
 public class ConfigManager {
+    private static final String MACRO_DIR = "macros";
+
     private final Logger logger;
     private final ProxyServer server;
     private final Path dataDir;
-    private RootConfig root;
+    private final MacroCache cache;
+    private volatile RootConfig root;
 
     /**
      * Constructs a ConfigManager.
@@ -36,36 +53,198 @@ public class ConfigManager {
         this.logger = logger;
         this.server = server;
         this.dataDir = dataDir;
+        this.cache = new MacroCache(logger, dataDir.resolve("macros.cache"));
     }
 
     /**
-     * Loads the configuration from disk, creating a default file when absent.
-     * Performs light validation (e.g., warning on empty action lists).
+     * Loads the configuration from disk, creating a default file when absent, and makes it the current configuration.
      *
      * @throws java.io.IOException if disk access fails
      */
     public void loadOrCreate() throws IOException {
-        Path file = dataDir.resolve("command.yml");
+        apply(read().root());
+    }
+
+    /**
+     * Parses the configuration from disk without changing the current configuration, creating a default file when
+     * absent. Macros from the files in the macros directory are merged into the macros of command.yml. Performs light
+     * validation (e.g., warning on empty action lists). Safe to call off the main thread.
+     * <p>
+     * A macros file that cannot be parsed, or a macro defined a second time, does not stop the rest of the
+     * configuration from loading: the file or the second definition is left out and the problem is recorded in
+     * {@link ParsedConfig#problems()}, to be reported when the macros are compiled.
+     *
+     * @return the parsed configuration, whose root is never without a macro map
+     * @throws java.io.IOException      if disk access fails
+     * @throws IllegalArgumentException if command.yml is invalid
+     */
+    public ParsedConfig read() throws IOException {
+        Path file = configFile();
         if (!Files.exists(file)) {
             writeDefault(file);
         }
+        RootConfig loaded;
         try (InputStream in = Files.newInputStream(file)) {
             Yaml yaml = new Yaml(new Constructor(RootConfig.class));
-            RootConfig loaded = yaml.load(in);
-            if (loaded == null || loaded.getMacros() == null) {
-                root = new RootConfig();
-                root.setMacros(Collections.emptyMap());
-            } else {
-                root = loaded;
+            loaded = yaml.load(in);
+        }
+        if (loaded == null) loaded = new RootConfig();
+
+        List<String> problems = new ArrayList<>();
+        Map<String, MacroSpec> macros = new LinkedHashMap<>();
+        Map<String, Path> origins = new HashMap<>();
+        // Commands are case-insensitive, so "Hub" and "hub" name the same macro
+        Map<String, String> written = new HashMap<>();
+        if (loaded.getMacros() != null) {
+            for (Map.Entry<String, MacroSpec> e : loaded.getMacros().entrySet()) {
+                define(e.getKey(), e.getValue(), file, macros, origins, written, problems);
+            }
+        }
+        for (MacroCache.Entry entry : readMacroDirectory(problems)) {
+            Path origin = macroDirectory().resolve(entry.path());
+            for (Map.Entry<String, MacroSpec> e : entry.macros().entrySet()) {
+                define(e.getKey(), e.getValue(), origin, macros, origins, written, problems);
             }
-            for (Map.Entry<String, MacroSpec> e : root.getMacros().entrySet()) {
-                if (e.getValue().getActions() == null || e.getValue().getActions().isEmpty()) {
-                    logger.warn("Macro '{}' has no actions.", e.getKey());
-                }
+        }
+        loaded.setMacros(macros);
+
+        for (Map.Entry<String, MacroSpec> e : macros.entrySet()) {
+            if (e.getValue().getActions() == null || e.getValue().getActions().isEmpty()) {
+                logger.warn("Macro '{}' has no actions.", e.getKey());
+            }
+        }
+        return new ParsedConfig(loaded, new MacroSources(dataDir, file, origins), problems);
+    }
+
+    /**
+     * Adds a macro definition unless a macro of the same name, ignoring case, is already defined; a second definition
+     * is left out and reported with the files of both.
+     *
+     * @param name     the macro name as written
+     * @param spec     the macro
+     * @param file     the file the macro is defined in
+     * @param macros   the macros so far
+     * @param origins  the file of each macro so far, keyed by the name as written
+     * @param written  the name as written of each macro so far, keyed by the lower-case name
+     * @param problems where to report a second definition
+     */
+    private void define(String name, MacroSpec spec, Path file, Map<String, MacroSpec> macros,
+                        Map<String, Path> origins, Map<String, String> written, List<String> problems) {
+        String first = written.putIfAbsent(name.toLowerCase(Locale.ROOT), name);
+        if (first == null) {
+            macros.put(name, spec);
+            origins.put(name, file);
+            return;
+        }
+        Path firstFile = origins.get(first);
+        String files = dataDir.relativize(firstFile) + " and " + dataDir.relativize(file);
+        String problem = first.equals(name)
+                ? "macro '" + name + "' is defined in both " + files
+                : "macros '" + first + "' and '" + name + "' differ only in case"
+                + (firstFile.equals(file) ? "" : "; they are defined in " + files);
+        problems.add(dataDir.relativize(file) + ": " + problem);
+    }
+
+    /**
+     * Loads every YAML file in the macros directory, creating the directory when absent. Files whose size and
+     * modification time match the macro cache are taken from it; the others are parsed in parallel, each with its own
+     * parser.
+     *
+     * @param problems where to report files that cannot be parsed; those files are left out
+     * @return one entry per file that could be parsed, in file name order
+     * @throws java.io.IOException if disk access fails
+     */
+    private List<MacroCache.Entry> readMacroDirectory(List<String> problems) throws IOException {
+        Path dir = macroDirectory();
+        if (!Files.isDirectory(dir)) {
+            Files.createDirectories(dir);
+            return List.of();
+        }
+        List<Path> files;
+        try (Stream<Path> s = Files.list(dir)) {
+            files = s.filter(ConfigManager::isYaml).filter(Files::isRegularFile).sorted().toList();
+        }
+        Map<String, MacroCache.Entry> cached = cache.entries();
+        List<MacroFileResult> results;
+        try {
+            results = files.parallelStream().map(f -> readMacroFile(f, cached)).toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        List<MacroCache.Entry> entries = new ArrayList<>(results.size());
+        for (MacroFileResult r : results) {
+            if (r.entry() != null) entries.add(r.entry());
+            else problems.add(r.problem());
+        }
+        cache.update(entries);
+        return entries;
+    }
+
+    private MacroFileResult readMacroFile(Path file, Map<String, MacroCache.Entry> cached) {
+        String name = file.getFileName().toString();
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            long size = attrs.size();
+            long modified = attrs.lastModifiedTime().toMillis();
+            MacroCache.Entry hit = cached.get(name);
+            if (hit != null && hit.matches(size, modified)) return new MacroFileResult(hit, null);
+
+            MacroFile parsed;
+            try (InputStream in = Files.newInputStream(file)) {
+                parsed = new Yaml(new Constructor(MacroFile.class)).load(in);
             }
+            Map<String, MacroSpec> macros = parsed == null || parsed.getMacros() == null
+                    ? Map.of()
+                    : new LinkedHashMap<>(parsed.getMacros());
+            return new MacroFileResult(new MacroCache.Entry(name, size, modified, macros), null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (YAMLException e) {
+            return new MacroFileResult(null, MACRO_DIR + "/" + name + ": " + e.getMessage());
         }
     }
 
+    /**
+     * The outcome of reading one macros file.
+     *
+     * @param entry   the file's macros, or null if it could not be parsed
+     * @param problem why the file could not be parsed, or null
+     */
+    private record MacroFileResult(MacroCache.Entry entry, String problem) {
+    }
+
+    /**
+     * Makes a configuration previously returned by {@link #read()} the current one.
+     *
+     * @param config the configuration
+     */
+    public void apply(RootConfig config) {
+        this.root = config;
+    }
+
+    /**
+     * @return path of the main configuration file
+     */
+    public Path configFile() {
+        return dataDir.resolve("command.yml");
+    }
+
+    /**
+     * @return path of the directory holding additional macro files
+     */
+    public Path macroDirectory() {
+        return dataDir.resolve(MACRO_DIR);
+    }
+
+    /**
+     * @param file a file name or path
+     * @return true if the file name has a YAML extension
+     */
+    static boolean isYaml(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".yml") || name.endsWith(".yaml");
+    }
+
     /**
      * Writes a minimal default configuration to the given path.
      * Intended for first-run initialization.
@@ -94,6 +273,51 @@ public class ConfigManager {
         return root.getLang();
     }
 
+    /**
+     * Returns whether messages to players use the player's client language. Default is true.
+     *
+     * @return true to localize per player
+     */
+    public boolean isPlayerLang() {
+        return root == null || root.isPlayerLang();
+    }
+
+    /**
+     * Returns the scheduler settings, falling back to defaults when the section is absent.
+     *
+     * @return scheduler settings; never null
+     */
+    public SchedulerSpec getScheduler() {
+        return root == null || root.getScheduler() == null ? new SchedulerSpec() : root.getScheduler();
+    }
+
+    /**
+     * Returns the reload settings, falling back to defaults when the section is absent.
+     *
+     * @return reload settings; never null
+     */
+    public ReloadSpec getReload() {
+        return root == null || root.getReload() == null ? new ReloadSpec() : root.getReload();
+    }
+
+    /**
+     * Returns the metrics settings, falling back to defaults when the section is absent.
+     *
+     * @return metrics settings; never null
+     */
+    public MetricsSpec getMetrics() {
+        return root == null || root.getMetrics() == null ? new MetricsSpec() : root.getMetrics();
+    }
+
+    /**
+     * Returns the audit settings, falling back to defaults when the section is absent.
+     *
+     * @return audit settings; never null
+     */
+    public AuditSpec getAudit() {
+        return root == null || root.getAudit() == null ? new AuditSpec() : root.getAudit();
+    }
+
     /**
      * Returns the current map of macro specifications keyed by macro name.
      *
@@ -0,0 +1,135 @@
+package top.ourisland.litemacro.config;
+
+import top.ourisland.litemacro.runtime.DelayScheduler;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * Watches the plugin's data directory and macros directory and triggers a reload when the configuration file or a macro
+ * file changes. Bursts of change events (editors and deployment tools often write a file several times) are debounced:
+ * the reload runs once the directories have been quiet for the configured period.
+ */
+public class ConfigWatcher {
+    private final Logger logger;
+    private final Path dir;
+    private final String fileName;
+    private final Path macroDir;
+    private final DelayScheduler delays;
+    private final Runnable onChange;
+    private WatchService service;
+    private Thread thread;
+    private DelayScheduler.Handle pending;
+    private volatile long debounceMillis;
+
+    /**
+     * @param logger   the logger
+     * @param file     the configuration file to watch
+     * @param macroDir the macros directory to watch
+     * @param delays   scheduler used for the debounce delay
+     * @param onChange callback run after a debounced change
+     */
+    public ConfigWatcher(Logger logger, Path file, Path macroDir, DelayScheduler delays, Runnable onChange) {
+        this.logger = logger;
+        this.dir = file.toAbsolutePath().getParent();
+        this.fileName = file.getFileName().toString();
+        this.macroDir = macroDir.toAbsolutePath();
+        this.delays = delays;
+        this.onChange = onChange;
+    }
+
+    /**
+     * Starts or stops watching according to the settings. Safe to call after every reload.
+     *
+     * @param enabled        whether to watch the file
+     * @param debounceMillis quiet period before the callback runs
+     */
+    public synchronized void configure(boolean enabled, long debounceMillis) {
+        this.debounceMillis = Math.max(0L, debounceMillis);
+        if (enabled && thread == null) {
+            start();
+        } else if (!enabled && thread != null) {
+            stop();
+        }
+    }
+
+    /**
+     * Stops watching and cancels a pending reload.
+     */
+    public synchronized void stop() {
+        if (pending != null) pending.cancel();
+        pending = null;
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException ignored) {
+            }
+        }
+        service = null;
+        thread = null;
+    }
+
+    private void start() {
+        try {
+            WatchService ws = FileSystems.getDefault().newWatchService();
+            register(ws, dir);
+            if (Files.isDirectory(macroDir)) register(ws, macroDir);
+            service = ws;
+            thread = new Thread(() -> watch(ws), "liteMacro-config-watcher");
+            thread.setDaemon(true);
+            thread.start();
+            logger.info("Watching {} and {} for changes", dir.resolve(fileName), macroDir);
+        } catch (IOException e) {
+            logger.warn("Could not watch {} for changes", dir, e);
+        }
+    }
+
+    private static void register(WatchService ws, Path directory) throws IOException {
+        directory.register(ws,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    private void watch(WatchService ws) {
+        try {
+            for (; ; ) {
+                WatchKey key = ws.take();
+                boolean relevant = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path p && isRelevant((Path) key.watchable(), p)) relevant = true;
+                }
+                key.reset();
+                if (relevant) changed();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException ignored) {
+        }
+    }
+
+    /**
+     * @param directory the watched directory the event came from
+     * @param name      file name relative to that directory
+     * @return true if a change to this file should trigger a reload
+     */
+    private boolean isRelevant(Path directory, Path name) {
+        if (directory.equals(macroDir)) return ConfigManager.isYaml(name);
+        return name.toString().equals(fileName);
+    }
+
+    /**
+     * (Re)starts the debounce timer.
+     */
+    private synchronized void changed() {
+        if (service == null) return;
+        if (pending != null) pending.cancel();
+        pending = delays.schedule(debounceMillis, onChange);
+    }
+}
@@ -0,0 +1,295 @@
+package top.ourisland.litemacro.config;
+
+import top.ourisland.litemacro.config.model.ActionSpec;
+import top.ourisland.litemacro.config.model.MacroSpec;
+import top.ourisland.litemacro.config.model.RateSpec;
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of the parsed files in the macros directory, so that unchanged files do not have to be parsed as YAML
+ * again on the next startup or reload.
+ * <p>
+ * Each file is recorded with its size and modification time; an entry is only reused while both still match. The
+ * snapshot is a flat {@link DataOutputStream} encoding of the {@link MacroSpec} model and is discarded as a whole if it
+ * is unreadable or was written by a different format version. Bump {@link #VERSION} whenever the spec model changes.
+ */
+final class MacroCache {
+    private static final int MAGIC = 0x4C4D4143; // "LMAC"
+    private static final int VERSION = 1;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte LIST = 6;
+    private static final byte MAP = 7;
+
+    private final Logger logger;
+    private final Path file;
+    private Map<String, Entry> entries;
+
+    /**
+     * @param logger the logger
+     * @param file   where the snapshot is stored
+     */
+    MacroCache(Logger logger, Path file) {
+        this.logger = logger;
+        this.file = file;
+    }
+
+    /**
+     * Returns the known entries keyed by file path, reading the snapshot from disk on first use.
+     *
+     * @return the entries; empty if there is no usable snapshot
+     */
+    synchronized Map<String, Entry> entries() {
+        if (entries == null) entries = read();
+        return entries;
+    }
+
+    /**
+     * Replaces the known entries and rewrites the snapshot if anything changed.
+     *
+     * @param current the entries for every file currently in the macros directory
+     */
+    synchronized void update(List<Entry> current) {
+        Map<String, Entry> previous = entries();
+        boolean changed = current.size() != previous.size();
+        for (Entry e : current) {
+            if (previous.get(e.path()) != e) changed = true;
+        }
+        if (!changed) return;
+
+        Map<String, Entry> next = new HashMap<>();
+        for (Entry e : current) next.put(e.path(), e);
+        entries = next;
+        try {
+            write(current);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Could not write macro cache {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Map<String, Entry> read() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return new HashMap<>();
+            int n = in.readInt();
+            Map<String, Entry> result = new HashMap<>(n * 2);
+            for (int i = 0; i < n; i++) {
+                String path = readString(in);
+                long size = in.readLong();
+                long modified = in.readLong();
+                int count = in.readInt();
+                Map<String, MacroSpec> macros = new LinkedHashMap<>(count * 2);
+                for (int j = 0; j < count; j++) {
+                    macros.put(readString(in), readMacro(in));
+                }
+                result.put(path, new Entry(path, size, modified, macros));
+            }
+            return result;
+        } catch (NoSuchFileException e) {
+            return new HashMap<>();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable macro cache {}: {}", file, e.toString());
+            return new HashMap<>();
+        }
+    }
+
+    private void write(List<Entry> current) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(current.size());
+            for (Entry e : current) {
+                writeString(out, e.path());
+                out.writeLong(e.size());
+                out.writeLong(e.modified());
+                out.writeInt(e.macros().size());
+                for (Map.Entry<String, MacroSpec> m : e.macros().entrySet()) {
+                    writeString(out, m.getKey());
+                    writeMacro(out, m.getValue());
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void writeMacro(DataOutputStream out, MacroSpec spec) throws IOException {
+        writeString(out, spec.getDescription());
+        writeString(out, spec.getPermission());
+        writeValue(out, spec.getAliases());
+        writeString(out, spec.getConcurrency());
+        out.writeLong(spec.getCooldown());
+        RateSpec rate = spec.getRate();
+        out.writeBoolean(rate != null);
+        if (rate != null) {
+            out.writeInt(rate.getLimit());
+            out.writeLong(rate.getPeriod());
+        }
+        List<ActionSpec> actions = spec.getActions();
+        out.writeInt(actions == null ? -1 : actions.size());
+        if (actions != null) {
+            for (ActionSpec a : actions) {
+                writeString(out, a.getType());
+                writeValue(out, a.getOptions());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MacroSpec readMacro(DataInputStream in) throws IOException {
+        MacroSpec spec = new MacroSpec();
+        spec.setDescription(readString(in));
+        spec.setPermission(readString(in));
+        spec.setAliases((List<String>) readValue(in));
+        spec.setConcurrency(readString(in));
+        spec.setCooldown(in.readLong());
+        if (in.readBoolean()) {
+            RateSpec rate = new RateSpec();
+            rate.setLimit(in.readInt());
+            rate.setPeriod(in.readLong());
+            spec.setRate(rate);
+        }
+        int n = in.readInt();
+        if (n >= 0) {
+            List<ActionSpec> actions = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                ActionSpec a = new ActionSpec();
+                a.setType(readString(in));
+                a.setOptions((Map<String, Object>) readValue(in));
+                actions.add(a);
+            }
+            spec.setActions(actions);
+        }
+        return spec;
+    }
+
+    /**
+     * Writes one of the plain values SnakeYAML produces for untyped YAML.
+     *
+     * @throws IllegalArgumentException for any other value type (e.g. timestamps), which makes the snapshot unwritable
+     */
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String s) {
+            out.writeByte(STRING);
+            writeString(out, s);
+        } else if (value instanceof Integer i) {
+            out.writeByte(INT);
+            out.writeInt(i);
+        } else if (value instanceof Long l) {
+            out.writeByte(LONG);
+            out.writeLong(l);
+        } else if (value instanceof Double d) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(d);
+        } else if (value instanceof Boolean b) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(b);
+        } else if (value instanceof List<?> list) {
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for (Object o : list) writeValue(out, o);
+        } else if (value instanceof Map<?, ?> map) {
+            out.writeByte(MAP);
+            out.writeInt(map.size());
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                writeValue(out, e.getKey());
+                writeValue(out, e.getValue());
+            }
+        } else {
+            throw new IllegalArgumentException("unsupported value type " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        return switch (tag) {
+            case NULL -> null;
+            case STRING -> readString(in);
+            case INT -> in.readInt();
+            case LONG -> in.readLong();
+            case DOUBLE -> in.readDouble();
+            case BOOLEAN -> in.readBoolean();
+            case LIST -> {
+                int n = in.readInt();
+                List<Object> list = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) list.add(readValue(in));
+                yield list;
+            }
+            case MAP -> {
+                int n = in.readInt();
+                Map<Object, Object> map = new LinkedHashMap<>(n * 2);
+                for (int i = 0; i < n; i++) map.put(readValue(in), readValue(in));
+                yield map;
+            }
+            default -> throw new IOException("Unknown value tag " + tag);
+        };
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) return null;
+        return new String(in.readNBytes(n), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The parsed macros of one file.
+     *
+     * @param path     file path relative to the macros directory
+     * @param size     file size in bytes when it was parsed
+     * @param modified file modification time in epoch milliseconds when it was parsed
+     * @param macros   the macros defined in the file, in file order
+     */
+    record Entry(String path, long size, long modified, Map<String, MacroSpec> macros) {
+        Entry {
+            macros = Collections.unmodifiableMap(macros);
+        }
+
+        /**
+         * @return true if the file still has the recorded size and modification time
+         */
+        boolean matches(long size, long modified) {
+            return this.size == size && this.modified == modified;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package top.ourisland.litemacro.config;
+
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.nodes.MappingNode;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.SequenceNode;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers which file each macro was read from, so that compile errors can point at a file and line. Global
+ * placeholders and server groups are always located in the main configuration file.
+ * <p>
+ * Line numbers are only needed when something is wrong, so files are not kept as node trees while loading; a file is
+ * composed again (and then kept) the first time an error in it has to be located.
+ */
+public final class MacroSources {
+    private final Path base;
+    private final Path configFile;
+    private final Map<String, Path> files;
+    private final Map<Path, Node> composed = new HashMap<>();
+
+    /**
+     * @param base       directory that reported paths are relative to
+     * @param configFile the main configuration file
+     * @param files      source file of each macro, keyed by the macro name as written in the file
+     */
+    MacroSources(Path base, Path configFile, Map<String, Path> files) {
+        this.base = base;
+        this.configFile = configFile;
+        this.files = Map.copyOf(files);
+    }
+
+    /**
+     * Locates a macro, or one of its top-level actions, in its source file.
+     *
+     * @param macro  the macro name as written in the file
+     * @param action index of the action in the macro's action list, or -1 for the macro itself
+     * @return "file:line", or just the file name if the line cannot be determined
+     */
+    public synchronized String locate(String macro, int action) {
+        Path file = files.get(macro);
+        if (file == null) return "?";
+        Node macros = value(composed.computeIfAbsent(file, MacroSources::compose), "macros");
+        Node at = key(macros, macro);
+        if (at != null && action >= 0 && value(macros, macro) instanceof MappingNode spec
+                && value(spec, "actions") instanceof SequenceNode list && action < list.getValue().size()) {
+            at = list.getValue().get(action);
+        }
+        return format(file, at);
+    }
+
+    /**
+     * Locates a global placeholder in the main configuration file.
+     *
+     * @param name the placeholder name
+     * @return "file:line", or just the file name if the line cannot be determined
+     */
+    public String locatePlaceholder(String name) {
+        return locateInConfig("placeholders", name);
+    }
+
+    /**
+     * Locates a server group in the main configuration file.
+     *
+     * @param name the group name
+     * @return "file:line", or just the file name if the line cannot be determined
+     */
+    public String locateGroup(String name) {
+        return locateInConfig("groups", name);
+    }
+
+    private synchronized String locateInConfig(String section, String name) {
+        Node map = value(composed.computeIfAbsent(configFile, MacroSources::compose), section);
+        return format(configFile, key(map, name));
+    }
+
+    private String format(Path file, Node at) {
+        String name = base.relativize(file).toString().replace('\\', '/');
+        return at == null ? name : name + ":" + (at.getStartMark().getLine() + 1);
+    }
+
+    private static Node compose(Path file) {
+        try (Reader in = Files.newBufferedReader(file)) {
+            return new Yaml().compose(in);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Node key(Node map, String name) {
+        if (!(map instanceof MappingNode m)) return null;
+        for (NodeTuple t : m.getValue()) {
+            if (t.getKeyNode() instanceof ScalarNode k && k.getValue().equals(name)) return k;
+        }
+        return null;
+    }
+
+    private static Node value(Node map, String name) {
+        if (!(map instanceof MappingNode m)) return null;
+        for (NodeTuple t : m.getValue()) {
+            if (t.getKeyNode() instanceof ScalarNode k && k.getValue().equals(name)) return t.getValueNode();
+        }
+        return null;
+    }
+}
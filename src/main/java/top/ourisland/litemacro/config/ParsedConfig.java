@@ -0,0 +1,19 @@
+package top.ourisland.litemacro.config;
+
+import top.ourisland.litemacro.config.model.RootConfig;
+
+import java.util.List;
+
+/**
+ * A configuration as read from disk by {@link ConfigManager#read()}, before it is compiled and applied.
+ *
+ * @param root     the configuration, with the macros of all files merged
+ * @param sources  where each macro was defined, for error reporting
+ * @param problems macros files that could not be parsed and macros defined twice, each prefixed with its file; these
+ *                 were left out of {@code root} and fail compilation like any other problem
+ */
+public record ParsedConfig(RootConfig root, MacroSources sources, List<String> problems) {
+    public ParsedConfig {
+        problems = List.copyOf(problems);
+    }
+}
@@ -1,6 +1,7 @@
 package top.ourisland.litemacro.config.model;
 
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * Action specification: type discriminator and an open-ended options map
@@ -37,4 +38,17 @@ public class ActionSpec {
     public void setOptions(Map<String, Object> options) {
         this.options = options;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ActionSpec that)) return false;
+        return Objects.equals(type, that.type) &&
+                Objects.equals(options, that.options);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, options);
+    }
+}
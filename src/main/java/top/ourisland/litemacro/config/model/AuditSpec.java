@@ -0,0 +1,113 @@
+package top.ourisland.litemacro.config.model;
+
+/**
+ * Audit specification: whether macro invocations and the commands they issue are written to an audit file, and how
+ * that file is rotated and buffered.
+ */
+public class AuditSpec {
+    private boolean enabled;
+    private String file = "logs/audit.log";
+    private long maxSize = 10240L;
+    private int keep = 10;
+    private boolean gzip = true;
+    private int buffer = 8192;
+    private long flush = 1000L;
+
+    /**
+     * @return true if invocations and issued commands are audited
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param enabled true to audit invocations and issued commands
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return path of the audit file, relative to the plugin's data directory unless absolute
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * @param file path of the audit file, relative to the plugin's data directory unless absolute
+     */
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    /**
+     * @return size in KiB at which the audit file is rotated
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @param maxSize size in KiB at which the audit file is rotated
+     */
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return number of rotated files kept
+     */
+    public int getKeep() {
+        return keep;
+    }
+
+    /**
+     * @param keep number of rotated files kept
+     */
+    public void setKeep(int keep) {
+        this.keep = keep;
+    }
+
+    /**
+     * @return true if rotated files are gzip-compressed
+     */
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    /**
+     * @param gzip true to gzip-compress rotated files
+     */
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    /**
+     * @return number of records buffered in memory before further records are dropped
+     */
+    public int getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @param buffer number of records buffered in memory before further records are dropped
+     */
+    public void setBuffer(int buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * @return longest time in milliseconds a record waits in memory before it is written
+     */
+    public long getFlush() {
+        return flush;
+    }
+
+    /**
+     * @param flush longest time in milliseconds a record waits in memory before it is written
+     */
+    public void setFlush(long flush) {
+        this.flush = flush;
+    }
+}
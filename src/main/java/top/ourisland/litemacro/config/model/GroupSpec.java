@@ -0,0 +1,70 @@
+package top.ourisland.litemacro.config.model;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Server group specification: the member servers, how a member is chosen for a transfer, and how often the members
+ * are pinged to keep their player counts and latency up to date.
+ */
+public class GroupSpec {
+    private List<String> servers;
+    private String strategy = "least_players";
+    private long interval = 5000L;
+
+    /**
+     * @return names of the member servers, in order
+     */
+    public List<String> getServers() {
+        return servers;
+    }
+
+    /**
+     * @param servers names of the member servers, in order
+     */
+    public void setServers(List<String> servers) {
+        this.servers = servers;
+    }
+
+    /**
+     * @return selection strategy: least_players, lowest_ping, round_robin or hash
+     */
+    public String getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @param strategy selection strategy: least_players, lowest_ping, round_robin or hash
+     */
+    public void setStrategy(String strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * @return time between two pings of each member, in milliseconds
+     */
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * @param interval time between two pings of each member, in milliseconds
+     */
+    public void setInterval(long interval) {
+        this.interval = interval;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GroupSpec that)) return false;
+        return interval == that.interval &&
+                Objects.equals(servers, that.servers) &&
+                Objects.equals(strategy, that.strategy);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(servers, strategy, interval);
+    }
+}
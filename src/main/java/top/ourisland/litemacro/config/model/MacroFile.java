@@ -0,0 +1,25 @@
+package top.ourisland.litemacro.config.model;
+
+import java.util.Map;
+
+/**
+ * Model of a file in the macros directory. Such files only hold macros, written exactly like the {@code macros}
+ * section of command.yml.
+ */
+public class MacroFile {
+    private Map<String, MacroSpec> macros;
+
+    /**
+     * @return macros keyed by name, or null if unset
+     */
+    public Map<String, MacroSpec> getMacros() {
+        return macros;
+    }
+
+    /**
+     * @param macros macros keyed by name
+     */
+    public void setMacros(Map<String, MacroSpec> macros) {
+        this.macros = macros;
+    }
+}
@@ -1,15 +1,20 @@
 package top.ourisland.litemacro.config.model;
 
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Macro specification: description, permission, optional aliases,
- * and a list of action specifications.
+ * concurrency policy, cooldown and rate limit, and a list of action
+ * specifications.
  */
 public class MacroSpec {
     private String description;
     private String permission;
     private List<String> aliases;
+    private String concurrency;
+    private long cooldown;
+    private RateSpec rate;
     private List<ActionSpec> actions;
 
     /**
@@ -54,6 +59,48 @@ public class MacroSpec {
         this.aliases = aliases;
     }
 
+    /**
+     * @return how overlapping runs by the same invoker are handled ("allow", "reject" or "replace"); null means allow
+     */
+    public String getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @param concurrency how overlapping runs by the same invoker are handled
+     */
+    public void setConcurrency(String concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * @return minimum time between two invocations by the same player, in milliseconds (0 means none)
+     */
+    public long getCooldown() {
+        return cooldown;
+    }
+
+    /**
+     * @param cooldown minimum time between two invocations by the same player, in milliseconds
+     */
+    public void setCooldown(long cooldown) {
+        this.cooldown = cooldown;
+    }
+
+    /**
+     * @return per-player rate limit, or null if unlimited
+     */
+    public RateSpec getRate() {
+        return rate;
+    }
+
+    /**
+     * @param rate per-player rate limit
+     */
+    public void setRate(RateSpec rate) {
+        this.rate = rate;
+    }
+
     /**
      * @return ordered action specifications for this macro
      */
@@ -67,4 +114,22 @@ public class MacroSpec {
     public void setActions(List<ActionSpec> actions) {
         this.actions = actions;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MacroSpec that)) return false;
+        return Objects.equals(description, that.description) &&
+                Objects.equals(permission, that.permission) &&
+                Objects.equals(aliases, that.aliases) &&
+                Objects.equals(concurrency, that.concurrency) &&
+                cooldown == that.cooldown &&
+                Objects.equals(rate, that.rate) &&
+                Objects.equals(actions, that.actions);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(description, permission, aliases, concurrency, cooldown, rate, actions);
+    }
+}
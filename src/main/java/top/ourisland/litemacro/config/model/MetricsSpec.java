@@ -0,0 +1,53 @@
+package top.ourisland.litemacro.config.model;
+
+/**
+ * Metrics specification: whether the metrics are periodically written to a file in the Prometheus text format, where,
+ * and how often.
+ */
+public class MetricsSpec {
+    private boolean export;
+    private String file = "metrics/litemacro.prom";
+    private long interval = 15000L;
+
+    /**
+     * @return true if the metrics are written to {@link #getFile()} periodically
+     */
+    public boolean isExport() {
+        return export;
+    }
+
+    /**
+     * @param export true to write the metrics to {@link #getFile()} periodically
+     */
+    public void setExport(boolean export) {
+        this.export = export;
+    }
+
+    /**
+     * @return path of the metrics file, relative to the plugin's data directory unless absolute
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * @param file path of the metrics file, relative to the plugin's data directory unless absolute
+     */
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    /**
+     * @return time between two writes of the metrics file, in milliseconds
+     */
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * @param interval time between two writes of the metrics file, in milliseconds
+     */
+    public void setInterval(long interval) {
+        this.interval = interval;
+    }
+}
@@ -0,0 +1,53 @@
+package top.ourisland.litemacro.config.model;
+
+import java.util.Objects;
+
+/**
+ * Rate limit specification for a macro: a token bucket holding {@code limit} invocations that refills completely every
+ * {@code period} milliseconds.
+ */
+public class RateSpec {
+    private int limit;
+    private long period;
+
+    /**
+     * @return maximum number of invocations per period (bucket size)
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @param limit maximum number of invocations per period
+     */
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * @return period in milliseconds
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * @param period period in milliseconds
+     */
+    public void setPeriod(long period) {
+        this.period = period;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RateSpec that)) return false;
+        return limit == that.limit &&
+                period == that.period;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(limit, period);
+    }
+}
@@ -0,0 +1,38 @@
+package top.ourisland.litemacro.config.model;
+
+/**
+ * Reload specification: whether configuration changes on disk are picked up automatically, and how long to wait for
+ * further changes before reloading.
+ */
+public class ReloadSpec {
+    private boolean watch;
+    private long debounce = 500L;
+
+    /**
+     * @return true if the configuration files are watched and reloaded automatically
+     */
+    public boolean isWatch() {
+        return watch;
+    }
+
+    /**
+     * @param watch true to watch and reload the configuration files automatically
+     */
+    public void setWatch(boolean watch) {
+        this.watch = watch;
+    }
+
+    /**
+     * @return quiet period in milliseconds after the last change before an automatic reload starts
+     */
+    public long getDebounce() {
+        return debounce;
+    }
+
+    /**
+     * @param debounce quiet period in milliseconds after the last change before an automatic reload starts
+     */
+    public void setDebounce(long debounce) {
+        this.debounce = debounce;
+    }
+}
@@ -8,7 +8,14 @@ import java.util.Map;
 public class RootConfig {
     private Map<String, MacroSpec> macros;
     private Map<String, String> placeholders;
+    private Map<String, GroupSpec> groups;
     private String lang;
+    private boolean playerLang = true;
+    private int expectedPlayers = 1000;
+    private SchedulerSpec scheduler;
+    private ReloadSpec reload;
+    private MetricsSpec metrics;
+    private AuditSpec audit;
 
     /**
      * Gets the macro map.
@@ -46,6 +53,24 @@ public class RootConfig {
         this.placeholders = placeholders;
     }
 
+    /**
+     * Gets the server groups map.
+     *
+     * @return server groups keyed by name, or null if unset
+     */
+    public Map<String, GroupSpec> getGroups() {
+        return groups;
+    }
+
+    /**
+     * Sets the server groups map.
+     *
+     * @param groups server groups keyed by name
+     */
+    public void setGroups(Map<String, GroupSpec> groups) {
+        this.groups = groups;
+    }
+
     /**
      * Get the specified language.
      *
@@ -63,4 +88,113 @@ public class RootConfig {
     public void setLang(String lang) {
         this.lang = lang;
     }
+
+    /**
+     * Whether messages to players use the player's own client language when it is bundled.
+     *
+     * @return true to localize per player, false to always use {@link #getLang()}
+     */
+    public boolean isPlayerLang() {
+        return playerLang;
+    }
+
+    /**
+     * Sets whether messages to players use the player's own client language when it is bundled.
+     *
+     * @param playerLang true to localize per player
+     */
+    public void setPlayerLang(boolean playerLang) {
+        this.playerLang = playerLang;
+    }
+
+    /**
+     * Gets how many players the per-player cooldown and rate limit tables are sized for. The players online when the
+     * configuration is compiled are used instead if there are more.
+     *
+     * @return the expected number of players
+     */
+    public int getExpectedPlayers() {
+        return expectedPlayers;
+    }
+
+    /**
+     * Sets how many players the per-player cooldown and rate limit tables are sized for.
+     *
+     * @param expectedPlayers the expected number of players
+     */
+    public void setExpectedPlayers(int expectedPlayers) {
+        this.expectedPlayers = expectedPlayers;
+    }
+
+    /**
+     * Gets the scheduler settings.
+     *
+     * @return scheduler settings, or null if unset
+     */
+    public SchedulerSpec getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Sets the scheduler settings.
+     *
+     * @param scheduler scheduler settings
+     */
+    public void setScheduler(SchedulerSpec scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Gets the reload settings.
+     *
+     * @return reload settings, or null if unset
+     */
+    public ReloadSpec getReload() {
+        return reload;
+    }
+
+    /**
+     * Sets the reload settings.
+     *
+     * @param reload reload settings
+     */
+    public void setReload(ReloadSpec reload) {
+        this.reload = reload;
+    }
+
+    /**
+     * Gets the metrics settings.
+     *
+     * @return metrics settings, or null if unset
+     */
+    public MetricsSpec getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics settings.
+     *
+     * @param metrics metrics settings
+     */
+    public void setMetrics(MetricsSpec metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets the audit settings.
+     *
+     * @return audit settings, or null if unset
+     */
+    public AuditSpec getAudit() {
+        return audit;
+    }
+
+    /**
+     * Sets the audit settings.
+     *
+     * @param audit audit settings
+     */
+    public void setAudit(AuditSpec audit) {
+        this.audit = audit;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package top.ourisland.litemacro.config.model;
+
+/**
+ * Scheduler specification: which scheduler runs macro delays, and the timing wheel's resolution and size.
+ */
+public class SchedulerSpec {
+    private String type = "wheel";
+    private long tick = 10L;
+    private int slots = 512;
+
+    /**
+     * @return scheduler type, either "wheel" (plugin-owned timing wheel) or "velocity" (Velocity's scheduler)
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @param type scheduler type, either "wheel" or "velocity"
+     */
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    /**
+     * @return timing wheel tick resolution in milliseconds
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * @param tick timing wheel tick resolution in milliseconds
+     */
+    public void setTick(long tick) {
+        this.tick = tick;
+    }
+
+    /**
+     * @return number of timing wheel slots
+     */
+    public int getSlots() {
+        return slots;
+    }
+
+    /**
+     * @param slots number of timing wheel slots
+     */
+    public void setSlots(int slots) {
+        this.slots = slots;
+    }
+
+    /**
+     * @return true if delays should use Velocity's scheduler instead of the timing wheel
+     */
+    public boolean useVelocity() {
+        return "velocity".equalsIgnoreCase(type);
+    }
+}
@@ -0,0 +1,442 @@
+package top.ourisland.litemacro.runtime;
+
+import com.velocitypowered.api.command.CommandSource;
+import com.velocitypowered.api.proxy.Player;
+import org.slf4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Audit trail of macro invocations and of the commands macros issue, written to a rolling file.
+ * <p>
+ * Recording never touches the disk and never blocks: the caller only captures the values of a record and offers it to
+ * a bounded, lock-free ring buffer. A background thread drains the buffer in batches, formats the records as one line
+ * each and appends them to the file, which is rotated when it exceeds its size limit (optionally gzip-compressed) with
+ * only the newest rotated files kept. When the buffer is full the record is dropped and counted instead, as are the
+ * records of a batch that could not be written; drops are reported in the log and in the {@link Metrics}.
+ * <p>
+ * A line looks like {@code 2026-01-01T12:00:00.000Z invoke Steve <uuid> /warn Alex spamming} for an invocation and
+ * {@code ... command Steve <uuid> /warn console: mute Alex 10m} for a command the macro ran. Control characters in
+ * arguments are escaped, so every record is exactly one line.
+ */
+public class AuditLog {
+    private static final DateTimeFormatter ROTATED_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS")
+            .withZone(ZoneOffset.UTC);
+
+    private final Logger logger;
+    private final Metrics metrics;
+    private volatile Sink sink;
+    private Settings settings;
+
+    /**
+     * Audit file settings.
+     *
+     * @param file        the current audit file
+     * @param maxBytes    size at which the file is rotated
+     * @param keep        number of rotated files kept
+     * @param gzip        whether rotated files are gzip-compressed
+     * @param bufferSize  capacity of the ring buffer in records, rounded up to a power of two
+     * @param flushMillis longest time a record waits in the buffer before it is written
+     */
+    public record Settings(Path file, long maxBytes, int keep, boolean gzip, int bufferSize, long flushMillis) {
+    }
+
+    /**
+     * Creates a disabled audit log; see {@link #configure(Settings)}.
+     *
+     * @param logger  the logger
+     * @param metrics receives the number of written and dropped records
+     */
+    public AuditLog(Logger logger, Metrics metrics) {
+        this.logger = logger;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Enables, reconfigures or disables the audit log. Safe to call after every reload; nothing happens if the
+     * settings did not change. When they did, the previous writer drains its buffer and closes its file before the new
+     * one opens. If the previous writer is slow to finish, the new one buffers records until it has, so two writers
+     * never append to or rotate the same file at once.
+     *
+     * @param settings the settings, or null to disable auditing
+     */
+    public synchronized void configure(Settings settings) {
+        if (Objects.equals(settings, this.settings)) return;
+        this.settings = settings;
+        Sink old = sink;
+        Sink next = settings == null ? null : new Sink(settings, old);
+        sink = next;
+        if (old != null) old.stop();
+        if (next != null) next.start();
+    }
+
+    /**
+     * Writes the remaining records and stops the writer.
+     */
+    public void shutdown() {
+        configure(null);
+    }
+
+    /**
+     * @return true if records are being written
+     */
+    public boolean isEnabled() {
+        return sink != null;
+    }
+
+    /**
+     * Records an admitted macro invocation.
+     *
+     * @param source the invoker
+     * @param macro  primary macro name
+     * @param args   the command arguments; not copied, so they must not be modified afterwards
+     */
+    public void invoked(CommandSource source, String macro, String[] args) {
+        Sink s = sink;
+        if (s == null) return;
+        s.offer(new Entry(System.currentTimeMillis(), source, macro, args, null, false));
+    }
+
+    /**
+     * Records a command issued by a macro.
+     *
+     * @param invoker   who ran the macro
+     * @param macro     primary macro name
+     * @param command   the command line, without a leading slash
+     * @param asConsole whether the command runs as the console rather than as the invoker
+     */
+    public void command(CommandSource invoker, String macro, String command, boolean asConsole) {
+        Sink s = sink;
+        if (s == null) return;
+        s.offer(new Entry(System.currentTimeMillis(), invoker, macro, null, command, asConsole));
+    }
+
+    /**
+     * One audit record. Formatting, including the invoker's name, is left to the writer thread.
+     */
+    private record Entry(long time, CommandSource source, String macro, String[] args, String command,
+                         boolean asConsole) {
+        void appendTo(StringBuilder sb) {
+            sb.append(Instant.ofEpochMilli(time)).append(' ').append(command == null ? "invoke" : "command");
+            if (source instanceof Player p) {
+                sb.append(' ').append(p.getUsername()).append(' ').append(p.getUniqueId());
+            } else {
+                sb.append(" CONSOLE -");
+            }
+            sb.append(" /");
+            escape(sb, macro);
+            if (command == null) {
+                for (String a : args) {
+                    sb.append(' ');
+                    escape(sb, a);
+                }
+            } else {
+                sb.append(asConsole ? " console: " : " player: ");
+                escape(sb, command);
+            }
+            sb.append('\n');
+        }
+
+        private static void escape(StringBuilder sb, String s) {
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '\\' -> sb.append("\\\\");
+                    case '\n' -> sb.append("\\n");
+                    case '\r' -> sb.append("\\r");
+                    case '\t' -> sb.append("\\t");
+                    default -> {
+                        if (c < 0x20 || c == 0x7f) sb.append(String.format("\\u%04x", (int) c));
+                        else sb.append(c);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Bounded multi-producer, single-consumer ring buffer. Producers claim a position with one CAS and publish the
+     * record through the slot's sequence number (as in Dmitry Vyukov's bounded queue); the single consumer needs no
+     * atomic read-modify-write at all.
+     */
+    private static final class Ring {
+        private final AtomicReferenceArray<Entry> items;
+        private final AtomicLongArray sequence;
+        private final AtomicLong tail = new AtomicLong();
+        private final int mask;
+        private long head;
+
+        Ring(int capacity) {
+            int size = Integer.highestOneBit(Math.max(64, Math.min(capacity, 1 << 20)) - 1) << 1;
+            this.items = new AtomicReferenceArray<>(size);
+            this.sequence = new AtomicLongArray(size);
+            for (int i = 0; i < size; i++) sequence.set(i, i);
+            this.mask = size - 1;
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        /**
+         * @return the position the entry was stored at, or -1 if the buffer is full
+         */
+        long offer(Entry e) {
+            long pos = tail.get();
+            for (; ; ) {
+                int i = (int) (pos & mask);
+                long diff = sequence.get(i) - pos;
+                if (diff == 0) {
+                    if (tail.compareAndSet(pos, pos + 1)) {
+                        items.lazySet(i, e);
+                        sequence.lazySet(i, pos + 1);
+                        return pos;
+                    }
+                    pos = tail.get();
+                } else if (diff < 0) {
+                    return -1L;
+                } else {
+                    pos = tail.get();
+                }
+            }
+        }
+
+        /**
+         * Consumer only.
+         *
+         * @return the next published entry, or null if there is none
+         */
+        Entry poll() {
+            int i = (int) (head & mask);
+            if (sequence.get(i) != head + 1) return null;
+            Entry e = items.get(i);
+            items.lazySet(i, null);
+            sequence.lazySet(i, head + mask + 1);
+            head++;
+            return e;
+        }
+    }
+
+    /**
+     * A ring buffer with its writer thread and file, for one set of settings.
+     */
+    private final class Sink {
+        private final Settings settings;
+        private final Ring ring;
+        private final Thread writer;
+        private final AtomicLong dropped = new AtomicLong();
+        private final int wakeMask;
+        private volatile boolean running = true;
+        private OutputStream out;
+        private long size;
+
+        /**
+         * The sink this one replaces, until its writer has exited.
+         */
+        private Sink previous;
+
+        /**
+         * Records taken from the ring but not yet flushed to the file.
+         */
+        private int unflushed;
+
+        Sink(Settings settings, Sink previous) {
+            this.settings = settings;
+            this.previous = previous;
+            this.ring = new Ring(settings.bufferSize());
+            this.wakeMask = ring.capacity() / 4 - 1;
+            this.writer = new Thread(this::work, "liteMacro-audit");
+            this.writer.setDaemon(true);
+        }
+
+        void start() {
+            writer.start();
+        }
+
+        /**
+         * Stops the writer after it has written what is buffered, waiting a few seconds at most. The writer may keep
+         * going after that; the sink replacing this one waits for it.
+         */
+        void stop() {
+            running = false;
+            LockSupport.unpark(writer);
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void offer(Entry e) {
+            long pos = ring.offer(e);
+            if (pos < 0) {
+                dropped.incrementAndGet();
+                metrics.auditDropped(1L);
+            } else if ((pos & wakeMask) == 0) {
+                // Wake the writer early every quarter of the buffer, so bursts are drained before they overflow it
+                LockSupport.unpark(writer);
+            }
+        }
+
+        private void work() {
+            awaitPrevious();
+            long flushNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(10L, settings.flushMillis()));
+            StringBuilder sb = new StringBuilder(256);
+            long lost = 0L;
+            for (; ; ) {
+                boolean last = !running;
+                try {
+                    drain(sb);
+                    if (lost > 0) {
+                        logger.warn("Audit log {} is writable again; {} record(s) were lost", settings.file(), lost);
+                    }
+                    lost = 0L;
+                } catch (IOException e) {
+                    // Whatever was taken from the ring but did not reach the file is gone
+                    int n = unflushed;
+                    unflushed = 0;
+                    metrics.auditDropped(n);
+                    if (lost == 0L) logger.warn("Failed to write audit log {}: {}", settings.file(), e.getMessage());
+                    lost += n;
+                    close();
+                }
+                long d = dropped.getAndSet(0L);
+                if (d > 0) logger.warn("Audit buffer full; dropped {} record(s)", d);
+                if (last) break;
+                LockSupport.parkNanos(this, flushNanos);
+            }
+            if (lost > 0) {
+                // The last attempt failed too; nothing will write what is still buffered
+                int left = 0;
+                while (ring.poll() != null) left++;
+                metrics.auditDropped(left);
+                logger.warn("Audit log {} could not be written; {} record(s) were lost", settings.file(), lost + left);
+            }
+            close();
+        }
+
+        /**
+         * Waits until the writer of the sink this one replaces has exited, so that it is done with the file.
+         */
+        private void awaitPrevious() {
+            while (previous != null) {
+                try {
+                    previous.writer.join();
+                    previous = null;
+                } catch (InterruptedException e) {
+                    // Keep waiting; starting early would share the file
+                }
+            }
+        }
+
+        /**
+         * Writes every buffered record and rotates the file if it has grown too large.
+         */
+        private void drain(StringBuilder sb) throws IOException {
+            Entry e;
+            while ((e = ring.poll()) != null) {
+                unflushed++;
+                if (out == null) open();
+                sb.setLength(0);
+                e.appendTo(sb);
+                byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+                out.write(bytes);
+                size += bytes.length;
+                if (size >= settings.maxBytes()) {
+                    flush();
+                    rotate();
+                }
+            }
+            if (out != null) flush();
+        }
+
+        private void flush() throws IOException {
+            out.flush();
+            if (unflushed > 0) metrics.auditWritten(unflushed);
+            unflushed = 0;
+        }
+
+        private void open() throws IOException {
+            Path file = settings.file();
+            Path dir = file.toAbsolutePath().getParent();
+            if (dir != null) Files.createDirectories(dir);
+            out = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND), 64 * 1024);
+            size = Files.size(file);
+        }
+
+        private void close() {
+            if (out == null) return;
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+            out = null;
+        }
+
+        /**
+         * Moves the current file aside as {@code <name>-<yyyyMMdd-HHmmss-SSS>.<ext>[.gz]} and deletes the oldest
+         * rotated files beyond the configured number. The next record opens a new file.
+         */
+        private void rotate() throws IOException {
+            close();
+            Path file = settings.file();
+            String name = file.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            String base = dot > 0 ? name.substring(0, dot) : name;
+            String ext = dot > 0 ? name.substring(dot) : "";
+            String suffix = ext + (settings.gzip() ? ".gz" : "");
+            String stamp = ROTATED_NAME.format(Instant.now());
+            Path target = file.resolveSibling(base + "-" + stamp + suffix);
+            for (int i = 1; Files.exists(target); i++) {
+                // '_' sorts after '.', keeping the names in rotation order
+                target = file.resolveSibling(base + "-" + stamp + "_" + i + suffix);
+            }
+            if (settings.gzip()) {
+                try (InputStream in = Files.newInputStream(file);
+                     OutputStream gz = new GZIPOutputStream(Files.newOutputStream(target), 64 * 1024)) {
+                    in.transferTo(gz);
+                }
+                Files.delete(file);
+            } else {
+                Files.move(file, target);
+            }
+            prune(file.toAbsolutePath().getParent(), base + "-", suffix);
+        }
+
+        private void prune(Path dir, String prefix, String suffix) throws IOException {
+            List<Path> rotated = new ArrayList<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path p : files) {
+                    String n = p.getFileName().toString();
+                    if (n.startsWith(prefix) && n.endsWith(suffix)) rotated.add(p);
+                }
+            }
+            // Time stamps sort lexicographically, oldest first
+            rotated.sort(null);
+            for (int i = 0; i < rotated.size() - Math.max(0, settings.keep()); i++) {
+                Files.deleteIfExists(rotated.get(i));
+            }
+        }
+    }
+}
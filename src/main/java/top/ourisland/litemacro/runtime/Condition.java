@@ -0,0 +1,382 @@
+package top.ourisland.litemacro.runtime;
+
+import com.velocitypowered.api.proxy.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A boolean expression over an invocation, parsed once into a tree of closures. Evaluating it renders the placeholders
+ * it compares and nothing else: operators, literals and regular expressions are all resolved at compile time.
+ * <p>
+ * Conditions combine tests with {@code &&} / {@code and}, {@code ||} / {@code or}, {@code !} / {@code not} and
+ * parentheses. A test is {@code true}, {@code false}, a function or a comparison of two values:
+ * <ul>
+ *     <li>{@code permission("node")}: the invoker has the permission</li>
+ *     <li>{@code server("name")}: the invoking player is on the server, or on a member of the group, of that name</li>
+ *     <li>{@code player()}: the macro was invoked by a player rather than the console</li>
+ *     <li>{@code a == b}, {@code a != b}: equality; numeric if either side is a number literal and both sides are
+ *     numbers, otherwise exact string equality</li>
+ *     <li>{@code a < b}, {@code <=}, {@code >}, {@code >=}: numeric comparison; false if either side is not a
+ *     number</li>
+ *     <li>{@code a ~= "regex"}, {@code a !~ "regex"}: whether the value matches the whole regular expression, which
+ *     must be a literal</li>
+ * </ul>
+ * Values are quoted strings ({@code "..."} or {@code '...'}, with {@code \} escapes), which may contain placeholders,
+ * bare placeholders such as {@code {arg0}} or {@code {online:lobby}}, number literals, and bare words such as
+ * {@code lobby-1}. For example: {@code permission("vip.hub") && {arg0} ~= "(?i)survival|creative" && {online} < 500}.
+ */
+public final class Condition {
+    private final String source;
+    private final Node root;
+
+    private Condition(String source, Node root) {
+        this.source = source;
+        this.root = root;
+    }
+
+    /**
+     * Parses a condition, inlining the global placeholders it references.
+     *
+     * @param source       the condition source
+     * @param placeholders the global placeholders
+     * @return the compiled condition
+     * @throws IllegalArgumentException if the condition is malformed; the message names the column
+     */
+    public static Condition compile(String source, Placeholders placeholders) throws IllegalArgumentException {
+        if (source == null || source.isBlank()) throw new IllegalArgumentException("Condition is empty");
+        return new Condition(source, new Parser(source, placeholders).parse());
+    }
+
+    /**
+     * Evaluates the condition.
+     *
+     * @param ctx the invocation context
+     * @return the result
+     */
+    public boolean test(InvocationContext ctx) {
+        return root.test(ctx);
+    }
+
+    /**
+     * @return the original condition source
+     */
+    public String source() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    /**
+     * A compiled (sub-)expression.
+     */
+    @FunctionalInterface
+    private interface Node {
+        boolean test(InvocationContext ctx);
+    }
+
+    /**
+     * An operand. Constant operands keep their text and, for number literals, their numeric value, so neither is
+     * computed at run time.
+     *
+     * @param template the operand's template
+     * @param constant the text the operand always has, or null if it contains placeholders
+     * @param number   the numeric value of a constant operand, NaN if it is not a number
+     * @param literal  whether the operand was written as a number literal
+     */
+    private record Value(Template template, String constant, double number, boolean literal) {
+        static Value of(Template template, boolean literal) {
+            String c = template.constant();
+            return new Value(template, c, c == null ? Double.NaN : parseNumber(c), literal);
+        }
+
+        String text(InvocationContext ctx) {
+            return constant != null ? constant : template.render(ctx);
+        }
+
+        double number(InvocationContext ctx) {
+            return constant != null ? number : parseNumber(template.render(ctx));
+        }
+    }
+
+    /**
+     * Parses a decimal number without throwing: plain integers are parsed directly, anything else that looks like a
+     * number by {@link Double#parseDouble}.
+     *
+     * @param s the text
+     * @return the number, or NaN if the text is not a number
+     */
+    static double parseNumber(String s) {
+        int len = s.length();
+        if (len == 0) return Double.NaN;
+        int i = s.charAt(0) == '-' || s.charAt(0) == '+' ? 1 : 0;
+        if (i == len) return Double.NaN;
+        if (len - i <= 18) {
+            long v = 0L;
+            int j = i;
+            for (; j < len; j++) {
+                char c = s.charAt(j);
+                if (c < '0' || c > '9') break;
+                v = v * 10 + (c - '0');
+            }
+            if (j == len) return s.charAt(0) == '-' ? -v : v;
+        }
+        for (int j = i; j < len; j++) {
+            char c = s.charAt(j);
+            if ((c < '0' || c > '9') && c != '.' && c != 'e' && c != 'E' && c != '-' && c != '+') return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Recursive descent parser producing the closure tree.
+     */
+    private static final class Parser {
+        private final String src;
+        private final Placeholders placeholders;
+        private int pos;
+
+        Parser(String src, Placeholders placeholders) {
+            this.src = src;
+            this.placeholders = placeholders;
+        }
+
+        Node parse() {
+            Node n = or();
+            skipSpace();
+            if (pos < src.length()) throw error("unexpected '" + src.charAt(pos) + "'");
+            return n;
+        }
+
+        private Node or() {
+            Node left = and();
+            while (symbol("||") || word("or")) {
+                Node a = left;
+                Node b = and();
+                left = ctx -> a.test(ctx) || b.test(ctx);
+            }
+            return left;
+        }
+
+        private Node and() {
+            Node left = not();
+            while (symbol("&&") || word("and")) {
+                Node a = left;
+                Node b = not();
+                left = ctx -> a.test(ctx) && b.test(ctx);
+            }
+            return left;
+        }
+
+        private Node not() {
+            if (symbol("!") || word("not")) {
+                Node n = not();
+                return ctx -> !n.test(ctx);
+            }
+            return atom();
+        }
+
+        private Node atom() {
+            skipSpace();
+            if (symbol("(")) {
+                Node n = or();
+                expect(")");
+                return n;
+            }
+            int start = pos;
+            String name = identifier();
+            if (name != null) {
+                skipSpace();
+                if (symbol("(")) return function(name, start);
+                if (name.equals("true") || name.equals("false")) {
+                    // A bare true/false is a test, unless it is the left side of a comparison
+                    if (operator() == null) return name.equals("true") ? ctx -> true : ctx -> false;
+                }
+                pos = start;
+            }
+            Value left = value();
+            int at = pos;
+            String op = operator();
+            if (op == null) throw error("expected a comparison operator");
+            Value right = value();
+            return compare(left, op, right, at);
+        }
+
+        private Node function(String name, int start) {
+            List<Value> args = new ArrayList<>();
+            skipSpace();
+            if (!symbol(")")) {
+                do {
+                    args.add(value());
+                } while (symbol(","));
+                expect(")");
+            }
+            switch (name) {
+                case "permission" -> {
+                    Value node = single(name, args, start);
+                    return ctx -> ctx.source().hasPermission(node.text(ctx));
+                }
+                case "server" -> {
+                    Value target = single(name, args, start);
+                    return ctx -> ctx.player()
+                            .flatMap(Player::getCurrentServer)
+                            .map(c -> ctx.runtime().groups().contains(target.text(ctx), c.getServerInfo().getName()))
+                            .orElse(false);
+                }
+                case "player" -> {
+                    if (!args.isEmpty()) throw error(start, "player() takes no arguments");
+                    return ctx -> ctx.source() instanceof Player;
+                }
+                default -> throw error(start, "unknown function '" + name + "'");
+            }
+        }
+
+        private Value single(String name, List<Value> args, int start) {
+            if (args.size() != 1) throw error(start, name + "() takes exactly one argument");
+            return args.get(0);
+        }
+
+        private Node compare(Value l, String op, Value r, int at) {
+            switch (op) {
+                case "~=", "!~" -> {
+                    if (r.constant() == null) throw error(at, "the pattern after '" + op + "' must be a literal");
+                    Pattern p;
+                    try {
+                        p = Pattern.compile(r.constant());
+                    } catch (PatternSyntaxException e) {
+                        throw error(at, "invalid pattern: " + e.getDescription());
+                    }
+                    boolean match = op.equals("~=");
+                    return ctx -> p.matcher(l.text(ctx)).matches() == match;
+                }
+                case "==", "!=" -> {
+                    boolean equal = op.equals("==");
+                    if (!l.literal() && !r.literal()) return ctx -> l.text(ctx).equals(r.text(ctx)) == equal;
+                    return ctx -> {
+                        String a = l.text(ctx);
+                        String b = r.text(ctx);
+                        double x = l.constant() != null ? l.number() : parseNumber(a);
+                        double y = r.constant() != null ? r.number() : parseNumber(b);
+                        boolean eq = Double.isNaN(x) || Double.isNaN(y) ? a.equals(b) : x == y;
+                        return eq == equal;
+                    };
+                }
+                case "<" -> {
+                    return ctx -> l.number(ctx) < r.number(ctx);
+                }
+                case "<=" -> {
+                    return ctx -> l.number(ctx) <= r.number(ctx);
+                }
+                case ">" -> {
+                    return ctx -> l.number(ctx) > r.number(ctx);
+                }
+                case ">=" -> {
+                    return ctx -> l.number(ctx) >= r.number(ctx);
+                }
+                default -> throw error(at, "unknown operator '" + op + "'");
+            }
+        }
+
+        private Value value() {
+            skipSpace();
+            if (pos >= src.length()) throw error("expected a value");
+            char c = src.charAt(pos);
+            if (c == '"' || c == '\'') return Value.of(Template.compile(quoted(c), placeholders), false);
+            if (c == '{') {
+                int close = src.indexOf('}', pos);
+                if (close < 0) throw error("unclosed placeholder");
+                String raw = src.substring(pos, close + 1);
+                pos = close + 1;
+                return Value.of(Template.compile(raw, placeholders), false);
+            }
+            int start = pos;
+            while (pos < src.length() && isWordChar(src.charAt(pos))) pos++;
+            if (pos == start) throw error("expected a value");
+            String word = src.substring(start, pos);
+            boolean number = !Double.isNaN(parseNumber(word));
+            return Value.of(Template.compile(word, Placeholders.NONE), number);
+        }
+
+        private String quoted(char quote) {
+            StringBuilder sb = new StringBuilder();
+            int start = pos++;
+            while (pos < src.length()) {
+                char c = src.charAt(pos++);
+                if (c == quote) return sb.toString();
+                if (c == '\\' && pos < src.length()) c = src.charAt(pos++);
+                sb.append(c);
+            }
+            throw error(start, "unclosed string");
+        }
+
+        private String operator() {
+            skipSpace();
+            for (String op : new String[]{"==", "!=", "<=", ">=", "~=", "!~", "<", ">"}) {
+                if (src.startsWith(op, pos)) {
+                    pos += op.length();
+                    return op;
+                }
+            }
+            return null;
+        }
+
+        private String identifier() {
+            int start = pos;
+            while (pos < src.length() && Character.isLetter(src.charAt(pos))) pos++;
+            if (pos == start || (pos < src.length() && isWordChar(src.charAt(pos)))) {
+                pos = start;
+                return null;
+            }
+            return src.substring(start, pos);
+        }
+
+        private static boolean isWordChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == '.' || c == ':' || c == '+';
+        }
+
+        private boolean symbol(String s) {
+            skipSpace();
+            if (!src.startsWith(s, pos)) return false;
+            // '!' must not be mistaken for the start of '!=' or '!~'
+            if (s.equals("!") && pos + 1 < src.length() && (src.charAt(pos + 1) == '=' || src.charAt(pos + 1) == '~')) {
+                return false;
+            }
+            pos += s.length();
+            return true;
+        }
+
+        private boolean word(String w) {
+            skipSpace();
+            int end = pos + w.length();
+            if (!src.regionMatches(true, pos, w, 0, w.length())) return false;
+            if (end < src.length() && isWordChar(src.charAt(end))) return false;
+            pos = end;
+            return true;
+        }
+
+        private void expect(String s) {
+            if (!symbol(s)) throw error("expected '" + s + "'");
+        }
+
+        private void skipSpace() {
+            while (pos < src.length() && Character.isWhitespace(src.charAt(pos))) pos++;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return error(pos, message);
+        }
+
+        private IllegalArgumentException error(int at, String message) {
+            return new IllegalArgumentException("Invalid condition at column " + (at + 1) + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package top.ourisland.litemacro.runtime;
+
+/**
+ * Schedules delayed macro continuations. Implementations are shared by every {@link MacroRunner} of the plugin.
+ */
+public interface DelayScheduler {
+
+    /**
+     * Runs the task once after the given delay.
+     *
+     * @param delayMillis delay in milliseconds; non-positive values run as soon as possible, which for a ticking
+     *                    scheduler is the next tick
+     * @param task        the task to run; it must not block
+     * @return a handle that can cancel the task before it runs
+     */
+    Handle schedule(long delayMillis, Runnable task);
+
+    /**
+     * Runs the task once after at least one scheduler tick, for work that is spread over time in slices rather than
+     * waiting for a given delay. Schedulers without a tick of their own wait a fixed minimum instead.
+     *
+     * @param task the task to run; it must not block
+     * @return a handle that can cancel the task before it runs
+     */
+    default Handle scheduleNextTick(Runnable task) {
+        return schedule(0L, task);
+    }
+
+    /**
+     * Releases any resources held by the scheduler. Tasks that have not run yet are dropped.
+     */
+    default void shutdown() {
+    }
+
+    /**
+     * Cancellation handle for a scheduled task.
+     */
+    @FunctionalInterface
+    interface Handle {
+        /**
+         * Cancels the task if it has not run yet. Safe to call repeatedly.
+         */
+        void cancel();
+    }
+}
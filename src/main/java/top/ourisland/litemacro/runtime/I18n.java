@@ -1,23 +1,55 @@
 package top.ourisland.litemacro.runtime;
 
 import top.ourisland.litemacro.config.ConfigManager;
+import com.velocitypowered.api.command.CommandSource;
+import com.velocitypowered.api.proxy.Player;
 import net.kyori.adventure.text.Component;
 import org.slf4j.Logger;
 
 import java.text.MessageFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The I18n class is responsible for handling internationalization (i18n) of the plugin. It loads the appropriate
  * language resource bundle based on the configuration and provides methods to fetch localized strings with or without
  * placeholders.
+ * <p>
+ * Messages sent to a player are localized in the player's client language when that language is bundled, falling back
+ * to the configured language otherwise. Each language keeps its parsed {@link MessageFormat}s and its prefix, so
+ * sending a message only formats the arguments. The prefix and the text form a single text component, so that the
+ * legacy colour codes at the end of the prefix also colour the text.
  */
 public class I18n {
 
     /**
-     * The current resource bundle that contains localized strings.
+     * The languages bundled with the plugin, as {@code lang/<code>.properties} on the class path.
      */
-    private static ResourceBundle resourceBundle;
+    private static final List<String> BUNDLED = List.of(
+            "el_GR", "en_US", "es_ES", "fr_FR", "ja_JP", "ko_KR", "pt_PT", "ru_RU", "zh_CN", "zh_HK", "zh_TW");
+
+    /**
+     * Languages loaded so far, keyed by code. Bundled files never change, so they are kept across reloads.
+     */
+    private static final Map<String, Bundle> LOADED = new ConcurrentHashMap<>();
+
+    /**
+     * The language chosen for each client locale seen so far. Cleared when the configured language changes.
+     */
+    private static final Map<Locale, Bundle> BY_LOCALE = new ConcurrentHashMap<>();
+
+    /**
+     * The configured language, used for the console and for players whose language is not bundled.
+     */
+    private static volatile Bundle configured;
+
+    /**
+     * Whether players get messages in their own client language.
+     */
+    private static volatile boolean playerLang = true;
 
     /**
      * The logger used for logging warnings and errors related to localization.
@@ -39,6 +71,14 @@ public class I18n {
     public static void init(ConfigManager configManager, Logger logger) {
         I18n.configManager = configManager;
         I18n.logger = logger;
+        reload();
+    }
+
+    /**
+     * Applies the language settings of the current configuration.
+     */
+    public static void reload() {
+        playerLang = configManager.isPlayerLang();
         loadResourceBundle(configManager.getLang());
     }
 
@@ -51,36 +91,48 @@ public class I18n {
     public static void loadResourceBundle(String lang) {
         try {
             // Load the resource bundle for the specified language
-            resourceBundle = ResourceBundle.getBundle("lang/" + lang);
+            configured = bundle(lang);
         } catch (Exception e) {
             // Fall back to the default language (en_US) if loading fails
-            resourceBundle = ResourceBundle.getBundle("lang/en_US");
+            configured = bundle("en_US");
             logger.warn("Failed to load language '{}'. Falling back to default language 'en_US'.", lang);
         }
+        BY_LOCALE.clear();
     }
 
     /**
-     * Retrieves the localized string for the given key, formatted with the specified arguments. The string is prefixed
-     * with the "litemacro.prefix" value from the resource bundle.
+     * Retrieves the localized string for the given key in the configured language, formatted with the specified
+     * arguments. The string is prefixed with the "litemacro.prefix" value from the resource bundle.
      *
      * @param key  the key for the localized string
      * @param args the arguments to replace placeholders in the string
      * @return the formatted Component containing the localized string with prefix
      */
     public static Component lang(String key, Object... args) {
-        String formattedMessage = getString("litemacro.prefix") + MessageFormat.format(getString(key), args);
-        return Component.text(formattedMessage);
+        return configured.message(key, args);
     }
 
     /**
-     * Retrieves the localized string for the given key. The string is prefixed with the "litemacro.prefix" value from
-     * the resource bundle.
+     * Retrieves the localized string for the given key in the language of the receiver, formatted with the specified
+     * arguments. The string is prefixed with the "litemacro.prefix" value from the resource bundle.
+     *
+     * @param viewer the player or console the message is sent to
+     * @param key    the key for the localized string
+     * @param args   the arguments to replace placeholders in the string
+     * @return the formatted Component containing the localized string with prefix
+     */
+    public static Component lang(CommandSource viewer, String key, Object... args) {
+        return bundleFor(viewer).message(key, args);
+    }
+
+    /**
+     * Retrieves the localized string for the given key in the configured language.
      *
      * @param key the key for the localized string
-     * @return the localized string with prefix
+     * @return the localized string
      */
     public static String getString(String key) {
-        return resourceBundle.getString(key);
+        return configured.strings.getString(key);
     }
 
     /**
@@ -92,8 +144,20 @@ public class I18n {
      * @return the formatted Component containing the localized string
      */
     public static Component langPlain(String key, Object... args) {
-        String formattedMessage = MessageFormat.format(getString(key), args);
-        return Component.text(formattedMessage);
+        return Component.text(configured.format(key, args));
+    }
+
+    /**
+     * Retrieves the localized string for the given key in the language of the receiver, formatted with the specified
+     * arguments. This method does not add any prefix to the string.
+     *
+     * @param viewer the player or console the message is sent to
+     * @param key    the key for the localized string
+     * @param args   the arguments to replace placeholders in the string
+     * @return the formatted Component containing the localized string
+     */
+    public static Component langPlain(CommandSource viewer, String key, Object... args) {
+        return Component.text(bundleFor(viewer).format(key, args));
     }
 
     /**
@@ -107,13 +171,82 @@ public class I18n {
     }
 
     /**
-     * Retrieves a localized string for the prefix defined in the resource bundle, then concatenates
-     * it with the provided text.
+     * Appends the provided text to the localized prefix of the configured language.
      *
      * @param text the text to concatenate with the prefix
      * @return a Component containing the localized prefix followed by the provided text
      */
     public static Component prefix(String text) {
-        return Component.text(getString("litemacro.prefix") + text);
+        return Component.text(configured.prefix + text);
+    }
+
+    /**
+     * Appends the provided text to the localized prefix in the language of the receiver.
+     *
+     * @param viewer the player or console the message is sent to
+     * @param text   the text to concatenate with the prefix
+     * @return a Component containing the localized prefix followed by the provided text
+     */
+    public static Component prefix(CommandSource viewer, String text) {
+        return Component.text(bundleFor(viewer).prefix + text);
+    }
+
+    /**
+     * Chooses the language for a receiver: the player's client language if it is bundled, otherwise another bundled
+     * variant of the same language (preferring the configured one), otherwise the configured language.
+     */
+    private static Bundle bundleFor(CommandSource viewer) {
+        Bundle fallback = configured;
+        if (!playerLang || !(viewer instanceof Player player)) return fallback;
+        Locale locale = player.getEffectiveLocale();
+        if (locale == null) return fallback;
+        Bundle b = BY_LOCALE.get(locale);
+        if (b != null) return b;
+        b = fallback;
+        String exact = locale.getLanguage() + "_" + locale.getCountry();
+        if (BUNDLED.contains(exact)) {
+            b = bundle(exact);
+        } else if (!fallback.locale.getLanguage().equals(locale.getLanguage())) {
+            for (String code : BUNDLED) {
+                if (code.startsWith(locale.getLanguage() + "_")) {
+                    b = bundle(code);
+                    break;
+                }
+            }
+        }
+        BY_LOCALE.put(locale, b);
+        return b;
+    }
+
+    private static Bundle bundle(String code) {
+        return LOADED.computeIfAbsent(code, c -> new Bundle(c, ResourceBundle.getBundle("lang/" + c)));
+    }
+
+    /**
+     * One loaded language with its prefix and parsed message formats.
+     */
+    private static final class Bundle {
+        private final ResourceBundle strings;
+        private final Locale locale;
+        private final String prefix;
+        private final Map<String, MessageFormat> formats = new ConcurrentHashMap<>();
+
+        Bundle(String code, ResourceBundle strings) {
+            this.strings = strings;
+            this.locale = Locale.forLanguageTag(code.replace('_', '-'));
+            this.prefix = strings.getString("litemacro.prefix");
+        }
+
+        String format(String key, Object[] args) {
+            MessageFormat f = formats.computeIfAbsent(key, k -> new MessageFormat(strings.getString(k), locale));
+            // MessageFormat is not thread-safe; formatting is short, so contention is negligible
+            synchronized (f) {
+                return f.format(args);
+            }
+        }
+
+        Component message(String key, Object[] args) {
+            return Component.text(prefix + format(key, args));
+        }
     }
 }
@@ -4,42 +4,102 @@ import com.velocitypowered.api.command.CommandSource;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
 
-import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
 
 /**
- * Per-invocation context passed to actions, providing access to the server, the command source, and a bag of variables
- * used for placeholder expansion.
+ * Per-invocation context passed to actions, providing access to the shared runtime, the command source, and the
+ * command arguments used for placeholder expansion.
  *
- * @param server the proxy server
- * @param source the command source invoking the macro
- * @param vars   a map of variable names to values for placeholder replacement
- * @param plugin the plugin instance
+ * @param runtime the plugin-wide macro runtime
+ * @param source  the command source invoking the macro
+ * @param args    the command arguments, read by index by argument placeholders; never modified
+ * @param run     the registry handle of this invocation, used for cancellation
+ * @param memo    dynamic placeholder values resolved so far in this invocation, indexed by resolver slot
+ * @param loop    the iteration of the innermost loop running the actions, or null outside of loops
  */
-public record InvocationContext(ProxyServer server,
+public record InvocationContext(MacroRuntime runtime,
                                 CommandSource source,
-                                Map<String, String> vars,
-                                Object plugin) {
+                                String[] args,
+                                MacroRun run,
+                                Object[] memo,
+                                Loop loop) {
+    /**
+     * Creates the context of a new invocation with an empty placeholder memo.
+     *
+     * @param runtime the plugin-wide macro runtime
+     * @param source  the command source invoking the macro
+     * @param args    the command arguments
+     * @param run     the registry handle of this invocation, used for cancellation
+     */
+    public InvocationContext(MacroRuntime runtime, CommandSource source, String[] args, MacroRun run) {
+        this(runtime, source, args, run, runtime.resolvers().newMemo(), null);
+    }
+
+    /**
+     * Returns a context of the same invocation on behalf of another source, for example a player a message is
+     * rendered for. It gets its own placeholder memo, since dynamic placeholders may depend on the source.
+     *
+     * @param source the source
+     * @return the new context
+     */
+    public InvocationContext withSource(CommandSource source) {
+        return new InvocationContext(runtime, source, args, run, runtime.resolvers().newMemo(), loop);
+    }
+
+    /**
+     * Returns the context of one iteration of a loop. Iterations on behalf of another source get their own placeholder
+     * memo, as in {@link #withSource(CommandSource)}; the others share this context's memo.
+     *
+     * @param loop   the iteration
+     * @param source the source the iteration runs on behalf of
+     * @return the new context
+     */
+    public InvocationContext withLoop(Loop loop, CommandSource source) {
+        Object[] m = source == this.source ? memo : runtime.resolvers().newMemo();
+        return new InvocationContext(runtime, source, args, run, m, loop);
+    }
+
     /**
      * Expands known placeholders (e.g., {player}, {uuid}, and arbitrary {argN}) within the supplied string using the
-     * current context variables.
+     * current context. Actions should prefer rendering a {@link Template} compiled once at load time; this
+     * method compiles the string on every call and is meant for ad-hoc strings only.
      *
      * @param s the input string with placeholders
      * @return the string with placeholders replaced
      */
     public String replacePlaceholders(String s) {
-        if (s == null) return "";
-        String out = s;
-        String name = player().map(Player::getUsername).orElse("CONSOLE");
-        String uuid = player().map(Player::getUniqueId).map(UUID::toString).orElse("-");
-        out = out.replace("{player}", name).replace("{uuid}", uuid);
-        if (vars != null) {
-            for (Map.Entry<String, String> e : vars.entrySet()) {
-                out = out.replace("{" + e.getKey() + "}", e.getValue());
-            }
+        return Template.compile(s).render(this);
+    }
+
+    /**
+     * Renders a pre-compiled template against this context.
+     *
+     * @param template the compiled template
+     * @return the expanded string
+     */
+    public String render(Template template) {
+        return template.render(this);
+    }
+
+    /**
+     * Returns the value of a dynamic placeholder, resolving it on first use in this invocation. Nested action
+     * sequences share the context and therefore the memo; if two of them resolve the same slot concurrently, both
+     * compute it and either value is kept.
+     *
+     * @param slot the bound placeholder
+     * @return the value, or null if it is unavailable
+     */
+    String resolve(PlaceholderResolvers.Slot slot) {
+        Object[] m = memo;
+        int i = slot.index;
+        if (i >= m.length) return slot.resolve(this);
+        Object v = m[i];
+        if (v == null) {
+            String value = slot.resolve(this);
+            m[i] = value == null ? PlaceholderResolvers.UNAVAILABLE : value;
+            return value;
         }
-        return out;
+        return v == PlaceholderResolvers.UNAVAILABLE ? null : (String) v;
     }
 
     /**
@@ -50,4 +110,27 @@ public record InvocationContext(ProxyServer server,
     public Optional<Player> player() {
         return source instanceof Player p ? Optional.of(p) : Optional.empty();
     }
-}
\ No newline at end of file
+
+    /**
+     * @return the proxy server
+     */
+    public ProxyServer server() {
+        return runtime.server();
+    }
+
+    /**
+     * @return the plugin instance
+     */
+    public Object plugin() {
+        return runtime.plugin();
+    }
+
+    /**
+     * One iteration of a loop, read by the {@code {item}} and {@code {index}} placeholders.
+     *
+     * @param item  the current item: a player name, server name or number
+     * @param index the position of the item in the loop, starting at 0
+     */
+    public record Loop(String item, int index) {
+    }
+}
@@ -0,0 +1,106 @@
+package top.ourisland.litemacro.runtime;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with fixed, power-of-two buckets.
+ * <p>
+ * Bucket {@code i} counts durations of less than {@code 2^(i+4)} microseconds, from 16 µs up to about 33.5 s, and the
+ * last bucket counts everything longer. Recording a value finds its bucket with a single leading-zero count and bumps
+ * two {@link LongAdder}s, so it is cheap enough for every action of every macro. Quantiles are estimated by linear
+ * interpolation inside a bucket and are therefore accurate to within a factor of two.
+ */
+public final class LatencyHistogram {
+    /**
+     * log2 of the upper bound of the first bucket, in microseconds.
+     */
+    private static final int MIN_SHIFT = 4;
+
+    /**
+     * Number of buckets, including the overflow bucket.
+     */
+    public static final int BUCKETS = 23;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) counts[i] = new LongAdder();
+    }
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos the duration in nanoseconds; negative values count as 0
+     */
+    public void record(long nanos) {
+        if (nanos < 0L) nanos = 0L;
+        long micros = nanos / 1000L;
+        int bits = 64 - Long.numberOfLeadingZeros(micros);
+        counts[Math.min(Math.max(0, bits - MIN_SHIFT), BUCKETS - 1)].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * @param bucket a bucket index below {@code BUCKETS - 1}
+     * @return the exclusive upper bound of the bucket, in seconds
+     */
+    public static double upperBoundSeconds(int bucket) {
+        return (1L << (bucket + MIN_SHIFT)) / 1_000_000.0;
+    }
+
+    /**
+     * @return the current counts; not atomic across buckets, which is fine for reporting
+     */
+    public Snapshot snapshot() {
+        long[] c = new long[BUCKETS];
+        long total = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            c[i] = counts[i].sum();
+            total += c[i];
+        }
+        return new Snapshot(c, total, sumNanos.sum());
+    }
+
+    /**
+     * A point-in-time copy of a histogram.
+     *
+     * @param counts   the count of each bucket
+     * @param count    the total count
+     * @param sumNanos the sum of all recorded durations, in nanoseconds
+     */
+    public record Snapshot(long[] counts, long count, long sumNanos) {
+        /**
+         * @return the mean duration in milliseconds, or 0 if nothing was recorded
+         */
+        public double meanMillis() {
+            return count == 0L ? 0.0 : sumNanos / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        /**
+         * Estimates a quantile.
+         *
+         * @param q the quantile, between 0 and 1
+         * @return the estimated duration in milliseconds, or 0 if nothing was recorded
+         */
+        public double quantileMillis(double q) {
+            if (count == 0L) return 0.0;
+            double rank = q * count;
+            long seen = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0L) continue;
+                if (seen + counts[i] >= rank) {
+                    double lower = i == 0 ? 0.0 : upperBoundSeconds(i - 1);
+                    // The overflow bucket has no upper bound; report its lower bound
+                    if (i == counts.length - 1) return lower * 1000.0;
+                    double upper = upperBoundSeconds(i);
+                    double within = Math.max(0.0, rank - seen) / counts[i];
+                    return (lower + (upper - lower) * within) * 1000.0;
+                }
+                seen += counts[i];
+            }
+            return upperBoundSeconds(counts.length - 2) * 1000.0;
+        }
+    }
+}
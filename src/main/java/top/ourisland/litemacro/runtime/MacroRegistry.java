@@ -0,0 +1,161 @@
+package top.ourisland.litemacro.runtime;
+
+import com.velocitypowered.api.command.CommandSource;
+import com.velocitypowered.api.proxy.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of in-flight macro runs keyed by invoker UUID and macro name. Enforces each macro's
+ * {@link ConcurrencyPolicy}, and lets runs be listed and cancelled (for example when a player disconnects).
+ */
+public class MacroRegistry {
+
+    /**
+     * Owner UUID used for runs started by the console or other non-player sources.
+     */
+    public static final UUID CONSOLE = new UUID(0L, 0L);
+
+    private final Map<UUID, List<MacroRun>> runs = new ConcurrentHashMap<>();
+
+    /**
+     * Starts tracking a new run for the given source, applying the macro's concurrency policy against the source's
+     * runs of the same macro.
+     *
+     * @param source the invoking command source
+     * @param macro  primary name of the macro
+     * @param policy the macro's concurrency policy
+     * @return the new run, or null if the policy rejects it
+     */
+    public MacroRun begin(CommandSource source, String macro, ConcurrencyPolicy policy) {
+        UUID owner = source instanceof Player p ? p.getUniqueId() : CONSOLE;
+        String name = source instanceof Player p ? p.getUsername() : "CONSOLE";
+        MacroRun run = new MacroRun(owner, name, macro);
+        List<MacroRun> replaced = new ArrayList<>(0);
+        boolean[] rejected = new boolean[1];
+        runs.compute(owner, (k, existing) -> {
+            List<MacroRun> list = existing == null ? new ArrayList<>(2) : existing;
+            synchronized (list) {
+                if (policy != ConcurrencyPolicy.ALLOW) {
+                    for (MacroRun r : list) {
+                        if (r.macro().equals(macro)) replaced.add(r);
+                    }
+                    if (policy == ConcurrencyPolicy.REJECT && !replaced.isEmpty()) {
+                        rejected[0] = true;
+                        replaced.clear();
+                        return existing;
+                    }
+                    list.removeAll(replaced);
+                }
+                list.add(run);
+            }
+            return list;
+        });
+        if (rejected[0]) return null;
+        replaced.forEach(MacroRun::cancel);
+        return run;
+    }
+
+    /**
+     * Stops tracking a finished or cancelled run.
+     *
+     * @param run the run
+     */
+    public void end(MacroRun run) {
+        runs.computeIfPresent(run.owner(), (k, list) -> {
+            synchronized (list) {
+                list.remove(run);
+                return list.isEmpty() ? null : list;
+            }
+        });
+    }
+
+    /**
+     * Cancels every run of the given owner.
+     *
+     * @param owner the invoker UUID
+     * @return number of runs cancelled
+     */
+    public int cancelAll(UUID owner) {
+        List<MacroRun> list = runs.remove(owner);
+        if (list == null) return 0;
+        List<MacroRun> snapshot;
+        synchronized (list) {
+            snapshot = List.copyOf(list);
+        }
+        snapshot.forEach(MacroRun::cancel);
+        return snapshot.size();
+    }
+
+    /**
+     * Cancels runs whose invoker name matches, optionally restricted to one macro.
+     *
+     * @param ownerName invoker name (case-insensitive), or "*" for every invoker
+     * @param macro     macro name (case-insensitive), or null for every macro
+     * @return number of runs cancelled
+     */
+    public int cancel(String ownerName, String macro) {
+        int n = 0;
+        for (MacroRun r : snapshot()) {
+            if (!"*".equals(ownerName) && !r.ownerName().equalsIgnoreCase(ownerName)) continue;
+            if (macro != null && !r.macro().equals(macro.toLowerCase(Locale.ROOT))) continue;
+            r.cancel();
+            end(r);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * @return a copy of all in-flight runs
+     */
+    public List<MacroRun> snapshot() {
+        List<MacroRun> out = new ArrayList<>();
+        for (List<MacroRun> list : runs.values()) {
+            synchronized (list) {
+                out.addAll(list);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * How a macro behaves when the same invoker starts it again while a previous run is still in flight.
+     */
+    public enum ConcurrencyPolicy {
+        /**
+         * Runs overlap freely.
+         */
+        ALLOW,
+        /**
+         * The new invocation is refused.
+         */
+        REJECT,
+        /**
+         * The previous run is cancelled and the new one starts.
+         */
+        REPLACE;
+
+        /**
+         * Parses a policy name from configuration.
+         *
+         * @param s the policy name (case-insensitive); null or blank means {@link #ALLOW}
+         * @return the policy
+         * @throws IllegalArgumentException if the name is unknown
+         */
+        public static ConcurrencyPolicy parse(String s) throws IllegalArgumentException {
+            if (s == null || s.isBlank()) return ALLOW;
+            return switch (s.trim().toLowerCase(Locale.ROOT)) {
+                case "allow" -> ALLOW;
+                case "reject" -> REJECT;
+                case "replace", "cancel", "cancel-previous" -> REPLACE;
+                default -> throw new IllegalArgumentException("Unknown concurrency policy: " + s);
+            };
+        }
+    }
+}
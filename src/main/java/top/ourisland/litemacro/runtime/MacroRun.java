@@ -0,0 +1,104 @@
+package top.ourisland.litemacro.runtime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Handle for one in-flight macro invocation, tracked by the {@link MacroRegistry}. Every {@link MacroRunner} working
+ * for the invocation (the main sequence and any nested branches) attaches itself, so cancelling the run stops all of
+ * them and drops their pending delays.
+ */
+public class MacroRun {
+    private final UUID owner;
+    private final String ownerName;
+    private final String macro;
+    private final long startedAt;
+    private final List<MacroRunner> runners = new ArrayList<>(1);
+    private volatile boolean cancelled;
+
+    /**
+     * @param owner     UUID of the invoking player, or {@link MacroRegistry#CONSOLE} for non-player sources
+     * @param ownerName display name of the invoker
+     * @param macro     primary name of the macro being run
+     */
+    public MacroRun(UUID owner, String ownerName, String macro) {
+        this.owner = owner;
+        this.ownerName = ownerName;
+        this.macro = macro;
+        this.startedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * @return UUID of the invoker
+     */
+    public UUID owner() {
+        return owner;
+    }
+
+    /**
+     * @return display name of the invoker
+     */
+    public String ownerName() {
+        return ownerName;
+    }
+
+    /**
+     * @return primary name of the macro being run
+     */
+    public String macro() {
+        return macro;
+    }
+
+    /**
+     * @return wall-clock time the run started, in epoch milliseconds
+     */
+    public long startedAt() {
+        return startedAt;
+    }
+
+    /**
+     * @return true once the run has been cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Cancels the run: every attached runner stops before its next action and its pending delay is dropped.
+     */
+    public void cancel() {
+        List<MacroRunner> snapshot;
+        synchronized (runners) {
+            if (cancelled) return;
+            cancelled = true;
+            snapshot = List.copyOf(runners);
+        }
+        for (MacroRunner r : snapshot) r.cancel();
+    }
+
+    /**
+     * Registers a runner working for this run.
+     *
+     * @param runner the runner
+     * @return false if the run is already cancelled and the runner must not start
+     */
+    boolean attach(MacroRunner runner) {
+        synchronized (runners) {
+            if (cancelled) return false;
+            runners.add(runner);
+            return true;
+        }
+    }
+
+    /**
+     * Unregisters a finished runner.
+     *
+     * @param runner the runner
+     */
+    void detach(MacroRunner runner) {
+        synchronized (runners) {
+            runners.remove(runner);
+        }
+    }
+}
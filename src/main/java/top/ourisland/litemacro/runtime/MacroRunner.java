@@ -1,55 +1,158 @@
 package top.ourisland.litemacro.runtime;
 
 import top.ourisland.litemacro.actions.Action;
+import top.ourisland.litemacro.actions.DelayAction;
 
-import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 /**
- * Executes a list of actions sequentially, honoring per-action delays via Velocity's scheduler to avoid blocking the
- * main thread.
+ * Executes a list of actions sequentially, honoring per-action delays via the runtime's {@link DelayScheduler} to avoid
+ * blocking the main thread.
+ * <p>
+ * The runner is a small program-counter interpreter: actions that complete synchronously are executed in a tight loop,
+ * and the runner only yields when a delay is pending or an action returned a stage that has not completed yet. In the
+ * latter case the next action is chained onto the stage's completion instead of being guessed with a delay.
+ * Consecutive {@link DelayAction}s are merged into a single wake-up, and the same callbacks are reused for every
+ * wake-up, so stack depth and allocation stay bounded regardless of macro length.
+ * <p>
+ * Runners attach to the invocation's {@link MacroRun}; once the run is cancelled the runner stops before its next
+ * action and its pending delay is dropped.
+ * <p>
+ * The runner records each action's execution time and outcome, and the lag of each delayed wake-up, in the runtime's
+ * {@link Metrics}.
  */
 public class MacroRunner {
     private final InvocationContext ctx;
-    private final List<Action> actions;
+    private final Action[] actions;
+    private final Runnable resume = this::resume;
+    private final BiConsumer<Object, Throwable> awaited = (result, err) -> afterAwait(err != null);
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private final Metrics metrics;
+    private volatile DelayScheduler.Handle pendingDelay;
+    private int pc;
+
+    /**
+     * Start of the action currently awaited, in {@link System#nanoTime()} units.
+     */
+    private long actionStart;
+
+    /**
+     * Planned time of the pending wake-up, in {@link System#nanoTime()} units; 0 when no delay is pending.
+     */
+    private long wakeAt;
 
     public MacroRunner(InvocationContext ctx, List<Action> actions) {
         this.ctx = ctx;
-        this.actions = actions;
+        this.actions = actions.toArray(new Action[0]);
+        this.metrics = ctx.runtime().metrics();
     }
 
     /**
      * Starts executing the configured action sequence.
+     *
+     * @return a future completing once the last action (and any trailing delay) has finished, or once the run has
+     * been cancelled
      */
-    public void start() {
-        runStep(0);
+    public CompletableFuture<Void> start() {
+        if (ctx.run().attach(this)) {
+            resume();
+        } else {
+            completion.complete(null);
+        }
+        return completion;
     }
 
     /**
-     * Executes the action at the given index and schedules the next step, applying any delay requested by the current
-     * action.
-     *
-     * @param idx zero-based index of the action to run
+     * Stops the runner: drops its pending delay and completes it. An asynchronous action already in flight is not
+     * interrupted, but nothing runs after it.
      */
-    private void runStep(int idx) {
-        if (idx >= actions.size()) return;
-        Action a = actions.get(idx);
-        long delay = a.delayMillis();
-        Runnable step = () -> {
+    void cancel() {
+        DelayScheduler.Handle h = pendingDelay;
+        if (h != null) h.cancel();
+        finish();
+    }
+
+    /**
+     * Executes actions from the current program counter until the end of the sequence, until a delay is requested, or
+     * until an action is still running asynchronously. In the last two cases a continuation is registered and the loop
+     * returns.
+     */
+    private void resume() {
+        if (wakeAt != 0L) {
+            metrics.delayLag(System.nanoTime() - wakeAt);
+            wakeAt = 0L;
+        }
+        Action[] program = actions;
+        MacroRun run = ctx.run();
+        while (pc < program.length) {
+            if (run.isCancelled()) break;
+            Action a = program[pc++];
+            long start = System.nanoTime();
+            CompletionStage<?> stage;
+            boolean failed = false;
             try {
-                a.execute(ctx);
+                stage = a.execute(ctx);
             } catch (Throwable ignored) {
+                stage = Action.DONE;
+                failed = true;
+            }
+            if (stage != Action.DONE && stage != null) {
+                CompletableFuture<?> f = stage.toCompletableFuture();
+                if (!f.isDone()) {
+                    // Errors are reported by the action itself and do not stop the sequence
+                    actionStart = start;
+                    stage.whenComplete(awaited);
+                    return;
+                }
+                failed = f.isCompletedExceptionally();
             }
-            runStep(idx + 1);
-        };
-        if (delay > 0) {
-            ctx.server().getScheduler()
-                    .buildTask(ctx.plugin(), scheduled -> step.run())
-                    .delay(Duration.ofMillis(delay))
-                    .schedule();
+            metrics.action(a).executed(System.nanoTime() - start, failed);
+            if (scheduleDelay(a)) return;
+        }
+        finish();
+    }
 
-        } else {
-            step.run();
+    /**
+     * Detaches from the run and completes the runner. Idempotent.
+     */
+    private void finish() {
+        ctx.run().detach(this);
+        completion.complete(null);
+    }
+
+    /**
+     * Continues the sequence once the asynchronous action before the program counter has completed.
+     *
+     * @param failed whether the action's stage completed exceptionally
+     */
+    private void afterAwait(boolean failed) {
+        Action a = actions[pc - 1];
+        metrics.action(a).executed(System.nanoTime() - actionStart, failed);
+        if (scheduleDelay(a)) return;
+        resume();
+    }
+
+    /**
+     * Schedules a wake-up if the given action requests a delay. Delay actions directly following it are no-ops, so
+     * they are folded into the same wake-up.
+     *
+     * @param a the action that just completed
+     * @return true if a wake-up was scheduled and the caller must return
+     */
+    private boolean scheduleDelay(Action a) {
+        long delay = a.delayMillis();
+        if (delay <= 0) return false;
+        Action[] program = actions;
+        while (pc < program.length && program[pc] instanceof DelayAction next) {
+            delay += next.delayMillis();
+            pc++;
         }
+        wakeAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        pendingDelay = ctx.runtime().delays().schedule(delay, resume);
+        return true;
     }
-}
\ No newline at end of file
+}
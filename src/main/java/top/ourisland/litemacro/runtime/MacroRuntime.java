@@ -0,0 +1,113 @@
+package top.ourisland.litemacro.runtime;
+
+import top.ourisland.litemacro.config.model.SchedulerSpec;
+import com.velocitypowered.api.proxy.ProxyServer;
+import org.slf4j.Logger;
+
+/**
+ * Plugin-wide services shared by every macro invocation: the proxy, the owning plugin instance, the scheduler used for
+ * macro delays, the registry of in-flight runs, the dynamic placeholder resolvers, the metrics and the audit log. One
+ * instance is created at startup and handed to commands and invocation contexts.
+ */
+public class MacroRuntime {
+    private final ProxyServer server;
+    private final Object plugin;
+    private final Logger logger;
+    private final DelayScheduler delays;
+    private final ServerGroups groups;
+    private final MacroRegistry runs = new MacroRegistry();
+    private final PlaceholderResolvers resolvers = PlaceholderResolvers.withDefaults();
+    private final Metrics metrics = new Metrics();
+    private final AuditLog audit;
+
+    /**
+     * Creates the runtime and its delay scheduler according to the given settings.
+     *
+     * @param server    the proxy server
+     * @param plugin    the plugin instance
+     * @param logger    the plugin logger
+     * @param scheduler scheduler settings
+     */
+    public MacroRuntime(ProxyServer server, Object plugin, Logger logger, SchedulerSpec scheduler) {
+        this.server = server;
+        this.plugin = plugin;
+        this.logger = logger;
+        this.delays = scheduler.useVelocity()
+                ? new VelocityDelayScheduler(server, plugin)
+                : new TimingWheel(logger, scheduler.getTick(), scheduler.getSlots());
+        this.groups = new ServerGroups(server, delays, logger);
+        this.audit = new AuditLog(logger, metrics);
+    }
+
+    /**
+     * @return the proxy server
+     */
+    public ProxyServer server() {
+        return server;
+    }
+
+    /**
+     * @return the plugin instance
+     */
+    public Object plugin() {
+        return plugin;
+    }
+
+    /**
+     * @return the plugin logger
+     */
+    public Logger logger() {
+        return logger;
+    }
+
+    /**
+     * @return the scheduler used for macro delays
+     */
+    public DelayScheduler delays() {
+        return delays;
+    }
+
+    /**
+     * @return the registry of in-flight macro runs
+     */
+    public MacroRegistry runs() {
+        return runs;
+    }
+
+    /**
+     * @return the dynamic placeholder resolvers; register additional ones before macros are compiled
+     */
+    public PlaceholderResolvers resolvers() {
+        return resolvers;
+    }
+
+    /**
+     * @return the server groups transfer targets may refer to
+     */
+    public ServerGroups groups() {
+        return groups;
+    }
+
+    /**
+     * @return the counters and latency histograms of macros, actions and delays
+     */
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the audit log of macro invocations and issued commands; disabled until configured
+     */
+    public AuditLog audit() {
+        return audit;
+    }
+
+    /**
+     * Stops background threads owned by the runtime, writing any buffered audit records first.
+     */
+    public void shutdown() {
+        groups.shutdown();
+        audit.shutdown();
+        delays.shutdown();
+    }
+}
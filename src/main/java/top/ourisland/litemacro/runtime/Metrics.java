@@ -0,0 +1,328 @@
+package top.ourisland.litemacro.runtime;
+
+import top.ourisland.litemacro.actions.Action;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the plugin: per macro (invocations, denials, end-to-end duration), per action
+ * type (executions, failures, execution time until the action's stage completes) and for the delay scheduler (how late
+ * a delayed continuation ran compared to its planned wake-up), plus the throughput of the {@link AuditLog}.
+ * <p>
+ * Everything is recorded with {@link LongAdder}s, so recording never blocks and costs a few nanoseconds even when many
+ * macros run at once. Statistics live as long as the runtime; they survive reloads and are not reset.
+ */
+public final class Metrics {
+    /**
+     * Action type names derived from the action classes, e.g. {@code TransferAllAction} becomes "transfer_all".
+     */
+    private static final ClassValue<String> ACTION_TYPES = new ClassValue<>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            String name = type.getSimpleName();
+            if (name.endsWith("Action") && name.length() > 6) name = name.substring(0, name.length() - 6);
+            StringBuilder sb = new StringBuilder(name.length() + 4);
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if (Character.isUpperCase(c) && i > 0) sb.append('_');
+                sb.append(Character.toLowerCase(c));
+            }
+            return sb.toString();
+        }
+    };
+
+    private final Map<String, MacroStats> macros = new ConcurrentHashMap<>();
+    private final Map<String, ActionStats> actions = new ConcurrentHashMap<>();
+    private final LatencyHistogram delayLag = new LatencyHistogram();
+    private final LongAdder auditWritten = new LongAdder();
+    private final LongAdder auditDropped = new LongAdder();
+
+    /**
+     * @param macro primary macro name
+     * @return the statistics of the macro, created on first use
+     */
+    public MacroStats macro(String macro) {
+        MacroStats s = macros.get(macro);
+        return s != null ? s : macros.computeIfAbsent(macro, MacroStats::new);
+    }
+
+    /**
+     * @param action an action
+     * @return the statistics of the action's type, created on first use
+     */
+    public ActionStats action(Action action) {
+        String type = ACTION_TYPES.get(action.getClass());
+        ActionStats s = actions.get(type);
+        return s != null ? s : actions.computeIfAbsent(type, ActionStats::new);
+    }
+
+    /**
+     * Records how late a delayed continuation ran.
+     *
+     * @param nanos time between the planned and the actual wake-up, in nanoseconds
+     */
+    public void delayLag(long nanos) {
+        delayLag.record(nanos);
+    }
+
+    /**
+     * @return the delay lag histogram
+     */
+    public LatencyHistogram delayLag() {
+        return delayLag;
+    }
+
+    /**
+     * Counts audit records written to the audit file.
+     *
+     * @param records number of records
+     */
+    public void auditWritten(long records) {
+        auditWritten.add(records);
+    }
+
+    /**
+     * Counts audit records dropped because the audit buffer was full or the audit file could not be written.
+     *
+     * @param records number of records
+     */
+    public void auditDropped(long records) {
+        auditDropped.add(records);
+    }
+
+    /**
+     * @return number of audit records dropped so far
+     */
+    public long auditDroppedCount() {
+        return auditDropped.sum();
+    }
+
+    /**
+     * @return the statistics of every macro that has been invoked, most invoked first
+     */
+    public List<MacroStats> macros() {
+        List<MacroStats> out = new ArrayList<>(macros.values());
+        out.sort(Comparator.comparingLong((MacroStats s) -> s.invocations.sum()).reversed());
+        return out;
+    }
+
+    /**
+     * @return the statistics of every action type that has been executed, by name
+     */
+    public List<ActionStats> actions() {
+        List<ActionStats> out = new ArrayList<>(actions.values());
+        out.sort(Comparator.comparing(ActionStats::type));
+        return out;
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format.
+     *
+     * @param out the output buffer
+     */
+    public void writePrometheus(StringBuilder out) {
+        List<MacroStats> ms = macros();
+        List<ActionStats> as = actions();
+
+        header(out, "litemacro_macro_invocations_total", "counter", "Macro invocations, including denied ones.");
+        for (MacroStats s : ms) sample(out, "litemacro_macro_invocations_total", "macro", s.name, s.invocations.sum());
+        header(out, "litemacro_macro_denials_total", "counter", "Invocations denied by a cooldown, rate limit or "
+                + "concurrency policy.");
+        for (MacroStats s : ms) sample(out, "litemacro_macro_denials_total", "macro", s.name, s.denials.sum());
+        header(out, "litemacro_macro_duration_seconds", "histogram", "Time from start to end of a macro run.");
+        for (MacroStats s : ms) histogram(out, "litemacro_macro_duration_seconds", "macro", s.name, s.duration);
+
+        header(out, "litemacro_action_executions_total", "counter", "Action executions.");
+        for (ActionStats s : as) sample(out, "litemacro_action_executions_total", "type", s.type, s.executions.sum());
+        header(out, "litemacro_action_failures_total", "counter", "Action executions that threw or completed "
+                + "exceptionally.");
+        for (ActionStats s : as) sample(out, "litemacro_action_failures_total", "type", s.type, s.failures.sum());
+        header(out, "litemacro_action_duration_seconds", "histogram", "Time from the start of an action until it "
+                + "completes.");
+        for (ActionStats s : as) histogram(out, "litemacro_action_duration_seconds", "type", s.type, s.duration);
+
+        header(out, "litemacro_delay_lag_seconds", "histogram", "Time between the planned and the actual wake-up "
+                + "of a delayed macro.");
+        histogram(out, "litemacro_delay_lag_seconds", null, null, delayLag);
+
+        header(out, "litemacro_audit_records_total", "counter", "Audit records written.");
+        sample(out, "litemacro_audit_records_total", null, null, auditWritten.sum());
+        header(out, "litemacro_audit_dropped_total", "counter",
+                "Audit records dropped because the buffer was full or the file could not be written.");
+        sample(out, "litemacro_audit_dropped_total", null, null, auditDropped.sum());
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String label, String value, long v) {
+        out.append(name);
+        labels(out, label, value, null);
+        out.append(' ').append(v).append('\n');
+    }
+
+    private static void histogram(StringBuilder out, String name, String label, String value, LatencyHistogram h) {
+        LatencyHistogram.Snapshot s = h.snapshot();
+        long cumulative = 0L;
+        for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+            cumulative += s.counts()[i];
+            out.append(name).append("_bucket");
+            String le = i == LatencyHistogram.BUCKETS - 1
+                    ? "+Inf"
+                    : String.format(Locale.ROOT, "%.6f", LatencyHistogram.upperBoundSeconds(i));
+            labels(out, label, value, le);
+            out.append(' ').append(cumulative).append('\n');
+        }
+        out.append(name).append("_sum");
+        labels(out, label, value, null);
+        out.append(' ').append(String.format(Locale.ROOT, "%.9f", s.sumNanos() / 1e9)).append('\n');
+        out.append(name).append("_count");
+        labels(out, label, value, null);
+        out.append(' ').append(s.count()).append('\n');
+    }
+
+    private static void labels(StringBuilder out, String label, String value, String le) {
+        if (label == null && le == null) return;
+        out.append('{');
+        if (label != null) {
+            out.append(label).append("=\"");
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '\\' || c == '"') out.append('\\').append(c);
+                else if (c == '\n') out.append("\\n");
+                else out.append(c);
+            }
+            out.append('"');
+            if (le != null) out.append(',');
+        }
+        if (le != null) out.append("le=\"").append(le).append('"');
+        out.append('}');
+    }
+
+    /**
+     * Statistics of one macro.
+     */
+    public static final class MacroStats {
+        private final String name;
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder denials = new LongAdder();
+        private final LatencyHistogram duration = new LatencyHistogram();
+
+        private MacroStats(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Counts an invocation, before any limit is checked.
+         */
+        public void invoked() {
+            invocations.increment();
+        }
+
+        /**
+         * Counts an invocation denied by a cooldown, rate limit or concurrency policy.
+         */
+        public void denied() {
+            denials.increment();
+        }
+
+        /**
+         * Records the duration of a finished run.
+         *
+         * @param nanos the run's duration in nanoseconds
+         */
+        public void finished(long nanos) {
+            duration.record(nanos);
+        }
+
+        /**
+         * @return primary macro name
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * @return number of invocations
+         */
+        public long invocations() {
+            return invocations.sum();
+        }
+
+        /**
+         * @return number of denied invocations
+         */
+        public long denials() {
+            return denials.sum();
+        }
+
+        /**
+         * @return the run duration histogram
+         */
+        public LatencyHistogram duration() {
+            return duration;
+        }
+    }
+
+    /**
+     * Statistics of one action type.
+     */
+    public static final class ActionStats {
+        private final String type;
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LatencyHistogram duration = new LatencyHistogram();
+
+        private ActionStats(String type) {
+            this.type = type;
+        }
+
+        /**
+         * Records one execution.
+         *
+         * @param nanos  time from the start of the action until its stage completed, in nanoseconds
+         * @param failed whether the action threw or its stage completed exceptionally
+         */
+        public void executed(long nanos, boolean failed) {
+            executions.increment();
+            if (failed) failures.increment();
+            duration.record(nanos);
+        }
+
+        /**
+         * @return action type name, e.g. "transfer"
+         */
+        public String type() {
+            return type;
+        }
+
+        /**
+         * @return number of executions
+         */
+        public long executions() {
+            return executions.sum();
+        }
+
+        /**
+         * @return number of failed executions
+         */
+        public long failures() {
+            return failures.sum();
+        }
+
+        /**
+         * @return the execution time histogram
+         */
+        public LatencyHistogram duration() {
+            return duration;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package top.ourisland.litemacro.runtime;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes the {@link Metrics} to a file in the Prometheus text exposition format, for the textfile
+ * collector of a local node exporter. The file is written next to its final location and then moved into place, so a
+ * scrape never sees a half-written file. Writing runs on Velocity's asynchronous scheduler, never on the delay
+ * scheduler's thread.
+ */
+public class MetricsExporter {
+    private final ProxyServer server;
+    private final Object plugin;
+    private final Logger logger;
+    private final Metrics metrics;
+    private ScheduledTask task;
+    private Path file;
+    private long intervalMillis;
+    private boolean failing;
+
+    /**
+     * @param server  the proxy server whose scheduler runs the writes
+     * @param plugin  the plugin instance owning the task
+     * @param logger  the logger
+     * @param metrics the metrics to write
+     */
+    public MetricsExporter(ProxyServer server, Object plugin, Logger logger, Metrics metrics) {
+        this.server = server;
+        this.plugin = plugin;
+        this.logger = logger;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts, restarts or stops the export according to the settings. Safe to call after every reload; the task is
+     * only restarted when the file or interval changed.
+     *
+     * @param enabled        whether to write the file
+     * @param file           the file to write
+     * @param intervalMillis time between two writes, at least one second
+     */
+    public synchronized void configure(boolean enabled, Path file, long intervalMillis) {
+        long interval = Math.max(1000L, intervalMillis);
+        if (enabled && task != null && Objects.equals(file, this.file) && interval == this.intervalMillis) return;
+        stop();
+        if (!enabled) return;
+        this.file = file;
+        this.intervalMillis = interval;
+        this.failing = false;
+        this.task = server.getScheduler()
+                .buildTask(plugin, this::write)
+                .repeat(interval, TimeUnit.MILLISECONDS)
+                .schedule();
+    }
+
+    /**
+     * Stops writing. The last written file is left in place.
+     */
+    public synchronized void stop() {
+        if (task != null) task.cancel();
+        task = null;
+    }
+
+    private void write() {
+        Path target;
+        synchronized (this) {
+            target = file;
+        }
+        StringBuilder sb = new StringBuilder(8192);
+        metrics.writePrometheus(sb);
+        try {
+            Path dir = target.toAbsolutePath().getParent();
+            if (dir != null) Files.createDirectories(dir);
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            Files.writeString(tmp, sb, StandardCharsets.UTF_8);
+            try {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            failing = false;
+        } catch (IOException e) {
+            // Report the first failure only, not one per interval
+            if (!failing) logger.warn("Failed to write metrics to {}: {}", target, e.getMessage());
+            failing = true;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package top.ourisland.litemacro.runtime;
+
+/**
+ * Computes the value of a dynamic placeholder such as {@code {server}} or {@code {online:lobby}}. Resolvers are only
+ * called when a rendered template actually contains their placeholder, and at most once per invocation and argument.
+ */
+@FunctionalInterface
+public interface PlaceholderResolver {
+    /**
+     * Resolves the placeholder.
+     *
+     * @param ctx      the invocation being rendered
+     * @param argument the text after the colon in {@code {name:argument}}, or an empty string
+     * @return the value, or null if it is unavailable (the placeholder is then left untouched)
+     */
+    String resolve(InvocationContext ctx, String argument);
+}
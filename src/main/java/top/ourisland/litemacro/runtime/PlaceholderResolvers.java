@@ -0,0 +1,169 @@
+package top.ourisland.litemacro.runtime;
+
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of dynamic placeholders.
+ * <p>
+ * Templates bind to a resolver when they are compiled: every distinct {@code {name:argument}} pair is given a slot
+ * number, and each invocation memoizes resolved values in an array indexed by slot (see
+ * {@link InvocationContext#resolve(Slot)}), so a value is computed at most once per invocation no matter how many
+ * actions use it. Resolvers registered with a time-to-live additionally share their values across invocations for that
+ * long; such resolvers must not depend on who invoked the macro.
+ */
+public final class PlaceholderResolvers {
+    /**
+     * Marks a memoized null value.
+     */
+    static final Object UNAVAILABLE = new Object();
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+    private int slotCount;
+
+    /**
+     * Creates a registry with the built-in resolvers: {@code {server}}, {@code {ping}}, {@code {locale}} and
+     * {@code {online}} / {@code {online:<server>}}.
+     *
+     * @return the registry
+     */
+    public static PlaceholderResolvers withDefaults() {
+        PlaceholderResolvers r = new PlaceholderResolvers();
+        r.register("server", (ctx, arg) -> ctx.player()
+                .flatMap(Player::getCurrentServer)
+                .map(c -> c.getServerInfo().getName())
+                .orElse("-"));
+        r.register("ping", (ctx, arg) -> ctx.player().map(p -> String.valueOf(p.getPing())).orElse("-"));
+        r.register("locale", (ctx, arg) -> ctx.player()
+                .map(Player::getEffectiveLocale)
+                .map(Locale::toString)
+                .orElse("-"));
+        r.register("online", 1000L, (ctx, arg) -> arg.isEmpty()
+                ? String.valueOf(ctx.server().getPlayerCount())
+                : ctx.server().getServer(arg)
+                .map(RegisteredServer::getPlayersConnected)
+                .map(players -> String.valueOf(players.size()))
+                .orElse(null));
+        return r;
+    }
+
+    /**
+     * Registers a resolver whose value is memoized per invocation. Replaces an existing resolver of the same name for
+     * templates compiled afterwards.
+     *
+     * @param name     placeholder name (the part before the colon)
+     * @param resolver the resolver
+     */
+    public void register(String name, PlaceholderResolver resolver) {
+        register(name, 0L, resolver);
+    }
+
+    /**
+     * Registers a resolver whose values are also shared across invocations for the given time. The value must not
+     * depend on the invoker.
+     *
+     * @param name      placeholder name (the part before the colon)
+     * @param ttlMillis how long a value is shared, in milliseconds; 0 to memoize per invocation only
+     * @param resolver  the resolver
+     */
+    public void register(String name, long ttlMillis, PlaceholderResolver resolver) {
+        entries.put(name, new Entry(resolver, TimeUnit.MILLISECONDS.toNanos(Math.max(0L, ttlMillis))));
+    }
+
+    /**
+     * Binds a placeholder key to its resolver.
+     *
+     * @param key the placeholder text between the braces, e.g. "online:lobby"
+     * @return the bound slot, or null if no resolver handles the key
+     */
+    Slot bind(String key) {
+        int colon = key.indexOf(':');
+        String name = colon < 0 ? key : key.substring(0, colon);
+        Entry entry = entries.get(name);
+        if (entry == null) return null;
+        Slot slot = slots.get(key);
+        if (slot != null && slot.entry == entry) return slot;
+        synchronized (this) {
+            slot = slots.get(key);
+            if (slot != null && slot.entry == entry) return slot;
+            slot = new Slot(slotCount++, entry, colon < 0 ? "" : key.substring(colon + 1));
+            slots.put(key, slot);
+            return slot;
+        }
+    }
+
+    /**
+     * @return a fresh memo array large enough for every slot bound so far
+     */
+    Object[] newMemo() {
+        int n;
+        synchronized (this) {
+            n = slotCount;
+        }
+        return new Object[n];
+    }
+
+    /**
+     * A resolver with its sharing policy.
+     */
+    private static final class Entry {
+        private final PlaceholderResolver resolver;
+        private final long ttlNanos;
+        private final Map<String, Shared> shared;
+
+        Entry(PlaceholderResolver resolver, long ttlNanos) {
+            this.resolver = resolver;
+            this.ttlNanos = ttlNanos;
+            this.shared = ttlNanos > 0 ? new ConcurrentHashMap<>() : null;
+        }
+
+        String resolve(InvocationContext ctx, String argument) {
+            if (shared == null) return resolver.resolve(ctx, argument);
+            long now = System.nanoTime();
+            Shared s = shared.get(argument);
+            if (s != null && now - s.resolvedAt < ttlNanos) return s.value;
+            String value = resolver.resolve(ctx, argument);
+            shared.put(argument, new Shared(value, now));
+            return value;
+        }
+    }
+
+    private record Shared(String value, long resolvedAt) {
+    }
+
+    /**
+     * A placeholder key bound to a resolver and a memo slot.
+     */
+    static final class Slot {
+        final int index;
+        private final Entry entry;
+        private final String argument;
+
+        private Slot(int index, Entry entry, String argument) {
+            this.index = index;
+            this.entry = entry;
+            this.argument = argument;
+        }
+
+        /**
+         * @return true if the value may depend on the invoker, i.e. the resolver does not share its values across
+         * invocations
+         */
+        boolean isPersonal() {
+            return entry.shared == null;
+        }
+
+        /**
+         * Computes the value without memoization.
+         */
+        String resolve(InvocationContext ctx) {
+            return entry.resolve(ctx, argument);
+        }
+    }
+}
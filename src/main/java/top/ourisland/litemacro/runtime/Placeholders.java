@@ -0,0 +1,143 @@
+package top.ourisland.litemacro.runtime;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * The global placeholders defined in the {@code placeholders} section of the configuration, compiled once per load.
+ * <p>
+ * A placeholder's value is itself a template and may reference other global placeholders, built-in placeholders and
+ * invocation variables. References to other globals are resolved while compiling, so every global ends up as a flat
+ * template and {@link Template#compile(String, Placeholders)} can splice it into macro templates without any lookup at
+ * invocation time. Cycles are reported as errors. The scope also carries the dynamic placeholder resolvers that
+ * templates compiled in it bind to; global placeholders take precedence over resolvers of the same name.
+ */
+public final class Placeholders {
+    /**
+     * A scope without any global placeholders.
+     */
+    public static final Placeholders NONE = new Placeholders(Map.of(), Map.of(), new PlaceholderResolvers());
+
+    private final Map<String, String> definitions;
+    private final Map<String, Template> compiled;
+    private final PlaceholderResolvers resolvers;
+
+    private Placeholders(Map<String, String> definitions, Map<String, Template> compiled,
+                         PlaceholderResolvers resolvers) {
+        this.definitions = definitions;
+        this.compiled = compiled;
+        this.resolvers = resolvers;
+    }
+
+    /**
+     * Compiles the global placeholder definitions. Placeholders that cannot be compiled are reported and left
+     * undefined; the others are still usable.
+     *
+     * @param definitions placeholder values keyed by name (may be null)
+     * @param resolvers   the dynamic placeholders templates may use
+     * @param problems    receives the name and a description of each placeholder that could not be compiled
+     * @return the compiled placeholders
+     */
+    public static Placeholders compile(Map<String, String> definitions, PlaceholderResolvers resolvers,
+                                       BiConsumer<String, String> problems) {
+        if (definitions == null || definitions.isEmpty()) return new Placeholders(Map.of(), Map.of(), resolvers);
+        Map<String, String> defs = new LinkedHashMap<>();
+        for (Map.Entry<String, String> e : definitions.entrySet()) {
+            String name = e.getKey();
+            if (Template.isBuiltin(name)) {
+                problems.accept(name, "'{" + name + "}' is built in and cannot be redefined");
+            } else {
+                defs.put(name, e.getValue() == null ? "" : e.getValue());
+            }
+        }
+        Compiler c = new Compiler(defs, resolvers, problems);
+        for (String name : defs.keySet()) c.resolve(name);
+        return new Placeholders(Map.copyOf(defs), Map.copyOf(c.done), resolvers);
+    }
+
+    /**
+     * @param name a placeholder name
+     * @return the compiled placeholder, or null if it is not defined
+     */
+    Template get(String name) {
+        return compiled.get(name);
+    }
+
+    /**
+     * @return the dynamic placeholder resolvers of this scope
+     */
+    PlaceholderResolvers resolvers() {
+        return resolvers;
+    }
+
+    /**
+     * @return the number of usable placeholders
+     */
+    public int size() {
+        return compiled.size();
+    }
+
+    /**
+     * Two scopes are equal when they were compiled from the same definitions against the same resolvers, so unchanged
+     * macros only need to be recompiled when this changes.
+     */
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof Placeholders that
+                && definitions.equals(that.definitions)
+                && resolvers == that.resolvers;
+    }
+
+    @Override
+    public int hashCode() {
+        return definitions.hashCode();
+    }
+
+    /**
+     * Depth-first resolution of placeholder references with cycle detection.
+     */
+    private static final class Compiler {
+        private final Map<String, String> defs;
+        private final PlaceholderResolvers resolvers;
+        private final BiConsumer<String, String> problems;
+        private final Map<String, Template> done = new HashMap<>();
+        private final List<String> path = new ArrayList<>();
+        private final List<String> failed = new ArrayList<>();
+
+        Compiler(Map<String, String> defs, PlaceholderResolvers resolvers, BiConsumer<String, String> problems) {
+            this.defs = defs;
+            this.resolvers = resolvers;
+            this.problems = problems;
+        }
+
+        /**
+         * @return the compiled placeholder, or null if the name is not a (valid) global placeholder
+         */
+        Template resolve(String name) {
+            Template t = done.get(name);
+            if (t != null || !defs.containsKey(name) || failed.contains(name)) return t;
+            int at = path.indexOf(name);
+            if (at >= 0) {
+                List<String> cycle = new ArrayList<>(path.subList(at, path.size()));
+                cycle.add(name);
+                for (String n : cycle) {
+                    if (!failed.contains(n)) {
+                        failed.add(n);
+                        problems.accept(n, "cycle " + String.join(" -> ", cycle));
+                    }
+                }
+                return null;
+            }
+            path.add(name);
+            t = Template.compile(defs.get(name), this::resolve, resolvers);
+            path.remove(path.size() - 1);
+            if (failed.contains(name)) return null;
+            done.put(name, t);
+            return t;
+        }
+    }
+}
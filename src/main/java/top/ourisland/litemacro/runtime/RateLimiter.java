@@ -0,0 +1,200 @@
+package top.ourisland.litemacro.runtime;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free, memory-bounded per-UUID rate limiter.
+ * <p>
+ * Each key is a token bucket stored as a single "theoretical arrival time" (the generic cell rate algorithm): a
+ * request is admitted when that time is no further in the future than the burst tolerance, and admitting it pushes the
+ * time forward by one emission interval. A plain cooldown is the special case of a one-token bucket.
+ * <p>
+ * State lives in a fixed-size open-addressing table of primitive longs (key fingerprint, arrival time), so memory does
+ * not grow with the number of players ever seen. The table has about four slots per expected key, see
+ * {@link #slotsFor(int)}. Entries whose arrival time has passed carry no information and are reused lazily; if every
+ * slot in a key's probe window is still live, the one closest to expiry is evicted, but only if it would admit a
+ * request itself. An entry that is still limiting is never evicted: the new key is denied instead, so a crowded table
+ * fails closed rather than resetting someone's cooldown. Updates use CAS only, so under contention the limiter may
+ * occasionally admit one request too many, but it never blocks; a thread only spins for the two writes another thread
+ * needs to take over a slot.
+ */
+public final class RateLimiter {
+    private static final int MIN_SLOTS = 256;
+    private static final int MAX_SLOTS = 1 << 22;
+    private static final int PROBES = 8;
+
+    /**
+     * Key of a slot that is being taken over.
+     */
+    private static final long BUSY = Long.MIN_VALUE;
+
+    private final long interval;
+    private final long tolerance;
+    private final long epoch = System.nanoTime();
+    private final int mask;
+    private final AtomicLongArray table;
+
+    private RateLimiter(long intervalNanos, int burst, int expectedKeys) {
+        this.interval = Math.max(1L, intervalNanos);
+        this.tolerance = this.interval * (Math.max(1, burst) - 1L);
+        int slots = slotsFor(expectedKeys);
+        this.mask = slots - 1;
+        this.table = new AtomicLongArray(slots * 2);
+    }
+
+    /**
+     * Creates a limiter that admits one request per cooldown period.
+     *
+     * @param cooldownMillis the cooldown in milliseconds
+     * @param expectedKeys   how many keys the limiter is sized for, usually the number of players
+     * @return the limiter
+     */
+    public static RateLimiter cooldown(long cooldownMillis, int expectedKeys) {
+        return new RateLimiter(TimeUnit.MILLISECONDS.toNanos(cooldownMillis), 1, expectedKeys);
+    }
+
+    /**
+     * Creates a token bucket that holds up to {@code limit} tokens and refills {@code limit} tokens per period.
+     *
+     * @param limit        bucket capacity (burst size)
+     * @param periodMillis time to refill the full bucket, in milliseconds
+     * @param expectedKeys how many keys the limiter is sized for, usually the number of players
+     * @return the limiter
+     */
+    public static RateLimiter tokenBucket(int limit, long periodMillis, int expectedKeys) {
+        int burst = Math.max(1, limit);
+        return new RateLimiter(TimeUnit.MILLISECONDS.toNanos(periodMillis) / burst, burst, expectedKeys);
+    }
+
+    /**
+     * Returns the table size for a number of keys: the power of two of at least four slots per key, which keeps the
+     * table at most a quarter full and the probe windows short.
+     *
+     * @param expectedKeys the number of keys
+     * @return the number of slots
+     */
+    public static int slotsFor(int expectedKeys) {
+        long wanted = Math.max(MIN_SLOTS, 4L * Math.max(0, expectedKeys));
+        return (int) Math.min(MAX_SLOTS, Long.highestOneBit(wanted - 1) << 1);
+    }
+
+    /**
+     * @param expectedKeys the number of keys
+     * @return true if this limiter's table is at least as large as one sized for {@code expectedKeys}
+     */
+    public boolean fits(int expectedKeys) {
+        return mask + 1 >= slotsFor(expectedKeys);
+    }
+
+    /**
+     * Tries to take one token for the given key.
+     * <p>
+     * The whole probe window is searched for the key before any slot is taken over, so a key living further into the
+     * window is never shadowed by a free or expired slot in front of it. A new key whose window is full of entries that
+     * are still limiting is denied until the first of them expires.
+     *
+     * @param id the key, usually a player UUID
+     * @return 0 if the request is admitted, otherwise the number of nanoseconds until it would be
+     */
+    public long tryAcquire(UUID id) {
+        long now = System.nanoTime() - epoch;
+        long key = fingerprint(id);
+        int start = (int) (key ^ (key >>> 32)) & mask;
+
+        scan:
+        for (; ; ) {
+            int free = -1, victim = -1;
+            long freeKey = 0L, freeTat = 0L, victimKey = 0L, victimTat = Long.MAX_VALUE;
+            for (int p = 0; p < PROBES; p++) {
+                int i = ((start + p) & mask) << 1;
+                long k = table.get(i);
+                long tat = table.get(i + 1);
+                if (k == BUSY || table.get(i) != k) {
+                    // Another thread is writing this slot, possibly for the same key
+                    Thread.onSpinWait();
+                    continue scan;
+                }
+                if (k == key) {
+                    long base = Math.max(tat, now);
+                    if (base - now > tolerance) return base - now - tolerance;
+                    if (table.compareAndSet(i + 1, tat, base + interval)) return 0L;
+                    continue scan;
+                }
+                if (k == 0L || tat <= now) {
+                    if (free < 0) {
+                        free = i;
+                        freeKey = k;
+                        freeTat = tat;
+                    }
+                } else if (tat < victimTat) {
+                    victim = i;
+                    victimKey = k;
+                    victimTat = tat;
+                }
+            }
+            if (free < 0 && victimTat - now > tolerance) {
+                // Evicting a limiting entry would reset someone else's cooldown
+                return victimTat - now - tolerance;
+            }
+            if (free >= 0 ? claim(free, freeKey, freeTat, key, now) : claim(victim, victimKey, victimTat, key, now)) {
+                return 0L;
+            }
+        }
+    }
+
+    /**
+     * Gives back a token taken by {@link #tryAcquire(UUID)}, for a request that was admitted by this limiter but
+     * refused for another reason. Does nothing if the key's entry has been evicted in the meantime.
+     *
+     * @param id the key, usually a player UUID
+     */
+    public void refund(UUID id) {
+        long key = fingerprint(id);
+        int start = (int) (key ^ (key >>> 32)) & mask;
+        for (int p = 0; p < PROBES; p++) {
+            int i = ((start + p) & mask) << 1;
+            if (table.get(i) != key) continue;
+            for (; ; ) {
+                long tat = table.get(i + 1);
+                if (table.get(i) != key) return;
+                if (table.compareAndSet(i + 1, tat, tat - interval)) return;
+            }
+        }
+    }
+
+    /**
+     * Takes over a slot for a new key, starting it with one token consumed. The slot is marked {@link #BUSY} while its
+     * arrival time is written, so that no reader sees the new key with the previous key's arrival time.
+     *
+     * @param i           the slot
+     * @param expectedKey the key the slot held when it was chosen
+     * @param expectedTat the arrival time the slot held when it was chosen
+     * @param key         the new key
+     * @param now         the current time
+     * @return false if another thread changed the slot first
+     */
+    private boolean claim(int i, long expectedKey, long expectedTat, long key, long now) {
+        if (!table.compareAndSet(i, expectedKey, BUSY)) return false;
+        if (table.get(i + 1) != expectedTat) {
+            // The previous key was admitted again after the slot was chosen; leave it alone
+            table.set(i, expectedKey);
+            return false;
+        }
+        table.set(i + 1, now + interval);
+        table.set(i, key);
+        return true;
+    }
+
+    /**
+     * Mixes a UUID into a 64-bit fingerprint that is neither zero (an empty slot) nor {@link #BUSY}.
+     */
+    private static long fingerprint(UUID id) {
+        long h = id.getMostSignificantBits() * 0x9E3779B97F4A7C15L ^ id.getLeastSignificantBits();
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h == 0L || h == BUSY ? 1L : h;
+    }
+}
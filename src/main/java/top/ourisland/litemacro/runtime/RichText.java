@@ -0,0 +1,572 @@
+package top.ourisland.litemacro.runtime;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.event.ClickEvent;
+import net.kyori.adventure.text.event.HoverEvent;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.format.Style;
+import net.kyori.adventure.text.format.TextColor;
+import net.kyori.adventure.text.format.TextDecoration;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * A formatted message template, parsed once into styled spans of {@link Template} text.
+ * <p>
+ * Formatting is written with legacy codes ({@code &c}, {@code §l}, {@code &#ff8800}, {@code &x&f&f&8&8&0&0}) or with
+ * MiniMessage-style tags: colors ({@code <red>}, {@code <#ff8800>}, {@code <color:gold>}), decorations
+ * ({@code <bold>}, {@code <b>}, {@code <!italic>}, ...), {@code <reset>}, {@code <newline>} / {@code <br>},
+ * {@code <click:run_command:/spawn>} (also {@code suggest_command}, {@code open_url} and {@code copy_to_clipboard}) and
+ * {@code <hover:show_text:'...'>}, whose text is formatted itself. Tags are closed with {@code </name>}, or
+ * {@code </>} for the most recent one; unknown tags are kept as text, and {@code \<} writes a literal {@code <}.
+ * <p>
+ * Placeholders are substituted into the parsed spans when the message is sent, so the formatting is never parsed
+ * again, and values such as command arguments cannot inject formatting. Global placeholders are inlined before parsing
+ * and may therefore carry formatting. A message without placeholders is built into a single immutable
+ * {@link Component} at compile time and shared by every send.
+ */
+public final class RichText {
+    private static final RichText EMPTY = new RichText("", new Span[0]);
+
+    /**
+     * Stands in for a placeholder while parsing; followed by one character holding the placeholder's index. U+FFFF is
+     * a noncharacter and never appears in configuration text.
+     */
+    private static final char MARK = '\uFFFF';
+    private static final char MARK_BASE = '\uE000';
+
+    /**
+     * Colors of the legacy codes 0-9 and a-f.
+     */
+    private static final TextColor[] LEGACY_COLORS = {
+            NamedTextColor.BLACK, NamedTextColor.DARK_BLUE, NamedTextColor.DARK_GREEN, NamedTextColor.DARK_AQUA,
+            NamedTextColor.DARK_RED, NamedTextColor.DARK_PURPLE, NamedTextColor.GOLD, NamedTextColor.GRAY,
+            NamedTextColor.DARK_GRAY, NamedTextColor.BLUE, NamedTextColor.GREEN, NamedTextColor.AQUA,
+            NamedTextColor.RED, NamedTextColor.LIGHT_PURPLE, NamedTextColor.YELLOW, NamedTextColor.WHITE
+    };
+
+    private final String source;
+    private final Span[] spans;
+    private final Component constant;
+
+    private RichText(String source, Span[] spans) {
+        this.source = source;
+        this.spans = spans;
+        this.constant = build(spans, null, true);
+    }
+
+    /**
+     * Parses a formatted message, inlining the global placeholders it references.
+     *
+     * @param source       the message source (may be null)
+     * @param placeholders the global placeholders
+     * @return the compiled message
+     */
+    public static RichText compile(String source, Placeholders placeholders) {
+        if (source == null || source.isEmpty()) return EMPTY;
+        List<Object> pieces = Template.compile(source, placeholders).pieces();
+        List<Template> dynamic = new ArrayList<>();
+        StringBuilder marked = new StringBuilder(source.length());
+        for (Object p : pieces) {
+            if (p instanceof Template t) {
+                marked.append(MARK).append((char) (MARK_BASE + dynamic.size()));
+                dynamic.add(t);
+            } else {
+                marked.append((String) p);
+            }
+        }
+        return new Parser(source, marked.toString(), dynamic).parse();
+    }
+
+    /**
+     * Renders the message against the given invocation context.
+     *
+     * @param ctx the invocation context supplying player and variables
+     * @return the component
+     */
+    public Component render(InvocationContext ctx) {
+        return constant != null ? constant : build(spans, ctx, false);
+    }
+
+    /**
+     * @return true if the message contains no placeholders and therefore always renders to the same component
+     */
+    public boolean isConstant() {
+        return constant != null;
+    }
+
+    /**
+     * @return true if the message renders differently for different players (see {@link Template#isPersonal()})
+     */
+    public boolean isPersonal() {
+        for (Span s : spans) {
+            if (s.text.isPersonal() || s.format.isPersonal()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the values of the personal placeholders of the message for a context. Contexts with equal keys (and
+     * equal arguments) render the same component, so a message sent to many players only needs to be rendered once
+     * per distinct key.
+     *
+     * @param ctx the invocation context
+     * @return the key; empty if the message is not personal
+     */
+    public String personalKey(InvocationContext ctx) {
+        StringBuilder sb = new StringBuilder();
+        for (Span s : spans) {
+            s.text.appendPersonal(sb, ctx);
+            s.format.appendPersonal(sb, ctx);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return true if the message has no text at all
+     */
+    public boolean isEmpty() {
+        return spans.length == 0;
+    }
+
+    /**
+     * @return the original, unparsed message source
+     */
+    public String source() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    /**
+     * Builds the component of a span list.
+     *
+     * @param ctx          the invocation context, or null when building at compile time
+     * @param constantOnly if true, return null as soon as a span needs the invocation context
+     */
+    private static Component build(Span[] spans, InvocationContext ctx, boolean constantOnly) {
+        if (spans.length == 0) return Component.empty();
+        if (spans.length == 1) return spans[0].render(ctx, constantOnly);
+        TextComponent.Builder b = Component.text();
+        for (Span s : spans) {
+            Component c = s.render(ctx, constantOnly);
+            if (c == null) return null;
+            b.append(c);
+        }
+        return b.build();
+    }
+
+    /**
+     * A run of text sharing one format.
+     */
+    private record Span(Template text, Format format, Style style) {
+        Span(Template text, Format format) {
+            this(text, format, format.isConstant() ? format.style(null) : null);
+        }
+
+        Component render(InvocationContext ctx, boolean constantOnly) {
+            if (constantOnly && (style == null || !text.isConstant())) return null;
+            return Component.text(text.isConstant() ? text.constant() : text.render(ctx),
+                    style != null ? style : format.style(ctx));
+        }
+    }
+
+    /**
+     * The formatting in effect at some point of the message.
+     *
+     * @param color color, or null to inherit
+     * @param on    decorations switched on, as a bit set of {@link TextDecoration} ordinals
+     * @param off   decorations switched off
+     * @param click click action, or null
+     * @param hover hover text, or null
+     */
+    private record Format(TextColor color, int on, int off, Click click, RichText hover) {
+        static final Format NONE = new Format(null, 0, 0, null, null);
+
+        Format color(TextColor c) {
+            // Like the vanilla client, a legacy color code also clears the decorations
+            return new Format(c, 0, 0, click, hover);
+        }
+
+        Format tint(TextColor c) {
+            return new Format(c, on, off, click, hover);
+        }
+
+        Format decorate(TextDecoration d, boolean state) {
+            int bit = 1 << d.ordinal();
+            return state ? new Format(color, on | bit, off & ~bit, click, hover)
+                    : new Format(color, on & ~bit, off | bit, click, hover);
+        }
+
+        Format click(Click c) {
+            return new Format(color, on, off, c, hover);
+        }
+
+        Format hover(RichText h) {
+            return new Format(color, on, off, click, h);
+        }
+
+        boolean isConstant() {
+            return (click == null || click.value.isConstant()) && (hover == null || hover.isConstant());
+        }
+
+        boolean isPersonal() {
+            return (click != null && click.value.isPersonal()) || (hover != null && hover.isPersonal());
+        }
+
+        void appendPersonal(StringBuilder sb, InvocationContext ctx) {
+            if (click != null) click.value.appendPersonal(sb, ctx);
+            if (hover != null) sb.append(hover.personalKey(ctx));
+        }
+
+        Style style(InvocationContext ctx) {
+            Style.Builder b = Style.style();
+            if (color != null) b.color(color);
+            for (TextDecoration d : TextDecoration.values()) {
+                int bit = 1 << d.ordinal();
+                if ((on & bit) != 0) b.decoration(d, true);
+                else if ((off & bit) != 0) b.decoration(d, false);
+            }
+            if (click != null) {
+                Template v = click.value;
+                b.clickEvent(click.action.apply(v.isConstant() ? v.constant() : v.render(ctx)));
+            }
+            if (hover != null) b.hoverEvent(HoverEvent.showText(hover.render(ctx)));
+            return b.build();
+        }
+    }
+
+    /**
+     * A click action with its (possibly placeholder-bearing) value.
+     */
+    private record Click(Function<String, ClickEvent> action, Template value) {
+    }
+
+    /**
+     * Single-use parser turning marked source text into spans.
+     */
+    private static final class Parser {
+        private final String source;
+        private final String s;
+        private final List<Template> dynamic;
+        private final List<Span> spans = new ArrayList<>();
+        private final Deque<Open> open = new ArrayDeque<>();
+        private final List<Object> text = new ArrayList<>();
+        private final StringBuilder literal = new StringBuilder();
+        private Format base = Format.NONE;
+        private Format current = Format.NONE;
+        private Format textFormat = Format.NONE;
+
+        Parser(String source, String marked, List<Template> dynamic) {
+            this.source = source;
+            this.s = marked;
+            this.dynamic = dynamic;
+        }
+
+        RichText parse() {
+            int n = s.length();
+            int i = 0;
+            while (i < n) {
+                char c = s.charAt(i);
+                if (c == MARK && i + 1 < n) {
+                    emitDynamic(dynamic.get(s.charAt(i + 1) - MARK_BASE));
+                    i += 2;
+                } else if (c == '\\' && i + 1 < n && s.charAt(i + 1) == '<') {
+                    emit('<');
+                    i += 2;
+                } else if ((c == '&' || c == '§') && i + 1 < n) {
+                    i = legacy(c, i);
+                } else if (c == '<') {
+                    int close = tagEnd(i + 1);
+                    if (close > 0 && tag(s.substring(i + 1, close))) {
+                        i = close + 1;
+                    } else {
+                        emit(c);
+                        i++;
+                    }
+                } else {
+                    emit(c);
+                    i++;
+                }
+            }
+            flush();
+            return new RichText(source, spans.toArray(new Span[0]));
+        }
+
+        private void emit(char c) {
+            restyle();
+            literal.append(c);
+        }
+
+        private void emitDynamic(Template t) {
+            restyle();
+            if (!literal.isEmpty()) {
+                text.add(literal.toString());
+                literal.setLength(0);
+            }
+            text.add(t);
+        }
+
+        /**
+         * Starts a new span if the format changed since the current one started.
+         */
+        private void restyle() {
+            if (current.equals(textFormat)) return;
+            flush();
+            textFormat = current;
+        }
+
+        private void flush() {
+            if (!literal.isEmpty()) {
+                text.add(literal.toString());
+                literal.setLength(0);
+            }
+            if (text.isEmpty()) return;
+            int last = spans.size() - 1;
+            if (last >= 0 && spans.get(last).format.equals(textFormat)) {
+                // The format changed and changed back without any text in between: extend the previous span
+                text.add(0, spans.get(last).text);
+                spans.set(last, new Span(Template.join(source, text), textFormat));
+            } else {
+                spans.add(new Span(Template.join(source, text), textFormat));
+            }
+            text.clear();
+        }
+
+        /**
+         * Handles a legacy formatting code starting at {@code i}.
+         *
+         * @return the index after the code, or after the prefix character if it does not start a code
+         */
+        private int legacy(char prefix, int i) {
+            char code = Character.toLowerCase(s.charAt(i + 1));
+            int digit = Character.digit(code, 16);
+            if (digit >= 0) {
+                current = current.color(LEGACY_COLORS[digit]);
+                return i + 2;
+            }
+            TextDecoration d = switch (code) {
+                case 'k' -> TextDecoration.OBFUSCATED;
+                case 'l' -> TextDecoration.BOLD;
+                case 'm' -> TextDecoration.STRIKETHROUGH;
+                case 'n' -> TextDecoration.UNDERLINED;
+                case 'o' -> TextDecoration.ITALIC;
+                default -> null;
+            };
+            if (d != null) {
+                current = current.decorate(d, true);
+                return i + 2;
+            }
+            if (code == 'r') {
+                current = base;
+                return i + 2;
+            }
+            if (code == '#' && i + 8 <= s.length()) {
+                TextColor hex = hex(s.substring(i + 2, i + 8));
+                if (hex != null) {
+                    current = current.color(hex);
+                    return i + 8;
+                }
+            }
+            if (code == 'x' && i + 14 <= s.length()) {
+                // &x&r&r&g&g&b&b
+                StringBuilder digits = new StringBuilder(6);
+                for (int k = i + 2; k < i + 14; k += 2) {
+                    if (s.charAt(k) != prefix) break;
+                    digits.append(s.charAt(k + 1));
+                }
+                TextColor hex = digits.length() == 6 ? hex(digits.toString()) : null;
+                if (hex != null) {
+                    current = current.color(hex);
+                    return i + 14;
+                }
+            }
+            emit(prefix);
+            return i + 1;
+        }
+
+        /**
+         * @return the index of the {@code >} closing a tag whose content starts at {@code from}, ignoring quoted
+         * text, or -1 if the tag is not closed
+         */
+        private int tagEnd(int from) {
+            char quote = 0;
+            for (int k = from; k < s.length(); k++) {
+                char c = s.charAt(k);
+                if (quote != 0) {
+                    if (c == quote) quote = 0;
+                } else if (c == '\'' || c == '"') {
+                    quote = c;
+                } else if (c == '>') {
+                    return k;
+                } else if (c == '<') {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Applies a tag.
+         *
+         * @param tag the text between the angle brackets
+         * @return false if the tag is unknown and should be kept as text
+         */
+        private boolean tag(String tag) {
+            if (tag.startsWith("/")) return close(tag.substring(1).trim().toLowerCase(Locale.ROOT));
+            int colon = tag.indexOf(':');
+            String name = (colon < 0 ? tag : tag.substring(0, colon)).trim().toLowerCase(Locale.ROOT);
+            String arg = colon < 0 ? null : tag.substring(colon + 1);
+            switch (name) {
+                case "reset" -> {
+                    open.clear();
+                    base = current = Format.NONE;
+                    return true;
+                }
+                case "newline", "br" -> {
+                    emit('\n');
+                    return true;
+                }
+                case "color", "colour", "c" -> {
+                    TextColor c = arg == null ? null : color(arg.trim().toLowerCase(Locale.ROOT));
+                    if (c == null) return false;
+                    push(name, "color", base.tint(c));
+                    return true;
+                }
+                case "click" -> {
+                    Click click = click(arg);
+                    if (click == null) return false;
+                    push(name, name, base.click(click));
+                    return true;
+                }
+                case "hover" -> {
+                    RichText hover = hover(arg);
+                    if (hover == null) return false;
+                    push(name, name, base.hover(hover));
+                    return true;
+                }
+                default -> {
+                    if (arg != null) return false;
+                    TextColor c = color(name);
+                    if (c != null) {
+                        push(name, "color", base.tint(c));
+                        return true;
+                    }
+                    boolean negated = name.startsWith("!");
+                    TextDecoration d = decoration(negated ? name.substring(1) : name);
+                    if (d == null) return false;
+                    push(name, d.name(), base.decorate(d, !negated));
+                    return true;
+                }
+            }
+        }
+
+        private void push(String name, String kind, Format next) {
+            open.push(new Open(name, kind, base));
+            base = current = next;
+        }
+
+        /**
+         * Closes the most recent tag with the given name (or of the same kind), and every tag opened after it.
+         */
+        private boolean close(String name) {
+            if (open.isEmpty()) return name.isEmpty();
+            TextDecoration d = decoration(name.startsWith("!") ? name.substring(1) : name);
+            String kind = d != null ? d.name() : name;
+            if (name.equals("colour") || name.equals("c") || color(name) != null) kind = "color";
+            for (Open o : open) {
+                if (name.isEmpty() || o.name.equals(name) || o.kind.equals(kind)) {
+                    while (open.peek() != o) open.pop();
+                    open.pop();
+                    base = current = o.before;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Click click(String arg) {
+            if (arg == null) return null;
+            int colon = arg.indexOf(':');
+            if (colon < 0) return null;
+            Function<String, ClickEvent> action = switch (arg.substring(0, colon).trim().toLowerCase(Locale.ROOT)) {
+                case "run_command" -> ClickEvent::runCommand;
+                case "suggest_command" -> ClickEvent::suggestCommand;
+                case "open_url" -> ClickEvent::openUrl;
+                case "copy_to_clipboard" -> ClickEvent::copyToClipboard;
+                default -> null;
+            };
+            if (action == null) return null;
+            return new Click(action, unmark(unquote(arg.substring(colon + 1))));
+        }
+
+        private RichText hover(String arg) {
+            if (arg == null) return null;
+            int colon = arg.indexOf(':');
+            if (colon < 0 || !arg.substring(0, colon).trim().equalsIgnoreCase("show_text")) return null;
+            return new Parser(source, unquote(arg.substring(colon + 1)), dynamic).parse();
+        }
+
+        /**
+         * Turns marked text back into a template.
+         */
+        private Template unmark(String marked) {
+            List<Object> pieces = new ArrayList<>();
+            int start = 0;
+            for (int k = marked.indexOf(MARK); k >= 0 && k + 1 < marked.length(); k = marked.indexOf(MARK, start)) {
+                pieces.add(marked.substring(start, k));
+                pieces.add(dynamic.get(marked.charAt(k + 1) - MARK_BASE));
+                start = k + 2;
+            }
+            pieces.add(marked.substring(start));
+            return Template.join(source, pieces);
+        }
+
+        private static String unquote(String v) {
+            String t = v.trim();
+            char q = t.isEmpty() ? 0 : t.charAt(0);
+            if (t.length() >= 2 && (q == '\'' || q == '"') && t.charAt(t.length() - 1) == q) {
+                return t.substring(1, t.length() - 1);
+            }
+            return v;
+        }
+
+        private static TextColor color(String name) {
+            if (name.startsWith("#")) return name.length() == 7 ? hex(name.substring(1)) : null;
+            return NamedTextColor.NAMES.value(name.replace("grey", "gray"));
+        }
+
+        private static TextColor hex(String digits) {
+            for (int k = 0; k < digits.length(); k++) {
+                if (Character.digit(digits.charAt(k), 16) < 0) return null;
+            }
+            return digits.length() == 6 ? TextColor.color(Integer.parseInt(digits, 16)) : null;
+        }
+
+        private static TextDecoration decoration(String name) {
+            return switch (name) {
+                case "bold", "b" -> TextDecoration.BOLD;
+                case "italic", "i", "em" -> TextDecoration.ITALIC;
+                case "underlined", "u" -> TextDecoration.UNDERLINED;
+                case "strikethrough", "st" -> TextDecoration.STRIKETHROUGH;
+                case "obfuscated", "obf" -> TextDecoration.OBFUSCATED;
+                default -> null;
+            };
+        }
+
+        /**
+         * An open tag and the format that was in effect before it.
+         */
+        private record Open(String name, String kind, Format before) {
+        }
+    }
+}
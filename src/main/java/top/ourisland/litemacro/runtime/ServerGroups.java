@@ -0,0 +1,391 @@
+package top.ourisland.litemacro.runtime;
+
+import top.ourisland.litemacro.config.model.GroupSpec;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerPing;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Named groups of servers that transfer targets can refer to instead of a single server.
+ * <p>
+ * Choosing a member never waits on the network: every group pings its members in the background at a fixed interval
+ * and caches their player count and latency, so selection is an in-memory lookup. Between two pings the cached player
+ * count of a member is raised for every player sent there, so that a burst of transfers is spread over the group rather
+ * than all landing on the member that was emptiest at the last ping. Members whose last ping failed are skipped as long
+ * as another member answered.
+ */
+public final class ServerGroups {
+    private static final long MIN_INTERVAL = 100L;
+
+    private final ProxyServer server;
+    private final DelayScheduler delays;
+    private final Logger logger;
+    private final Map<String, Status> status = new ConcurrentHashMap<>();
+    private volatile Map<String, Group> groups = Map.of();
+
+    /**
+     * @param server the proxy server
+     * @param delays scheduler driving the background pings
+     * @param logger the plugin logger
+     */
+    public ServerGroups(ProxyServer server, DelayScheduler delays, Logger logger) {
+        this.server = server;
+        this.delays = delays;
+        this.logger = logger;
+    }
+
+    /**
+     * How a member of a group is chosen.
+     */
+    public enum Strategy {
+        /**
+         * The member with the fewest players.
+         */
+        LEAST_PLAYERS,
+        /**
+         * The member with the lowest ping from the proxy.
+         */
+        LOWEST_PING,
+        /**
+         * Each member in turn.
+         */
+        ROUND_ROBIN,
+        /**
+         * The same member for the same player for as long as the group's reachable members do not change, using
+         * rendezvous hashing so that a member going down only moves the players that were mapped to it.
+         */
+        HASH;
+
+        /**
+         * @param s strategy name, case-insensitive; "consistent_hash" is accepted for {@link #HASH}
+         * @return the strategy
+         * @throws IllegalArgumentException if the name is unknown
+         */
+        static Strategy parse(String s) throws IllegalArgumentException {
+            String v = s == null ? "" : s.trim().toLowerCase(Locale.ROOT);
+            return switch (v) {
+                case "least_players" -> LEAST_PLAYERS;
+                case "lowest_ping" -> LOWEST_PING;
+                case "round_robin" -> ROUND_ROBIN;
+                case "hash", "consistent_hash" -> HASH;
+                default -> throw new IllegalArgumentException(
+                        "unknown strategy '" + s + "', expected least_players, lowest_ping, round_robin or hash");
+            };
+        }
+    }
+
+    /**
+     * A validated group definition.
+     *
+     * @param name           group name, lower case
+     * @param servers        member server names, in order
+     * @param strategy       how a member is chosen
+     * @param intervalMillis time between two pings of each member
+     */
+    public record Definition(String name, List<String> servers, Strategy strategy, long intervalMillis) {
+    }
+
+    /**
+     * Validates the group definitions of a configuration.
+     *
+     * @param specs    group specifications keyed by name (may be null)
+     * @param problems receives the name and a description of each group that is invalid
+     * @return the valid groups keyed by lower-case name, in configuration order
+     */
+    public static Map<String, Definition> compile(Map<String, GroupSpec> specs, BiConsumer<String, String> problems) {
+        if (specs == null || specs.isEmpty()) return Map.of();
+        Map<String, Definition> out = new LinkedHashMap<>();
+        for (Map.Entry<String, GroupSpec> e : specs.entrySet()) {
+            String name = e.getKey().toLowerCase(Locale.ROOT);
+            GroupSpec spec = e.getValue() == null ? new GroupSpec() : e.getValue();
+            List<String> servers = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            if (spec.getServers() != null) {
+                for (String s : spec.getServers()) {
+                    if (s == null || s.isBlank()) {
+                        problems.accept(e.getKey(), "server names must not be blank");
+                    } else if (seen.add(s.toLowerCase(Locale.ROOT))) {
+                        servers.add(s);
+                    }
+                }
+            }
+            if (servers.isEmpty()) {
+                problems.accept(e.getKey(), "a group needs at least one server");
+                continue;
+            }
+            if (spec.getInterval() < MIN_INTERVAL) {
+                problems.accept(e.getKey(), "interval must be at least " + MIN_INTERVAL + " ms, got: "
+                        + spec.getInterval());
+                continue;
+            }
+            Strategy strategy;
+            try {
+                strategy = Strategy.parse(spec.getStrategy());
+            } catch (IllegalArgumentException ex) {
+                problems.accept(e.getKey(), ex.getMessage());
+                continue;
+            }
+            if (out.containsKey(name)) {
+                problems.accept(e.getKey(), "defined twice (group names are case-insensitive)");
+                continue;
+            }
+            out.put(name, new Definition(name, List.copyOf(servers), strategy, spec.getInterval()));
+        }
+        return Collections.unmodifiableMap(out);
+    }
+
+    /**
+     * Replaces the groups. Groups whose definition did not change keep their state and ping schedule; removed or
+     * changed groups stop pinging.
+     *
+     * @param definitions the new groups, as returned by {@link #compile(Map, BiConsumer)}
+     */
+    public synchronized void update(Map<String, Definition> definitions) {
+        Map<String, Group> current = groups;
+        Map<String, Group> next = new HashMap<>();
+        for (Definition d : definitions.values()) {
+            Group g = current.get(d.name());
+            if (g == null || !g.definition.equals(d)) {
+                for (String s : d.servers()) {
+                    if (server.getServer(s).isEmpty()) {
+                        logger.warn("Server group '{}' lists '{}', which is not a registered server", d.name(), s);
+                    }
+                }
+                g = new Group(d);
+                g.refresh();
+            }
+            next.put(d.name(), g);
+        }
+        for (Group g : current.values()) {
+            if (next.get(g.definition.name()) != g) g.stop();
+        }
+        groups = Map.copyOf(next);
+        Set<String> members = new HashSet<>();
+        for (Definition d : definitions.values()) {
+            for (String s : d.servers()) members.add(s.toLowerCase(Locale.ROOT));
+        }
+        status.keySet().retainAll(members);
+    }
+
+    /**
+     * Resolves a transfer target: a group name selects one of the group's members, anything else is looked up as a
+     * server. Groups take precedence over servers of the same name.
+     *
+     * @param name   group or server name
+     * @param player the player being transferred, used by the hash strategy (may be null)
+     * @return the server, or empty if there is no such server or no member of the group is registered
+     */
+    public Optional<RegisteredServer> resolve(String name, UUID player) {
+        Group g = groups.get(name.toLowerCase(Locale.ROOT));
+        if (g == null) return server.getServer(name);
+        return Optional.ofNullable(g.select(player));
+    }
+
+    /**
+     * @param name a target name
+     * @return true if the name refers to a group
+     */
+    public boolean isGroup(String name) {
+        return groups.containsKey(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @param name group or server name
+     * @return the names of the group's member servers, or the name itself if it is not a group
+     */
+    public List<String> members(String name) {
+        Group g = groups.get(name.toLowerCase(Locale.ROOT));
+        return g == null ? List.of(name) : g.definition.servers();
+    }
+
+    /**
+     * Tells whether a server is the given target or, if the target is a group, one of its members.
+     *
+     * @param target     group or server name
+     * @param serverName the server name
+     * @return true if a player on that server is already at the target
+     */
+    public boolean contains(String target, String serverName) {
+        Group g = groups.get(target.toLowerCase(Locale.ROOT));
+        if (g == null) return target.equalsIgnoreCase(serverName);
+        for (String s : g.definition.servers()) {
+            if (s.equalsIgnoreCase(serverName)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Stops all background pings.
+     */
+    public synchronized void shutdown() {
+        for (Group g : groups.values()) g.stop();
+        groups = Map.of();
+    }
+
+    private Status status(String serverName) {
+        return status.computeIfAbsent(serverName.toLowerCase(Locale.ROOT), k -> new Status());
+    }
+
+    /**
+     * A group with its round-robin position and ping schedule.
+     */
+    private final class Group {
+        private final Definition definition;
+        private final AtomicInteger turn = new AtomicInteger();
+        private volatile boolean stopped;
+        private volatile DelayScheduler.Handle pending;
+
+        Group(Definition definition) {
+            this.definition = definition;
+        }
+
+        /**
+         * Pings every registered member whose cached state is not already fresh, then schedules the next round.
+         */
+        void refresh() {
+            if (stopped) return;
+            long maxAge = TimeUnit.MILLISECONDS.toNanos(definition.intervalMillis()) / 2;
+            for (String name : definition.servers()) {
+                server.getServer(name).ifPresent(s -> status(name).ping(s, maxAge));
+            }
+            pending = delays.schedule(definition.intervalMillis(), this::refresh);
+        }
+
+        void stop() {
+            stopped = true;
+            DelayScheduler.Handle h = pending;
+            if (h != null) h.cancel();
+        }
+
+        /**
+         * @return the chosen member, or null if none of the members is registered
+         */
+        RegisteredServer select(UUID player) {
+            List<String> names = definition.servers();
+            List<RegisteredServer> candidates = new ArrayList<>(names.size());
+            List<Status> states = new ArrayList<>(names.size());
+            boolean anyReachable = false;
+            for (String name : names) {
+                Optional<RegisteredServer> s = server.getServer(name);
+                if (s.isEmpty()) continue;
+                Status st = status(name);
+                candidates.add(s.get());
+                states.add(st);
+                anyReachable |= st.reachable;
+            }
+            if (candidates.isEmpty()) return null;
+            if (anyReachable) {
+                for (int i = candidates.size() - 1; i >= 0; i--) {
+                    if (!states.get(i).reachable) {
+                        candidates.remove(i);
+                        states.remove(i);
+                    }
+                }
+            }
+
+            int best = 0;
+            switch (definition.strategy()) {
+                case LEAST_PLAYERS -> {
+                    for (int i = 1; i < states.size(); i++) {
+                        if (states.get(i).players.get() < states.get(best).players.get()) best = i;
+                    }
+                }
+                case LOWEST_PING -> {
+                    for (int i = 1; i < states.size(); i++) {
+                        if (states.get(i).latency() < states.get(best).latency()) best = i;
+                    }
+                }
+                case ROUND_ROBIN -> best = Math.floorMod(turn.getAndIncrement(), candidates.size());
+                case HASH -> {
+                    if (player == null) {
+                        best = Math.floorMod(turn.getAndIncrement(), candidates.size());
+                        break;
+                    }
+                    long key = player.getMostSignificantBits() * 31 + player.getLeastSignificantBits();
+                    long top = Long.MIN_VALUE;
+                    for (int i = 0; i < candidates.size(); i++) {
+                        String name = candidates.get(i).getServerInfo().getName().toLowerCase(Locale.ROOT);
+                        long score = mix(key ^ name.hashCode() * 0x9E3779B97F4A7C15L);
+                        if (score > top) {
+                            top = score;
+                            best = i;
+                        }
+                    }
+                }
+            }
+            states.get(best).players.incrementAndGet();
+            return candidates.get(best);
+        }
+    }
+
+    /**
+     * The cached state of a member server, shared by every group that lists it.
+     */
+    private static final class Status {
+        private final AtomicBoolean pinging = new AtomicBoolean();
+        private final AtomicInteger players = new AtomicInteger();
+        private volatile boolean reachable = true;
+        private volatile long latencyMillis = -1L;
+        private volatile long pingedAt;
+
+        /**
+         * @return the last measured latency, or {@link Long#MAX_VALUE} if the server has not answered a ping yet
+         */
+        long latency() {
+            long l = latencyMillis;
+            return l < 0 ? Long.MAX_VALUE : l;
+        }
+
+        /**
+         * Starts a ping unless one is in flight or another group started one less than {@code maxAge} ago.
+         */
+        void ping(RegisteredServer s, long maxAge) {
+            long start = System.nanoTime();
+            if (pingedAt != 0L && start - pingedAt < maxAge) return;
+            if (!pinging.compareAndSet(false, true)) return;
+            pingedAt = start;
+            s.ping().whenComplete((ping, err) -> {
+                if (err != null || ping == null) {
+                    reachable = false;
+                } else {
+                    latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    players.set(ping.getPlayers()
+                            .map(ServerPing.Players::getOnline)
+                            .orElseGet(() -> s.getPlayersConnected().size()));
+                    reachable = true;
+                }
+                pinging.set(false);
+            });
+        }
+    }
+
+    /**
+     * Finalization step of MurmurHash3; spreads the bits of a 64-bit key.
+     */
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb53a185ec867L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,504 @@
+package top.ourisland.litemacro.runtime;
+
+import com.velocitypowered.api.proxy.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A placeholder template compiled once from its source string into an array of segments (literal text and variable
+ * references). Rendering walks the segments a single time into a pre-sized {@link StringBuilder}, so no intermediate
+ * strings are produced and lookups such as {@link InvocationContext#player()} only happen for segments that need them.
+ * <p>
+ * Placeholders use the {@code {name}} syntax. Built in are {@code {player}}, {@code {uuid}} and the argument
+ * placeholders, which read {@link InvocationContext#args()} by index: {@code {arg0}}, {@code {arg1}}, ...,
+ * {@code {argc}} (the number of arguments), {@code {args}} (all arguments) and {@code {args:from-}} /
+ * {@code {args:from-to}} (a range of arguments, joined by spaces), and inside loops {@code {item}} and {@code {index}}
+ * (the current item and its position, starting at 1; see {@link InvocationContext.Loop}). Global placeholders from a
+ * {@link Placeholders} scope are spliced in at compile time, with adjacent literal text folded together, so a template
+ * whose globals are constant is itself constant. Names handled by a {@link PlaceholderResolver} (optionally with an
+ * argument, {@code {name:argument}}) are bound to it at compile time and resolved lazily, once per invocation.
+ * <p>
+ * Argument, loop and resolver placeholders accept a fallback, {@code {arg1|default}}, rendered when the value is
+ * missing. Without a fallback, and for unknown names, the placeholder is left untouched.
+ */
+public final class Template {
+
+    private static final Template EMPTY = new Template("", new Segment[0], 0);
+
+    private final String source;
+    private final Segment[] segments;
+    private final int sizeHint;
+
+    private Template(String source, Segment[] segments, int sizeHint) {
+        this.source = source;
+        this.segments = segments;
+        this.sizeHint = sizeHint;
+    }
+
+    /**
+     * Parses the given string into a template without global placeholders. A {@code null} or empty source yields an
+     * empty template.
+     *
+     * @param source the template source (may be null)
+     * @return the compiled template
+     */
+    public static Template compile(String source) {
+        return compile(source, Placeholders.NONE);
+    }
+
+    /**
+     * Parses the given string into a template, inlining the global placeholders it references.
+     *
+     * @param source       the template source (may be null)
+     * @param placeholders the global placeholders
+     * @return the compiled template
+     */
+    public static Template compile(String source, Placeholders placeholders) {
+        return compile(source, placeholders::get, placeholders.resolvers());
+    }
+
+    /**
+     * Parses the given string into a template.
+     *
+     * @param source    the template source (may be null)
+     * @param globals   returns the compiled global placeholder of a name, or null if there is none
+     * @param resolvers the dynamic placeholders to bind
+     * @return the compiled template
+     */
+    static Template compile(String source, Function<String, Template> globals, PlaceholderResolvers resolvers) {
+        if (source == null || source.isEmpty()) return EMPTY;
+        List<Segment> out = new ArrayList<>();
+        int len = source.length();
+        int literalStart = 0;
+        int i = 0;
+        while (i < len) {
+            int open = source.indexOf('{', i);
+            if (open < 0) break;
+            int close = source.indexOf('}', open + 1);
+            if (close < 0) break;
+            int nested = source.indexOf('{', open + 1);
+            if (nested >= 0 && nested < close) {
+                // "{a{b}" - the inner brace starts the real placeholder
+                i = nested;
+                continue;
+            }
+            if (close == open + 1) {
+                i = close + 1;
+                continue;
+            }
+            if (open > literalStart) add(out, new Literal(source.substring(literalStart, open)));
+            String key = source.substring(open + 1, close);
+            Template global = isBuiltin(key) ? null : globals.apply(key);
+            if (global != null) {
+                for (Segment s : global.segments) add(out, s);
+            } else {
+                add(out, placeholder(source.substring(open, close + 1), key, resolvers));
+            }
+            literalStart = close + 1;
+            i = close + 1;
+        }
+        if (literalStart < len) add(out, new Literal(source.substring(literalStart)));
+
+        Segment[] segments = out.toArray(new Segment[0]);
+        int hint = 0;
+        for (Segment s : segments) hint += s.sizeHint();
+        return new Template(source, segments, hint);
+    }
+
+    /**
+     * Appends a segment, merging it into the previous one when both are literal text.
+     */
+    private static void add(List<Segment> out, Segment s) {
+        int last = out.size() - 1;
+        if (s instanceof Literal l && last >= 0 && out.get(last) instanceof Literal prev) {
+            out.set(last, new Literal(prev.text + l.text));
+        } else {
+            out.add(s);
+        }
+    }
+
+    /**
+     * @param key a placeholder key, possibly with an argument or fallback
+     * @return true if the name is resolved by the template itself and cannot be redefined
+     */
+    static boolean isBuiltin(String key) {
+        int end = key.length();
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == ':' || c == '|') {
+                end = i;
+                break;
+            }
+        }
+        String name = key.substring(0, end);
+        return name.equals("player") || name.equals("uuid") || name.equals("args") || name.equals("argc")
+                || name.equals("item") || name.equals("index") || argIndex(name) >= 0;
+    }
+
+    /**
+     * @param name a placeholder name
+     * @return N for "argN", otherwise -1
+     */
+    private static int argIndex(String name) {
+        if (name.length() < 4 || name.length() > 9 || !name.startsWith("arg")) return -1;
+        int n = 0;
+        for (int i = 3; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            n = n * 10 + (c - '0');
+        }
+        return n;
+    }
+
+    /**
+     * Maps a placeholder to its segment implementation.
+     *
+     * @param raw       the placeholder including braces, rendered when it cannot be resolved
+     * @param key       the placeholder text without braces
+     * @param resolvers the dynamic placeholders to bind
+     * @return the segment resolving the placeholder
+     */
+    private static Segment placeholder(String raw, String key, PlaceholderResolvers resolvers) {
+        if (key.equals("player")) return PlayerName.INSTANCE;
+        if (key.equals("uuid")) return PlayerUuid.INSTANCE;
+        if (key.equals("argc")) return ArgCount.INSTANCE;
+        int bar = key.indexOf('|');
+        String name = bar < 0 ? key : key.substring(0, bar);
+        String fallback = bar < 0 ? null : key.substring(bar + 1);
+        int index = argIndex(name);
+        if (index >= 0) return new Arg(index, fallback != null ? fallback : raw);
+        if (name.equals("item")) return new LoopItem(fallback != null ? fallback : raw);
+        if (name.equals("index")) return new LoopIndex(fallback != null ? fallback : raw);
+        if (name.equals("args")) return new ArgRange(0, Integer.MAX_VALUE, fallback != null ? fallback : "");
+        if (name.startsWith("args:")) {
+            ArgRange range = ArgRange.parse(name.substring(5), fallback != null ? fallback : "");
+            if (range != null) return range;
+        }
+        PlaceholderResolvers.Slot slot = resolvers.bind(name);
+        if (slot != null) return new Resolved(fallback != null ? fallback : raw, slot);
+        return new Literal(raw);
+    }
+
+    /**
+     * Splits the template into its pieces, in order: literal text as {@link String}s and each placeholder as a
+     * single-segment {@link Template}. {@link RichText} parses formatting in the literal pieces only, so placeholder
+     * values are never interpreted as formatting.
+     *
+     * @return the pieces
+     */
+    List<Object> pieces() {
+        List<Object> out = new ArrayList<>(segments.length);
+        for (Segment s : segments) {
+            out.add(s instanceof Literal l ? l.text : new Template("", new Segment[]{s}, s.sizeHint()));
+        }
+        return out;
+    }
+
+    /**
+     * Joins pieces as returned by {@link #pieces()} back into one template.
+     *
+     * @param source the source to report for the joined template
+     * @param pieces literal strings and templates, in order
+     * @return the joined template
+     */
+    static Template join(String source, List<?> pieces) {
+        List<Segment> out = new ArrayList<>();
+        for (Object p : pieces) {
+            if (p instanceof Template t) {
+                for (Segment s : t.segments) add(out, s);
+            } else if (!p.toString().isEmpty()) {
+                add(out, new Literal(p.toString()));
+            }
+        }
+        if (out.isEmpty()) return EMPTY;
+        Segment[] segments = out.toArray(new Segment[0]);
+        int hint = 0;
+        for (Segment s : segments) hint += s.sizeHint();
+        return new Template(source, segments, hint);
+    }
+
+    /**
+     * Renders the template against the given invocation context.
+     *
+     * @param ctx the invocation context supplying player and variables
+     * @return the expanded string
+     */
+    public String render(InvocationContext ctx) {
+        Segment[] segs = segments;
+        if (segs.length == 0) return "";
+        if (segs.length == 1 && segs[0] instanceof Literal l) return l.text;
+        StringBuilder sb = new StringBuilder(sizeHint);
+        for (Segment s : segs) s.appendTo(sb, ctx);
+        return sb.toString();
+    }
+
+    /**
+     * @return true if the template contains no placeholders and therefore always renders to the same string
+     */
+    public boolean isConstant() {
+        return constant() != null;
+    }
+
+    /**
+     * @return the text this template always renders to, or null if it is not {@link #isConstant() constant}
+     */
+    public String constant() {
+        if (segments.length == 0) return "";
+        return segments.length == 1 && segments[0] instanceof Literal l ? l.text : null;
+    }
+
+    /**
+     * @return true if the template renders differently for different players, i.e. it uses {@code {player}},
+     * {@code {uuid}} or a dynamic placeholder that is not shared across invocations
+     */
+    public boolean isPersonal() {
+        for (Segment s : segments) {
+            if (s.personal()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Appends the values of the {@link #isPersonal() personal} placeholders, each followed by a NUL character. Two
+     * contexts for which this appends the same text render the template identically, as long as their arguments are
+     * the same.
+     *
+     * @param sb  the output buffer
+     * @param ctx the invocation context
+     */
+    void appendPersonal(StringBuilder sb, InvocationContext ctx) {
+        for (Segment s : segments) {
+            if (s.personal()) {
+                s.appendTo(sb, ctx);
+                sb.append('\0');
+            }
+        }
+    }
+
+    /**
+     * @return true if the template renders to an empty or whitespace-only string regardless of context
+     */
+    public boolean isBlank() {
+        String c = constant();
+        return c != null && c.isBlank();
+    }
+
+    /**
+     * @return the original, unparsed template source (before global placeholders were inlined)
+     */
+    public String source() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    /**
+     * One piece of a compiled template.
+     */
+    private interface Segment {
+        /**
+         * Appends this segment's rendered value.
+         *
+         * @param sb  the output buffer
+         * @param ctx the invocation context
+         */
+        void appendTo(StringBuilder sb, InvocationContext ctx);
+
+        /**
+         * @return an estimate of the rendered length, used to pre-size the output buffer
+         */
+        int sizeHint();
+
+        /**
+         * @return true if the value depends on the player the template is rendered for
+         */
+        default boolean personal() {
+            return false;
+        }
+    }
+
+    private record Literal(String text) implements Segment {
+        @Override
+        public void appendTo(StringBuilder sb, InvocationContext ctx) {
+            sb.append(text);
+        }
+
+        @Override
+        public int sizeHint() {
+            return text.length();
+        }
+    }
+
+    private enum PlayerName implements Segment {
+        INSTANCE;
+
+        @Override
+        public void appendTo(StringBuilder sb, InvocationContext ctx) {
+            sb.append(ctx.source() instanceof Player p ? p.getUsername() : "CONSOLE");
+        }
+
+        @Override
+        public int sizeHint() {
+            return 16;
+        }
+
+        @Override
+        public boolean personal() {
+            return true;
+        }
+    }
+
+    private enum PlayerUuid implements Segment {
+        INSTANCE;
+
+        @Override
+        public void appendTo(StringBuilder sb, InvocationContext ctx) {
+            if (ctx.source() instanceof Player p) {
+                sb.append(p.getUniqueId());
+            } else {
+                sb.append('-');
+            }
+        }
+
+        @Override
+        public int sizeHint() {
+            return 36;
+        }
+
+        @Override
+        public boolean personal() {
+            return true;
+        }
+    }
+
+    /**
+     * A dynamic placeholder; renders {@code missing} when the resolver has no value.
+     */
+    private record Resolved(String missing, PlaceholderResolvers.Slot slot) implements Segment {
+        @Override
+        public void appendTo(StringBuilder sb, InvocationContext ctx) {
+            String v = ctx.resolve(slot);
+            sb.append(v != null ? v : missing);
+        }
+
+        @Override
+        public int sizeHint() {
+            return 8;
+        }
+
+        @Override
+        public boolean personal() {
+            return slot.isPersonal();
+        }
+    }
+
+    /**
+     * One argument by index; renders {@code missing} when there are not enough arguments.
+     */
+    private record Arg(int index, String missing) implements Segment {
+        @Override
+        public void appendTo(StringBuilder sb, InvocationContext ctx) {
+            String[] args = ctx.args();
+            sb.append(index < args.length ? args[index] : missing);
+        }
+
+        @Override
+        public int sizeHint() {
+            return 8;
+        }
+    }
+
+    /**
+     * Arguments {@code from} to {@code to} (inclusive, clamped to the available arguments) joined by single spaces;
+     * renders {@code missing} when the range is empty.
+     */
+    private record ArgRange(int from, int to, String missing) implements Segment {
+        /**
+         * @param range "from-" or "from-to"
+         * @return the segment, or null if the range is malformed
+         */
+        static ArgRange parse(String range, String missing) {
+            int dash = range.indexOf('-');
+            if (dash <= 0) return null;
+            try {
+                int from = Integer.parseInt(range.substring(0, dash));
+                int to = dash == range.length() - 1 ? Integer.MAX_VALUE : Integer.parseInt(range.substring(dash + 1));
+                return from >= 0 && to >= from ? new ArgRange(from, to, missing) : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb, InvocationContext ctx) {
+            String[] args = ctx.args();
+            int end = Math.min(to, args.length - 1);
+            if (from > end) {
+                sb.append(missing);
+                return;
+            }
+            sb.append(args[from]);
+            for (int i = from + 1; i <= end; i++) sb.append(' ').append(args[i]);
+        }
+
+        @Override
+        public int sizeHint() {
+            return 32;
+        }
+    }
+
+    /**
+     * The current loop item; renders {@code missing} outside of loops.
+     */
+    private record LoopItem(String missing) implements Segment {
+        @Override
+        public void appendTo(StringBuilder sb, InvocationContext ctx) {
+            InvocationContext.Loop loop = ctx.loop();
+            sb.append(loop != null ? loop.item() : missing);
+        }
+
+        @Override
+        public int sizeHint() {
+            return 16;
+        }
+    }
+
+    /**
+     * The position of the current loop item, starting at 1; renders {@code missing} outside of loops.
+     */
+    private record LoopIndex(String missing) implements Segment {
+        @Override
+        public void appendTo(StringBuilder sb, InvocationContext ctx) {
+            InvocationContext.Loop loop = ctx.loop();
+            if (loop != null) {
+                sb.append(loop.index() + 1);
+            } else {
+                sb.append(missing);
+            }
+        }
+
+        @Override
+        public int sizeHint() {
+            return 4;
+        }
+    }
+
+    private enum ArgCount implements Segment {
+        INSTANCE;
+
+        @Override
+        public void appendTo(StringBuilder sb, InvocationContext ctx) {
+            sb.append(ctx.args().length);
+        }
+
+        @Override
+        public int sizeHint() {
+            return 2;
+        }
+    }
+}
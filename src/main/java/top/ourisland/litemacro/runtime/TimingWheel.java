@@ -0,0 +1,302 @@
+package top.ourisland.litemacro.runtime;
+
+import org.slf4j.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel shared by all macro runners for their delays.
+ * <p>
+ * A single ticker thread advances the wheel once per tick and runs every timeout whose deadline has passed. Insertion
+ * and cancellation are O(1): callers only push onto lock-free queues, and the ticker links timeouts into (or unlinks
+ * them from) the per-slot doubly linked lists. Delays longer than one wheel rotation are tracked with a
+ * remaining-rounds counter, so the wheel size only bounds the per-tick scan, not the maximum delay.
+ * <p>
+ * Tasks run on the ticker thread and must therefore be short and non-blocking, which matches the {@code Action}
+ * contract.
+ */
+public class TimingWheel implements DelayScheduler {
+
+    /**
+     * Upper bound of newly scheduled timeouts moved into the wheel per tick, so a burst cannot stall the ticker.
+     */
+    private static final int MAX_TRANSFER_PER_TICK = 100_000;
+
+    private final Logger logger;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startTime;
+    private final Thread worker;
+
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder scheduled = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+
+    private volatile boolean running = true;
+    private volatile long tick;
+    private volatile long lastLagNanos;
+    private volatile long maxLagNanos;
+
+    /**
+     * Creates and starts a timing wheel.
+     *
+     * @param logger     logger for task failures
+     * @param tickMillis tick resolution in milliseconds (at least 1)
+     * @param slots      number of wheel slots, rounded up to a power of two
+     */
+    public TimingWheel(Logger logger, long tickMillis, int slots) {
+        this.logger = logger;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, tickMillis));
+        int size = Integer.highestOneBit(Math.max(16, Math.min(slots, 1 << 20)) - 1) << 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) wheel[i] = new Bucket();
+        this.mask = size - 1;
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(this::work, "liteMacro-timer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    @Override
+    public Handle schedule(long delayMillis, Runnable task) {
+        if (!running) return () -> {
+        };
+        long delay = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, delayMillis));
+        long deadline = System.nanoTime() + delay - startTime;
+        if (delay > 0 && deadline < 0) deadline = Long.MAX_VALUE;
+        Timeout t = new Timeout(task, deadline);
+        pending.incrementAndGet();
+        scheduled.increment();
+        newTimeouts.add(t);
+        return t;
+    }
+
+    /**
+     * Stops the ticker thread. Timeouts that have not expired yet are dropped.
+     */
+    @Override
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+
+    /**
+     * Returns a point-in-time view of the wheel's occupancy. Slot sizes are read without synchronisation, so the
+     * numbers are approximate while the wheel is ticking.
+     *
+     * @return wheel statistics
+     */
+    public Stats stats() {
+        int occupied = 0;
+        int maxBucket = 0;
+        for (Bucket b : wheel) {
+            int s = b.size;
+            if (s > 0) occupied++;
+            if (s > maxBucket) maxBucket = s;
+        }
+        return new Stats(
+                pending.get(),
+                wheel.length,
+                TimeUnit.NANOSECONDS.toMillis(tickNanos),
+                tick,
+                occupied,
+                maxBucket,
+                TimeUnit.NANOSECONDS.toMillis(lastLagNanos),
+                TimeUnit.NANOSECONDS.toMillis(maxLagNanos),
+                scheduled.sum(),
+                expired.sum(),
+                cancelled.sum()
+        );
+    }
+
+    /**
+     * Ticker loop: waits for the end of each tick, applies cancellations, moves new timeouts into their slots and
+     * expires the current slot.
+     */
+    private void work() {
+        while (running) {
+            long deadline = waitForNextTick();
+            if (deadline < 0) break;
+            long current = tick;
+            processCancelled();
+            transferNewTimeouts(current);
+            wheel[(int) (current & mask)].expire(deadline);
+            tick = current + 1;
+        }
+        newTimeouts.clear();
+        cancelledTimeouts.clear();
+    }
+
+    /**
+     * Sleeps until the end of the current tick.
+     *
+     * @return elapsed nanoseconds since start at wake-up, or -1 if the wheel was shut down
+     */
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        for (; ; ) {
+            long current = System.nanoTime() - startTime;
+            long sleep = deadline - current;
+            if (sleep <= 0) {
+                long lag = -sleep;
+                lastLagNanos = lag;
+                if (lag > maxLagNanos) maxLagNanos = lag;
+                return current;
+            }
+            LockSupport.parkNanos(this, sleep);
+            if (!running) return -1;
+        }
+    }
+
+    private void processCancelled() {
+        Timeout t;
+        while ((t = cancelledTimeouts.poll()) != null) {
+            Bucket b = t.bucket;
+            if (b != null) b.remove(t);
+        }
+    }
+
+    private void transferNewTimeouts(long current) {
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            Timeout t = newTimeouts.poll();
+            if (t == null) return;
+            if (t.state != Timeout.ST_INIT) continue;
+            long calculated = t.deadline / tickNanos;
+            t.remainingRounds = (calculated - current) / wheel.length;
+            long ticks = Math.max(calculated, current);
+            wheel[(int) (ticks & mask)].add(t);
+        }
+    }
+
+    /**
+     * Snapshot of the wheel's occupancy and counters.
+     *
+     * @param pending        timeouts scheduled but not yet run or cancelled
+     * @param slots          number of wheel slots
+     * @param tickMillis     tick resolution in milliseconds
+     * @param tick           ticks elapsed since start
+     * @param occupiedSlots  slots currently holding at least one timeout
+     * @param maxBucket      size of the fullest slot
+     * @param lastLagMillis  how late the most recent tick woke up
+     * @param maxLagMillis   the worst tick wake-up lag observed
+     * @param totalScheduled timeouts scheduled since start
+     * @param totalExpired   timeouts run since start
+     * @param totalCancelled timeouts cancelled since start
+     */
+    public record Stats(int pending,
+                        int slots,
+                        long tickMillis,
+                        long tick,
+                        int occupiedSlots,
+                        int maxBucket,
+                        long lastLagMillis,
+                        long maxLagMillis,
+                        long totalScheduled,
+                        long totalExpired,
+                        long totalCancelled) {
+    }
+
+    /**
+     * Doubly linked list of timeouts hashed to one slot. Only mutated by the ticker thread.
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+        private volatile int size;
+
+        void add(Timeout t) {
+            t.bucket = this;
+            if (head == null) {
+                head = tail = t;
+            } else {
+                tail.next = t;
+                t.prev = tail;
+                tail = t;
+            }
+            size++;
+        }
+
+        void remove(Timeout t) {
+            Timeout next = t.next;
+            if (t.prev != null) t.prev.next = next;
+            if (next != null) next.prev = t.prev;
+            if (t == head) head = next;
+            if (t == tail) tail = t.prev;
+            t.prev = null;
+            t.next = null;
+            t.bucket = null;
+            size--;
+        }
+
+        void expire(long deadline) {
+            Timeout t = head;
+            while (t != null) {
+                Timeout next = t.next;
+                if (t.remainingRounds <= 0) {
+                    remove(t);
+                    if (t.deadline <= deadline) {
+                        t.expire();
+                    }
+                } else if (t.state == Timeout.ST_CANCELLED) {
+                    remove(t);
+                } else {
+                    t.remainingRounds--;
+                }
+                t = next;
+            }
+        }
+    }
+
+    /**
+     * A scheduled task and its position in the wheel.
+     */
+    private final class Timeout implements Handle {
+        static final int ST_INIT = 0;
+        static final int ST_CANCELLED = 1;
+        static final int ST_EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        final Runnable task;
+        final long deadline;
+        volatile int state = ST_INIT;
+        long remainingRounds;
+        Timeout next;
+        Timeout prev;
+        Bucket bucket;
+
+        Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void cancel() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_CANCELLED)) return;
+            pending.decrementAndGet();
+            cancelled.increment();
+            cancelledTimeouts.add(this);
+        }
+
+        void expire() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_EXPIRED)) return;
+            pending.decrementAndGet();
+            expired.increment();
+            try {
+                task.run();
+            } catch (Throwable t) {
+                logger.warn("Delayed macro task threw an exception", t);
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package top.ourisland.litemacro.runtime;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+
+import java.time.Duration;
+
+/**
+ * {@link DelayScheduler} backed by Velocity's own scheduler. Every delay becomes one Velocity task; this is the
+ * fallback when the timing wheel is disabled in the configuration.
+ */
+public class VelocityDelayScheduler implements DelayScheduler {
+    /**
+     * Stand-in for a tick: Velocity runs zero-delay tasks at once, so {@link #scheduleNextTick(Runnable)} waits as long
+     * as one Minecraft server tick instead.
+     */
+    public static final long TICK_MILLIS = 50L;
+
+    private final ProxyServer server;
+    private final Object plugin;
+
+    /**
+     * @param server the proxy server whose scheduler is used
+     * @param plugin the plugin instance owning the tasks
+     */
+    public VelocityDelayScheduler(ProxyServer server, Object plugin) {
+        this.server = server;
+        this.plugin = plugin;
+    }
+
+    @Override
+    public Handle schedule(long delayMillis, Runnable task) {
+        return server.getScheduler()
+                .buildTask(plugin, task)
+                .delay(Duration.ofMillis(Math.max(0L, delayMillis)))
+                .schedule()::cancel;
+    }
+
+    @Override
+    public Handle scheduleNextTick(Runnable task) {
+        return schedule(TICK_MILLIS, task);
+    }
+}